@@ -0,0 +1,389 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package controller;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import model.EngineMode;
+import model.IWorldMap;
+import model.RouteMode;
+import util.Timings;
+
+/**
+ * Runs the simulation without any window or sound, as fast as
+ * the machine allows, and prints a throughput report when done.
+ *
+ * The simulation still advances in ticks of
+ * SimulationThread.TICK_LENGTH milliseconds of simulated time,
+ * there is just no sleeping between them.
+ *
+ * Usage: HeadlessRunner [-ticks n | -seconds n] [-width w]
+ *                       [-height h] [-spawndelay d] [-vehicles n]
+ *                       [-engine serial|parallel|sharded|event] [-seed s]
+ *                       [-sessions n] [-timings file] [-routecache n]
+ *                       [-routing dijkstra|astar|hierarchy|table]
+ *                       [-reroute n] [-scaling n,n,...]
+ *
+ * Runs with the same seed and options simulate exactly the same
+ * traffic, the seed of every run is printed with the report.
+ *
+ * With -sessions n, n independent simulations run side by side on
+ * their own threads, with the seeds s, s+1 and so on, and a report is
+ * printed for each.
+ *
+ * With -timings file, how long every phase of a tick took is written
+ * to the file as CSV when the run is done. With more than one session
+ * the index of the session is put before the extension of the file.
+ *
+ * With -routecache n at most n routes are kept between pairs of nodes,
+ * 0 searches the map for every spawned vehicle. With -routing astar
+ * routes are found with A* and also count the distance driven, with
+ * -routing hierarchy with a contraction hierarchy built for the map,
+ * and with -routing table they are looked up in the routes between
+ * all ends of the map, searched in parallel when it is made.
+ *
+ * With -reroute n vehicles on their way get new routes as the lanes
+ * fill up, searching and writing at most n nodes a tick, 0 keeps the
+ * routes they spawned with.
+ *
+ * With -scaling n,n,... the run is repeated once for every given
+ * vehicle budget, and the time a tick takes per live vehicle is
+ * printed for each. It stays about the same from budget to budget as
+ * long as a tick is linear in the number of vehicles.
+ */
+public final class HeadlessRunner {
+    
+    private static final String USAGE = "Usage: HeadlessRunner [-ticks n | -seconds n] "
+            + "[-width w] [-height h] [-spawndelay d] [-vehicles n] "
+            + "[-engine serial|parallel|sharded|event] [-seed s] [-sessions n] [-timings file] "
+            + "[-routecache n] [-routing dijkstra|astar|hierarchy|table] [-reroute n] "
+            + "[-scaling n,n,...]";
+    
+    private static final int DEFAULT_WIDTH = 800;
+    private static final int DEFAULT_HEIGHT = 600;
+    private static final int DEFAULT_SPAWN_DELAY = 5;
+    private static final long DEFAULT_SECONDS = 600;
+    
+    private long ticks = DEFAULT_SECONDS * 1000 / SimulationThread.TICK_LENGTH;
+    private int width = DEFAULT_WIDTH;
+    private int height = DEFAULT_HEIGHT;
+    private int spawnDelay = DEFAULT_SPAWN_DELAY;
+    private int vehicleBudget = -1;
+    private Long seed;
+    private EngineMode engineMode = EngineMode.SERIAL;
+    private int sessions = 1;
+    private String timingsFile;
+    private int routeCacheSize = -1;
+    private RouteMode routeMode = RouteMode.DIJKSTRA;
+    private int rerouteBudget = -1;
+    private int[] scalingBudgets;
+    
+    private HeadlessRunner(){
+    }
+    
+    public static void main(String[] args){
+        HeadlessRunner runner = new HeadlessRunner();
+        try {
+            runner.parseArguments(args);
+        } catch (IllegalArgumentException e){
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        if (runner.scalingBudgets != null){
+            for (Report r : runner.runScaling()){
+                System.out.println(String.format("%8d vehicles: %8.1f ns per vehicle update, peak %d",
+                        r.getVehicleBudget(), r.getNanosPerVehicleUpdate(), r.getPeakVehicles()));
+            }
+        } else if (runner.sessions <= 1){
+            System.out.println(runner.run(runner.seed, runner.timingsFile));
+        } else {
+            for (Report r : runner.runSessions()){
+                System.out.println(r);
+                System.out.println();
+            }
+        }
+    }
+    
+    /**
+     * Reads the command line arguments into this runner.
+     *
+     * @param args the command line arguments.
+     * @throws IllegalArgumentException if an argument is unknown or
+     *                  is missing its value.
+     */
+    private void parseArguments(String[] args){
+        for (int i = 0; i < args.length; i += 2){
+            String option = args[i];
+            if (i + 1 >= args.length){
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[i + 1];
+            switch (option){
+                case "-ticks":
+                    ticks = parseNumber(value);
+                    break;
+                case "-seconds":
+                    ticks = parseNumber(value) * 1000 / SimulationThread.TICK_LENGTH;
+                    break;
+                case "-width":
+                    width = (int) parseNumber(value);
+                    break;
+                case "-height":
+                    height = (int) parseNumber(value);
+                    break;
+                case "-spawndelay":
+                    spawnDelay = (int) parseNumber(value);
+                    break;
+                case "-vehicles":
+                    vehicleBudget = (int) parseNumber(value);
+                    break;
+                case "-seed":
+                    try {
+                        seed = Long.valueOf(value);
+                    } catch (NumberFormatException e){
+                        throw new IllegalArgumentException("Not a number: " + value);
+                    }
+                    break;
+                case "-engine":
+                    try {
+                        engineMode = EngineMode.valueOf(value.toUpperCase(Locale.ROOT));
+                    } catch (IllegalArgumentException e){
+                        throw new IllegalArgumentException("Unknown engine " + value);
+                    }
+                    break;
+                case "-sessions":
+                    sessions = (int) parseNumber(value);
+                    break;
+                case "-timings":
+                    timingsFile = value;
+                    break;
+                case "-routecache":
+                    routeCacheSize = (int) parseNumber(value);
+                    break;
+                case "-routing":
+                    try {
+                        routeMode = RouteMode.valueOf(value.toUpperCase(Locale.ROOT));
+                    } catch (IllegalArgumentException e){
+                        throw new IllegalArgumentException("Unknown routing " + value);
+                    }
+                    break;
+                case "-reroute":
+                    rerouteBudget = (int) parseNumber(value);
+                    break;
+                case "-scaling":
+                    String[] budgets = value.split(",");
+                    scalingBudgets = new int[budgets.length];
+                    for (int b = 0; b < budgets.length; b++){
+                        scalingBudgets[b] = (int) parseNumber(budgets[b].trim());
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+    }
+    
+    private static long parseNumber(String value){
+        long number;
+        try {
+            number = Long.parseLong(value);
+        } catch (NumberFormatException e){
+            throw new IllegalArgumentException("Not a number: " + value);
+        }
+        if (number < 0){
+            throw new IllegalArgumentException("Negative value: " + value);
+        }
+        return number;
+    }
+    
+    /**
+     * Runs the configured number of sessions at the same time, each on
+     * its own thread.
+     *
+     * @return the report of every session, in order.
+     */
+    List<Report> runSessions(){
+        final Report[] reports = new Report[sessions];
+        Thread[] threads = new Thread[sessions];
+        for (int i = 0; i < sessions; i++){
+            final int index = i;
+            final Long sessionSeed = seed == null ? null : seed + i;
+            final String sessionTimings = timingsFile == null ? null : sessionFile(timingsFile, i);
+            threads[i] = new Thread(new Runnable(){
+                @Override
+                public void run(){
+                    reports[index] = HeadlessRunner.this.run(sessionSeed, sessionTimings);
+                }
+            }, "session-" + i);
+            threads[i].start();
+        }
+        for (Thread t : threads){
+            try {
+                t.join();
+            } catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for " + t.getName(), e);
+            }
+        }
+        return Arrays.asList(reports);
+    }
+    
+    /**
+     * Runs the configured number of ticks once for every budget of
+     * -scaling, one after the other with the same seed.
+     *
+     * @return the report of every budget, in order.
+     */
+    List<Report> runScaling(){
+        List<Report> reports = new ArrayList<>();
+        for (int budget : scalingBudgets){
+            vehicleBudget = budget;
+            reports.add(run(seed, null));
+        }
+        return reports;
+    }
+    
+    /**
+     * Generates a map in a session of its own and runs the configured
+     * number of ticks on it.
+     *
+     * @param seed for the map, null for a random one.
+     * @param timingsFile where to write the timings of the run as CSV,
+     *                  null to not write them.
+     * @return the throughput measured during the run.
+     */
+    Report run(Long seed, String timingsFile){
+        SimulationSession session = seed == null ? new SimulationSession() : new SimulationSession(seed);
+        IWorldMap map = session.getMap();
+        long usedSeed = map.getSeed();
+        session.generate(width, height);
+        map.updateSpawnDelay(spawnDelay);
+        if (vehicleBudget > 0){
+            map.setVehicleBudget(vehicleBudget);
+        }
+        map.setEngineMode(engineMode);
+        if (routeCacheSize >= 0){
+            map.setRouteCacheSize(routeCacheSize);
+        }
+        map.setRouteMode(routeMode);
+        if (rerouteBudget >= 0){
+            map.setRerouteBudget(rerouteBudget);
+        }
+        
+        long vehicleUpdates = 0;
+        int peakVehicles = 0;
+        long startTime = System.nanoTime();
+        for (long tick = 0; tick < ticks; tick++){
+            map.think();
+            int live = map.getNumberOfVehicles();
+            vehicleUpdates += live;
+            if (live > peakVehicles){
+                peakVehicles = live;
+            }
+        }
+        long elapsed = System.nanoTime() - startTime;
+        session.end();
+        if (timingsFile != null){
+            writeTimings(map.getTimings(), timingsFile);
+        }
+        return new Report(usedSeed, ticks, elapsed, vehicleUpdates, peakVehicles,
+                map.getVehicleBudget());
+    }
+    
+    private static String sessionFile(String file, int index){
+        int dot = file.lastIndexOf('.');
+        if (dot <= file.lastIndexOf(File.separatorChar)){
+            return file + "-" + index;
+        }
+        return file.substring(0, dot) + "-" + index + file.substring(dot);
+    }
+    
+    private static void writeTimings(Timings timings, String file){
+        try {
+            timings.writeCsv(new File(file));
+        } catch (IOException e){
+            System.err.println("Could not write the timings to " + file + ": " + e.getMessage());
+        }
+    }
+    
+    /**
+     * The result of one headless run.
+     */
+    static final class Report {
+        
+        private final long seed;
+        private final long ticks;
+        private final long elapsedNanos;
+        private final long vehicleUpdates;
+        private final int peakVehicles;
+        private final int vehicleBudget;
+        
+        Report(long seed, long ticks, long elapsedNanos, long vehicleUpdates, int peakVehicles,
+                int vehicleBudget){
+            this.seed = seed;
+            this.ticks = ticks;
+            this.elapsedNanos = Math.max(1, elapsedNanos);
+            this.vehicleUpdates = vehicleUpdates;
+            this.peakVehicles = peakVehicles;
+            this.vehicleBudget = vehicleBudget;
+        }
+        
+        double getTicksPerSecond(){
+            return ticks * 1e9 / elapsedNanos;
+        }
+        
+        double getVehicleUpdatesPerSecond(){
+            return vehicleUpdates * 1e9 / elapsedNanos;
+        }
+        
+        double getNanosPerVehicleUpdate(){
+            return elapsedNanos / (double) Math.max(1, vehicleUpdates);
+        }
+        
+        int getPeakVehicles(){
+            return peakVehicles;
+        }
+        
+        int getVehicleBudget(){
+            return vehicleBudget;
+        }
+        
+        @Override
+        public String toString(){
+            double simulated = ticks * (double) SimulationThread.TICK_LENGTH / 1000;
+            double wall = elapsedNanos / 1e9;
+            return String.format("Simulated %.1f s (%d ticks) in %.2f s, %.1fx real time%n"
+                    + "ticks/sec:           %.1f%n"
+                    + "vehicle-updates/sec: %.1f%n"
+                    + "peak live vehicles:  %d%n"
+                    + "seed:                %d",
+                    simulated, ticks, wall, simulated / wall,
+                    getTicksPerSecond(), getVehicleUpdatesPerSecond(), peakVehicles, seed);
+        }
+    }
+}
@@ -22,9 +22,15 @@
 
 package controller;
 
-import model.WorldMap;
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
 import util.IDrawable;
-import model.IWorldMap;
+import util.RenderBuffer;
+import util.Timings;
+import util.Viewport;
 import util.Weather;
 
 
@@ -37,8 +43,29 @@ import util.Weather;
  * @author Felix Bärring <felixbarring@gmail.com>
  */
 public class MainController {
-    private volatile static IWorldMap worldMap;
-    private static SimulationThread simThread;
+    
+    /**
+     * Parameters used when generating a new map.
+     */
+    static final int MAP_DENSITY = 50;
+    static final int MAP_MAX_LENGTH = 5;
+    static final int MAP_PASSES = 100;
+    
+    /**
+     * The most routes a simulation keeps between pairs of nodes.
+     */
+    static final int ROUTE_CACHE_SIZE = 1024;
+    
+    /**
+     * The most nodes a simulation searches and writes into repaired
+     * routes in a tick.
+     */
+    static final int REROUTE_BUDGET = 2000;
+    
+    /*
+    the running simulation, null while in the menu
+    */
+    private volatile SimulationSession session;
     
     /**
      * Gets a list of a immutable DrawAbleObject representation
@@ -47,8 +74,61 @@ public class MainController {
      *
      * @return a list of DrawAbleObjects if any, otherwise null.
      */
-    public final static IDrawable[] getGraphics(){
-        return worldMap.getGraphics();
+    public final IDrawable[] getGraphics(){
+        return session.getMap().getGraphics();
+    }
+    
+    /**
+     * Gets the draw commands of the roads, which only change
+     * when a new map is generated.
+     *
+     * @return the buffer holding the roads.
+     */
+    public final RenderBuffer getRoadBuffer(){
+        return session.getMap().getRoadBuffer();
+    }
+    
+    /**
+     * Sets the part of the map that is drawn from the next tick on.
+     *
+     * @param view the part of the map on the screen, null for all of it.
+     */
+    public final void setViewport(Viewport view){
+        session.getMap().setViewport(view);
+    }
+    
+    /**
+     * Gets the timings of the running simulation, which the view adds
+     * its own to.
+     *
+     * @return the timings of the current map.
+     */
+    public final Timings getTimings(){
+        return session.getMap().getTimings();
+    }
+    
+    /**
+     * Writes the timings of the running simulation as CSV to a new file
+     * in the working directory, named after the current time.
+     *
+     * @return the file that was written.
+     * @throws IOException if the file can not be written.
+     */
+    public final File exportTimings() throws IOException{
+        String name = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.ROOT).format(new Date());
+        File file = new File("timings-" + name + ".csv").getAbsoluteFile();
+        getTimings().writeCsv(file);
+        return file;
+    }
+    
+    /**
+     * Gets the draw commands of the latest frame. The buffer is
+     * reused by the model and is only valid until the next call.
+     *
+     * @return the buffer holding the latest frame.
+     */
+    public final RenderBuffer getRenderBuffer(){
+        return session.getMap().getRenderBuffer();
     }
     
     /**
@@ -57,11 +137,12 @@ public class MainController {
      * @param width of the new map as an integer.
      * @param height of the new map as an integer.
      */
-    public final static void generatMap(int width, int height){
+    public final void generatMap(int width, int height){
         // Generate a map.
-        WorldMap.destroyMap();
-        worldMap = WorldMap.getInstance();
-        worldMap.generate(width, height, 50, 5, 100);
+        endSimulation();
+        SimulationSession s = new SimulationSession();
+        s.generate(width, height);
+        session = s;
         resumeSimulation();
     }
     
@@ -70,33 +151,31 @@ public class MainController {
      * 
      * @param map to be loaded. Only name necessary.
      */
-    public final static void loadMap(String map){
+    public final void loadMap(String map){
         // Load an existing map.
-        worldMap = WorldMap.getInstance();
+        if (session == null){
+            session = new SimulationSession();
+        }
         resumeSimulation();
     }
     
-    public synchronized final static void endSimulation(){
-        pauseSimulation();
-        WorldMap.destroyMap();
-        worldMap = null;
+    public synchronized final void endSimulation(){
+        if (session != null){
+            session.end();
+            session = null;
+        }
     }
     
-    public synchronized final static void pauseSimulation(){
-        if(simThread != null){
-            simThread.stop();
-            simThread = null;
-        }
+    public synchronized final void pauseSimulation(){
+        session.pause();
     }
     
-    public synchronized final static void clear(){
-        worldMap.clearMap();
+    public synchronized final void clear(){
+        session.getMap().clearMap();
     }
     
-    public synchronized final static void resumeSimulation(){
-        if(simThread != null) return;
-        simThread = new SimulationThread(worldMap);
-        new Thread(simThread).start();
+    public synchronized final void resumeSimulation(){
+        session.resume();
     }
     
     /**
@@ -104,8 +183,8 @@ public class MainController {
      * 
      * @param delay represented as an integer.
      */
-    public synchronized static void setSpawnDelay(int delay){
-        worldMap.updateSpawnDelay(delay);
+    public synchronized void setSpawnDelay(int delay){
+        session.getMap().updateSpawnDelay(delay);
     }
     
     /**
@@ -114,8 +193,8 @@ public class MainController {
      * 
      * @param time represented as an integer between 0 and 23.
      */
-    public synchronized static void setTimeOfDay(int time){
-        worldMap.setTimeOfDay(time);
+    public synchronized void setTimeOfDay(int time){
+        session.getMap().setTimeOfDay(time);
     }
     
     /**
@@ -123,23 +202,23 @@ public class MainController {
      * 
      * @param current is the new weather in the simulation.
      */
-    public synchronized static void setWeather(Weather current){
-        worldMap.setWeather(current);
+    public synchronized void setWeather(Weather current){
+        session.getMap().setWeather(current);
     }
     
-    public synchronized static int getTimeOfDay(){
-        return worldMap.getTimeOfDay();
+    public synchronized int getTimeOfDay(){
+        return session.getMap().getTimeOfDay();
     }
     
-    public synchronized static Weather getWeather(){
-        return worldMap.getWeather();
+    public synchronized Weather getWeather(){
+        return session.getMap().getWeather();
     }
     
-    public static void setLightsYellow(){
-        worldMap.setLightsYellow();
+    public void setLightsYellow(){
+        session.getMap().setLightsYellow();
     }
-    public static void removeYellowLights(){
-        worldMap.removeYellowLights();
+    public void removeYellowLights(){
+        session.getMap().removeYellowLights();
     }
-    
+
 }
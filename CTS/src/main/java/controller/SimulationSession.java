@@ -0,0 +1,129 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package controller;
+
+import model.EngineMode;
+import model.IWorldMap;
+import model.WorldMap;
+
+/**
+ * One simulation: a map of its own, with its own vehicles, time of day,
+ * weather and random generator, and the thread that ticks it.
+ *
+ * Sessions share nothing with each other, so one process can run as
+ * many scenarios side by side as it has cores for.
+ */
+public final class SimulationSession {
+    
+    private final IWorldMap map;
+    private SimulationThread simThread;
+    private Thread thread;
+    
+    /**
+     * Creates a session with an empty map and a random seed.
+     */
+    public SimulationSession(){
+        map = WorldMap.newInstance();
+        map.setRouteCacheSize(MainController.ROUTE_CACHE_SIZE);
+        map.setRerouteBudget(MainController.REROUTE_BUDGET);
+    }
+    
+    /**
+     * Creates a session with an empty map.
+     * 
+     * @param seed for the generator of the map.
+     */
+    public SimulationSession(long seed){
+        this();
+        map.setSeed(seed);
+    }
+    
+    /**
+     * @return the map of this session.
+     */
+    public IWorldMap getMap(){
+        return map;
+    }
+    
+    /**
+     * Generates the road network of the map.
+     * 
+     * @param width of the map as an integer.
+     * @param height of the map as an integer.
+     */
+    public void generate(int width, int height){
+        map.generate(width, height, MainController.MAP_DENSITY,
+                MainController.MAP_MAX_LENGTH, MainController.MAP_PASSES);
+    }
+    
+    /**
+     * Starts ticking the map on the session's own thread,
+     * does nothing if it is already running.
+     */
+    public synchronized void resume(){
+        if (simThread != null){
+            return;
+        }
+        simThread = new SimulationThread(map);
+        thread = new Thread(simThread, "simulation-" + map.getSeed());
+        thread.start();
+    }
+    
+    /**
+     * Stops ticking the map after the current tick.
+     */
+    public synchronized void pause(){
+        if (simThread != null){
+            simThread.stop();
+            simThread = null;
+            thread = null;
+        }
+    }
+    
+    /**
+     * Stops the session for good: waits for the last tick to finish
+     * and lets go of any worker threads the map has started.
+     */
+    public void end(){
+        Thread last;
+        synchronized (this){
+            last = thread;
+            pause();
+        }
+        if (last != null){
+            try {
+                last.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        map.setEngineMode(EngineMode.SERIAL);
+    }
+    
+    /**
+     * @return true if the map is being ticked.
+     */
+    public synchronized boolean isRunning(){
+        return simThread != null;
+    }
+}
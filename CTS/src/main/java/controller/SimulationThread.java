@@ -22,35 +22,58 @@
 
 package controller;
 import model.IWorldMap;
+import util.TimingHistogram;
+import util.Timings;
 
 /**
  * Thread that will run the simulation logic.
  *
+ * Ticks are started on a fixed clock, one every TICK_LENGTH, no matter
+ * how long each one takes. A tick that runs late is made up for by
+ * starting the next ones right away, and if the map falls more than
+ * MAX_LAG ticks behind the clock the missed ticks are dropped, so the
+ * simulation slows down instead of trying to catch up for ever.
+ *
+ * What is left of every tick when it is done is recorded as the
+ * SLACK timing of the map, ticks that run late leave none.
+ *
  * @author Gustaf Ringius <Gustaf@linux.com>
  * @author Andreas Löfman <lofman.andreas@gmail.com>
  * @author Felix Bärring <felixbarring@gmail.com>
  */
 public final class SimulationThread implements Runnable{
     
+    /**
+     * The length of one simulation tick in milliseconds.
+     */
+    static final int TICK_LENGTH = 20;
+    
+    private static final long TICK_NANOS = TICK_LENGTH * 1000000L;
+    private static final int MAX_LAG = 5;
+    
     private final IWorldMap map;
+    private final TimingHistogram slack;
     private volatile boolean running = false;
     
     protected SimulationThread(IWorldMap map) {
         this.map = map;
+        this.slack = map.getTimings().get(Timings.Phase.SLACK);
         this.running = true;
     }
     
     @Override
     public void run() {
-        int loop = 20;
+        long next = System.nanoTime();
         while (running){
-            long startTime = System.currentTimeMillis();
             map.think();
-            long sleepTime = loop-(System.currentTimeMillis()-startTime);
-            //System.out.println(sleepTime);
-            if (sleepTime > 0){
+            next += TICK_NANOS;
+            long ahead = next - System.nanoTime();
+            slack.record(Math.max(0, ahead));
+            if (ahead < -MAX_LAG * TICK_NANOS){
+                next = System.nanoTime();
+            } else if (ahead > 0){
                 try {
-                    Thread.sleep(sleepTime);
+                    Thread.sleep(ahead / 1000000L, (int) (ahead % 1000000L));
                 } catch (InterruptedException e) {
                     e.printStackTrace();
                 }
@@ -0,0 +1,250 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package model;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import util.TimingWheel;
+
+/**
+ * Keeps track of the nodes that have to think in a tick, and lets the
+ * others sleep.
+ *
+ * A node sleeps while no vehicle it looks at could be let through: when
+ * its incoming lanes are empty, or when the lanes with vehicles all face
+ * a red light. In the latter case it is woken up when one of them turns
+ * green. The lights of a sleeping node are moved on with
+ * Node.skipThinks() before it thinks again, so sleeping does not change
+ * what the node does.
+ *
+ * Nodes are woken up by vehicles entering one of their lanes, which the
+ * lanes report through a LaneListener, or through wake(). Only Node
+ * instances sleep, other nodes think every tick.
+ */
+class ActiveNodes implements LaneListener {
+    
+    /**
+     * The most ticks a node with vehicles looks ahead
+     * for its next green light.
+     */
+    private static final int LOOKAHEAD = 512;
+    
+    private static final long NO_WAKE = -1;
+    
+    private final List<INode> nodes;
+    private final boolean atStopLine;
+    private final Map<INode, Integer> nodeIndex = new IdentityHashMap<>();
+    
+    /*
+    nodes that think in the coming tick, the tick each node last thought
+    in or was caught up to, and the tick a sleeping node is woken up in
+    */
+    private final BitSet active = new BitSet();
+    private final long[] lastThink;
+    private final long[] wakeTick;
+    
+    private final TimingWheel<INode> wakes = new TimingWheel<>();
+    private final List<INode> woken = new ArrayList<>();
+    
+    private List<Lane> lanes;
+    private long now;
+    
+    /**
+     * Starts with every node awake.
+     *
+     * @param nodes all nodes in the map.
+     * @param atStopLine true if only vehicles waiting at a stop line keep
+     *                  a node awake, then whoever moves the vehicles has
+     *                  to wake the node when one arrives. False if every
+     *                  vehicle in an incoming lane does.
+     */
+    ActiveNodes(List<INode> nodes, boolean atStopLine){
+        this.nodes = nodes;
+        this.atStopLine = atStopLine;
+        lastThink = new long[nodes.size()];
+        wakeTick = new long[nodes.size()];
+        for (int i = 0; i < nodes.size(); i++){
+            nodeIndex.put(nodes.get(i), i);
+            wakeTick[i] = NO_WAKE;
+        }
+        active.set(0, nodes.size());
+    }
+    
+    /**
+     * Listens to the lanes so that a vehicle entering a lane wakes
+     * the node at its end.
+     *
+     * @param lanes all lanes in the map.
+     */
+    void listenTo(List<Lane> lanes){
+        this.lanes = lanes;
+        for (Lane l : lanes){
+            l.setListener(this);
+        }
+    }
+    
+    /**
+     * Moves on to the next tick and wakes the nodes whose
+     * light turns green in it.
+     *
+     * @return the new tick.
+     */
+    long advance(){
+        now = wakes.advance(woken);
+        for (INode n : woken){
+            int i = nodeIndex.get(n);
+            if (wakeTick[i] == now){
+                wake(i);
+            }
+        }
+        woken.clear();
+        return now;
+    }
+    
+    /**
+     * Lets every awake node think, in the order of the node list,
+     * and puts those that have nothing left to do to sleep.
+     */
+    void think(){
+        for (int i = active.nextSetBit(0); i >= 0; i = active.nextSetBit(i + 1)){
+            INode n = nodes.get(i);
+            catchUp(i, now - 1);
+            beforeThink(n);
+            n.think();
+            lastThink[i] = now;
+            settle(i);
+        }
+    }
+    
+    /**
+     * Called right before an awake node thinks.
+     *
+     * @param n the node.
+     */
+    void beforeThink(INode n){
+    }
+    
+    /**
+     * Makes a node think in the current tick, or the next one if
+     * the nodes already thought in this tick.
+     *
+     * @param n the node.
+     */
+    void wake(INode n){
+        Integer i = nodeIndex.get(n);
+        if (i != null){
+            wake(i);
+        }
+    }
+    
+    /**
+     * Brings the lights of all sleeping nodes up to date and wakes
+     * them, for when something from outside changes the nodes.
+     */
+    void wakeAll(){
+        for (int i = 0; i < nodes.size(); i++){
+            catchUp(i, now);
+            wake(i);
+        }
+    }
+    
+    /**
+     * Brings the lights of all sleeping nodes up to date and stops
+     * listening to the lanes, so the nodes can be thought every tick
+     * again.
+     */
+    void shutdown(){
+        for (int i = 0; i < nodes.size(); i++){
+            catchUp(i, now);
+        }
+        if (lanes != null){
+            for (Lane l : lanes){
+                l.setListener(null);
+            }
+            lanes = null;
+        }
+        wakes.clear();
+    }
+    
+    /**
+     * @return the number of nodes that think in the coming tick.
+     */
+    int getActiveCount(){
+        return active.cardinality();
+    }
+    
+    @Override
+    public void vehicleEntered(Lane lane, Vehicle v){
+        if (!atStopLine){
+            wake(lane.getEndNode());
+        }
+    }
+    
+    @Override
+    public void vehicleLeft(Lane lane, Vehicle v){
+    }
+    
+    private void wake(int i){
+        active.set(i);
+        wakeTick[i] = NO_WAKE;
+    }
+    
+    /**
+     * Moves the lights of a node on for the ticks it slept through.
+     */
+    private void catchUp(int i, long tick){
+        long skipped = tick - lastThink[i];
+        if (skipped > 0){
+            INode n = nodes.get(i);
+            if (n instanceof Node){
+                ((Node) n).skipThinks(skipped);
+            }
+            lastThink[i] = tick;
+        }
+    }
+    
+    /**
+     * Decides if a node that just thought has to think again in the
+     * next tick, and when to wake it up if it does not.
+     */
+    private void settle(int i){
+        INode n = nodes.get(i);
+        if (!(n instanceof Node)){
+            return;
+        }
+        int idle = ((Node) n).idleThinks(LOOKAHEAD, atStopLine);
+        if (idle == 0){
+            return;
+        }
+        active.clear(i);
+        if (idle > 0){
+            wakeTick[i] = now + idle + 1;
+            wakes.schedule(wakeTick[i], n);
+        } else {
+            wakeTick[i] = NO_WAKE;
+        }
+    }
+}
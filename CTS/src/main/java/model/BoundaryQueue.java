@@ -0,0 +1,133 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package model;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded queue for exactly one producing and one consuming thread.
+ *
+ * Used to hand vehicles over a lane that crosses from one region of a
+ * sharded map into another. Only the producer moves the tail and only
+ * the consumer moves the head, so no locks are needed. Publishing with
+ * lazySet is enough since each side only has to see the other side's
+ * writes eventually, never in a particular order with anything else.
+ *
+ * @param <E> the type of the queued elements.
+ */
+final class BoundaryQueue<E> {
+    
+    private final Object[] buffer;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    
+    /**
+     * @param capacity of the queue, rounded up to a power of two.
+     */
+    BoundaryQueue(int capacity){
+        if (capacity < 1){
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity){
+            size <<= 1;
+        }
+        buffer = new Object[size];
+        mask = size - 1;
+    }
+    
+    /**
+     * Adds an element at the tail. Producer only.
+     *
+     * @param e the element to add, not null.
+     * @return false if the queue is full.
+     */
+    boolean offer(E e){
+        if (e == null){
+            throw new NullPointerException();
+        }
+        long t = tail.get();
+        if (t - head.get() == buffer.length){
+            return false;
+        }
+        buffer[(int) t & mask] = e;
+        tail.lazySet(t + 1);
+        return true;
+    }
+    
+    /**
+     * Producer side check if an offer would fail.
+     *
+     * @return true if there is no room left.
+     */
+    boolean isFull(){
+        return tail.get() - head.get() == buffer.length;
+    }
+    
+    /**
+     * Looks at the element at the head without removing it. Consumer only.
+     *
+     * @return the head element, null if the queue is empty.
+     */
+    @SuppressWarnings("unchecked")
+    E peek(){
+        long h = head.get();
+        if (h == tail.get()){
+            return null;
+        }
+        return (E) buffer[(int) h & mask];
+    }
+    
+    /**
+     * Removes the element at the head. Consumer only.
+     *
+     * @return the removed element, null if the queue is empty.
+     */
+    @SuppressWarnings("unchecked")
+    E poll(){
+        long h = head.get();
+        if (h == tail.get()){
+            return null;
+        }
+        int index = (int) h & mask;
+        E e = (E) buffer[index];
+        buffer[index] = null;
+        head.lazySet(h + 1);
+        return e;
+    }
+    
+    /**
+     * @return the number of queued elements.
+     */
+    int size(){
+        return (int) (tail.get() - head.get());
+    }
+    
+    /**
+     * @return the most elements the queue can hold.
+     */
+    int capacity(){
+        return buffer.length;
+    }
+}
@@ -22,8 +22,10 @@
 
 package model;
 
+import java.util.Random;
 import util.IDrawable;
 import util.DrawableObject;
+import util.RenderBuffer;
 
 
 /**
@@ -43,6 +45,14 @@ public class Car extends Vehicle {
         super(2,160);
     }
     
+    private Car(VehicleStore store, Random random){
+        super(2,160,store,new Environment(),random,null);
+    }
+    
+    private Car(WorldMap world, Random random){
+        super(2,160,world.getStore(),world.getEnvironment(),random,world);
+    }
+    
     /**
      * Factory Method that creates new instances of cars.
      * Cars are 2 meters in length
@@ -54,56 +64,62 @@ public class Car extends Vehicle {
     }
     
     /**
-     * This should be split into more methods if possible. 
-     * It is too clumped up, hard to test and debug 
-     * and might be a victim of redundant code.
+     * Factory Method that creates a new car in the given store.
+     * 
+     * @param store that holds the moving state of the car.
+     * @param random the car's own generator.
+     * @return a newly created car
+     */
+    final static Vehicle newInstance(VehicleStore store, Random random){
+        return new Car(store, random);
+    }
+    
+    /**
+     * Factory Method that creates a new car driving in a map.
      * 
-     * @return 
+     * @param world the map, which holds the car's moving state,
+     *                  environment and routes.
+     * @param random the car's own generator.
+     * @return a newly created car
+     */
+    final static Vehicle newInstance(WorldMap world, Random random){
+        return new Car(world, random);
+    }
+    
+    /**
+     * A full tick for this car on its own, plan followed by commit.
+     * 
+     * @return false if the car is crashed and can not move, true otherwise.
      */
     @Override
     protected boolean think(){
-        int tailgateDistance = 10;
         if (this.getCrashed()){
             return false;
         }
-        
-        //TODO: make all of this more exact
-        //      Acceleration
-        //      Vehicle lengths
-        //      Collissions
-        
-        double moveDistance = getCurrentSpeed()/50;
-        if (this.getVehicleInFront() != null){
-            //We must look at where the vehicle in front is.
-            if (this.getFrontDistance() > moveDistance+tailgateDistance+this.getVehicleInFront().getLength()){
-                this.aimAtTarget();
-                this.move(moveDistance);
-            }
-            //If the vehicle in front is too close, dont move
-            else {
-                //TODO: implement braking and brakedistance to check if vehicles collide
-            }
-        }
-        else {
-            //System.out.println(this.hashCode()+": "+this.getXpos()+", "+this.getYpos());
-            //We have no vehicle in front, just move as you wish, based on the target.
-            if (this.getTargetDistance() > moveDistance){
-                this.aimAtTarget();
-                this.move(moveDistance);
-            }
-            //Not enough distance to move, just set the position to the target.
-            else {
-                this.setXpos(this.getTargetX());
-                this.setYpos(this.getTargetY());
-                // wait for the crossing, which routes us through to the next road
-            }
-        }
-        
+        plan();
+        commit();
         return true;
     }
+    
+    /**
+     * Decides where the car will be at the end of this tick.
+     * 
+     * Only reads the position of this car and the one in front of it,
+     * the move is applied in commit(). The rule itself runs on the
+     * columns of the store, see VehicleStore.plan(int).
+     */
+    @Override
+    protected void plan(){
+        getStore().plan(getSlot());
+    }
 
     @Override
     protected IDrawable getGraphics() {
         return DrawableObject.getRectGraphics(getXpos(), getYpos(), getDirection(), getColor(), 3, 3);
     }
+    
+    @Override
+    void render(RenderBuffer buffer) {
+        buffer.add(IDrawable.Type.RECTANGLE, getColorRGB(), getXpos(), getYpos(), getDirection(), 3, 3);
+    }
 }
\ No newline at end of file
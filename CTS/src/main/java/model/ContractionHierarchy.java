@@ -0,0 +1,565 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package model;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A customizable contraction hierarchy over the nodes of a router, for
+ * answering routes on big maps in microseconds.
+ *
+ * Building it only looks at how the nodes are connected. The nodes are
+ * ranked by nested dissection, splitting the map in halves along its
+ * longer side and ranking the nodes on the border above both halves.
+ * Every node is then contracted in rank order, linking its higher
+ * neighbours to each other with shortcuts.
+ *
+ * Customizing gives every lane and shortcut its weight, from the weights
+ * of the lanes as they are when it runs. It goes through the nodes from
+ * the bottom up and is much cheaper than building, so the map runs it
+ * again every congestion epoch. A customization is published as a whole,
+ * searches never see one half done.
+ *
+ * A search only goes upwards from both ends. The nodes above a node are
+ * its ancestors in the elimination tree, so they are simply walked in
+ * rank order and no queue is needed. Shortcuts on the route found are
+ * then unpacked into the lanes they stand for. Routes are as cheap as
+ * those of Dijkstra over the weights at the time of the customization.
+ * Any number of threads can search at once.
+ */
+final class ContractionHierarchy {
+    
+    private static final int INFINITY = Integer.MAX_VALUE;
+    
+    /**
+     * Parts of the map this small are ranked as they are.
+     */
+    private static final int LEAF_SIZE = 8;
+    
+    private final Router router;
+    private final int size;
+    private final int[] rankOf;
+    private final int[] nodeOf;
+    
+    //Edges between a node and its higher neighbours, by rank.
+    private final int[] upStart;
+    private final int[] upHead;
+    //The same edges seen from the higher end.
+    private final int[] downStart;
+    private final int[] downTail;
+    private final int[] downEdge;
+    
+    //The lanes each edge stands for, going up and going down.
+    private final Lane[][] upLanes;
+    private final Lane[][] downLanes;
+    
+    private int parts;
+    private volatile Metric metric;
+    private int epoch = -1;
+    
+    private final ThreadLocal<Search> searches = new ThreadLocal<Search>(){
+        @Override
+        protected Search initialValue(){
+            return new Search();
+        }
+    };
+    
+    /**
+     * Ranks and contracts the nodes of the router. Routes can only be
+     * found after it was customized.
+     */
+    ContractionHierarchy(Router router){
+        this.router = router;
+        size = router.size();
+        int[][] neighbours = neighbours();
+        rankOf = new int[size];
+        nodeOf = new int[size];
+        Integer[] all = new Integer[size];
+        for (int i = 0; i < size; i++){
+            all[i] = i;
+        }
+        dissect(all, 0, size, 0, neighbours, new int[size], new int[size]);
+        for (int i = 0; i < size; i++){
+            nodeOf[rankOf[i]] = i;
+        }
+        
+        int[][] up = contract(neighbours);
+        upStart = new int[size + 1];
+        for (int r = 0; r < size; r++){
+            upStart[r + 1] = upStart[r] + up[r].length;
+        }
+        upHead = new int[upStart[size]];
+        int[] downCount = new int[size + 1];
+        for (int r = 0; r < size; r++){
+            System.arraycopy(up[r], 0, upHead, upStart[r], up[r].length);
+            for (int h : up[r]){
+                downCount[h + 1]++;
+            }
+        }
+        downStart = new int[size + 1];
+        for (int r = 0; r < size; r++){
+            downStart[r + 1] = downStart[r] + downCount[r + 1];
+        }
+        downTail = new int[upHead.length];
+        downEdge = new int[upHead.length];
+        int[] filled = Arrays.copyOf(downStart, size);
+        for (int r = 0; r < size; r++){
+            for (int e = upStart[r]; e < upStart[r + 1]; e++){
+                int h = upHead[e];
+                downTail[filled[h]] = r;
+                downEdge[filled[h]] = e;
+                filled[h]++;
+            }
+        }
+        
+        upLanes = new Lane[upHead.length][];
+        downLanes = new Lane[upHead.length][];
+        for (int i = 0; i < size; i++){
+            for (Lane l : router.getNode(i).getOutgoingLanes()){
+                int end = router.indexOf(l.getEndNode());
+                if (end < 0 || end == i){
+                    continue;
+                }
+                int from = rankOf[i];
+                int to = rankOf[end];
+                if (from < to){
+                    int e = edge(from, to);
+                    upLanes[e] = add(upLanes[e], l);
+                } else {
+                    int e = edge(to, from);
+                    downLanes[e] = add(downLanes[e], l);
+                }
+            }
+        }
+    }
+    
+    /**
+     * @return true if this hierarchy routes over the given router.
+     */
+    boolean isFor(Router router){
+        return this.router == router;
+    }
+    
+    /**
+     * @return the congestion epoch of the latest customization,
+     *                  -1 if it was never customized.
+     */
+    int getEpoch(){
+        return epoch;
+    }
+    
+    /**
+     * Gives every lane and shortcut its weight from the weights the
+     * lanes have now. Must not be run by two threads at once.
+     *
+     * @param epoch the congestion epoch the weights belong to.
+     */
+    void customize(int epoch){
+        int edges = upHead.length;
+        int[] upWeight = new int[edges];
+        int[] downWeight = new int[edges];
+        for (int e = 0; e < edges; e++){
+            upWeight[e] = lightest(upLanes[e]);
+            downWeight[e] = lightest(downLanes[e]);
+        }
+        int[] upMiddle = new int[edges];
+        int[] downMiddle = new int[edges];
+        Arrays.fill(upMiddle, -1);
+        Arrays.fill(downMiddle, -1);
+        //Every pair of higher neighbours of a node can be linked through it.
+        for (int r = 0; r < size; r++){
+            for (int i = upStart[r]; i < upStart[r + 1]; i++){
+                for (int j = i + 1; j < upStart[r + 1]; j++){
+                    int shortcut = edge(upHead[i], upHead[j]);
+                    int through = add(downWeight[i], upWeight[j]);
+                    if (through < upWeight[shortcut]){
+                        upWeight[shortcut] = through;
+                        upMiddle[shortcut] = r;
+                    }
+                    through = add(downWeight[j], upWeight[i]);
+                    if (through < downWeight[shortcut]){
+                        downWeight[shortcut] = through;
+                        downMiddle[shortcut] = r;
+                    }
+                }
+            }
+        }
+        metric = new Metric(upWeight, downWeight, upMiddle, downMiddle);
+        this.epoch = epoch;
+    }
+    
+    /**
+     * @return the number of lanes and shortcuts between the nodes.
+     */
+    int getEdges(){
+        return upHead.length;
+    }
+    
+    /**
+     * @return how many nodes the latest search on this thread settled.
+     */
+    int getSettled(){
+        return searches.get().settled;
+    }
+    
+    /**
+     * Finds the cheapest route between two nodes of the router.
+     *
+     * @return the route, or null if there is none or the nodes are the
+     *                  same or unknown to the router.
+     */
+    Route findRoute(INode from, INode to){
+        Metric m = metric;
+        if (m == null){
+            throw new IllegalStateException("The hierarchy was never customized");
+        }
+        int source = router.indexOf(from);
+        int target = router.indexOf(to);
+        if (source < 0 || target < 0 || source == target){
+            return null;
+        }
+        return searches.get().run(m, rankOf[source], rankOf[target]);
+    }
+    
+    /**
+     * Gives every node its undirected neighbours, by router index.
+     */
+    private int[][] neighbours(){
+        int[][] result = new int[size][];
+        int[] count = new int[size];
+        int[][] lists = new int[size][4];
+        for (int i = 0; i < size; i++){
+            for (Lane l : router.getNode(i).getOutgoingLanes()){
+                int end = router.indexOf(l.getEndNode());
+                if (end >= 0 && end != i){
+                    lists[i] = push(lists[i], count[i]++, end);
+                    lists[end] = push(lists[end], count[end]++, i);
+                }
+            }
+        }
+        for (int i = 0; i < size; i++){
+            result[i] = unique(Arrays.copyOf(lists[i], count[i]));
+        }
+        return result;
+    }
+    
+    /**
+     * Ranks the nodes in part[from, to) with the ranks starting at
+     * lowest. The part is split in two halves along its longer side,
+     * the nodes of the first half that border the second are ranked
+     * highest, and both halves are ranked the same way below them.
+     */
+    private void dissect(Integer[] part, int from, int to, int lowest,
+            int[][] neighbours, int[] side, int[] stamp){
+        int count = to - from;
+        if (count <= LEAF_SIZE){
+            for (int i = from; i < to; i++){
+                rankOf[part[i]] = lowest + i - from;
+            }
+            return;
+        }
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (int i = from; i < to; i++){
+            INode n = router.getNode(part[i]);
+            minX = Math.min(minX, n.getXpos());
+            maxX = Math.max(maxX, n.getXpos());
+            minY = Math.min(minY, n.getYpos());
+            maxY = Math.max(maxY, n.getYpos());
+        }
+        final boolean alongX = maxX - minX >= maxY - minY;
+        Arrays.sort(part, from, to, new Comparator<Integer>(){
+            @Override
+            public int compare(Integer a, Integer b){
+                INode na = router.getNode(a);
+                INode nb = router.getNode(b);
+                int c = alongX ? Double.compare(na.getXpos(), nb.getXpos())
+                        : Double.compare(na.getYpos(), nb.getYpos());
+                return c != 0 ? c : Integer.compare(a, b);
+            }
+        });
+        int middle = from + count / 2;
+        //Marks which half of this part every node is in.
+        int mark = ++parts;
+        for (int i = from; i < to; i++){
+            stamp[part[i]] = mark;
+            side[part[i]] = i < middle ? 0 : 1;
+        }
+        //Moves the border of the first half to its end.
+        int border = middle;
+        for (int i = middle - 1; i >= from; i--){
+            int n = part[i];
+            for (int m : neighbours[n]){
+                if (stamp[m] == mark && side[m] == 1){
+                    border--;
+                    part[i] = part[border];
+                    part[border] = n;
+                    break;
+                }
+            }
+        }
+        Integer[] rest = new Integer[count - (middle - border)];
+        int k = 0;
+        for (int i = from; i < border; i++){
+            rest[k++] = part[i];
+        }
+        for (int i = middle; i < to; i++){
+            rest[k++] = part[i];
+        }
+        int firstHalf = border - from;
+        int top = lowest + rest.length;
+        for (int i = border; i < middle; i++){
+            rankOf[part[i]] = top + i - border;
+        }
+        dissect(rest, 0, firstHalf, lowest, neighbours, side, stamp);
+        dissect(rest, firstHalf, rest.length, lowest + firstHalf, neighbours, side, stamp);
+    }
+    
+    /**
+     * Contracts the nodes in rank order. The higher neighbours of a node
+     * all become neighbours of the lowest of them, which is its parent in
+     * the elimination tree, and that links every pair of them as well
+     * once the parent is contracted.
+     *
+     * @return the sorted higher neighbours of every rank.
+     */
+    private int[][] contract(int[][] neighbours){
+        int[][] up = new int[size][];
+        int[] count = new int[size];
+        int[][] lists = new int[size][];
+        for (int r = 0; r < size; r++){
+            int[] n = neighbours[nodeOf[r]];
+            lists[r] = new int[Math.max(4, n.length)];
+            for (int m : n){
+                if (rankOf[m] > r){
+                    lists[r] = push(lists[r], count[r]++, rankOf[m]);
+                }
+            }
+        }
+        for (int r = 0; r < size; r++){
+            up[r] = unique(Arrays.copyOf(lists[r], count[r]));
+            lists[r] = null;
+            if (up[r].length > 1){
+                int parent = up[r][0];
+                for (int i = 1; i < up[r].length; i++){
+                    lists[parent] = push(lists[parent], count[parent]++, up[r][i]);
+                }
+            }
+        }
+        return up;
+    }
+    
+    /**
+     * @return the edge between two ranks, lower first.
+     */
+    private int edge(int lower, int higher){
+        int e = Arrays.binarySearch(upHead, upStart[lower], upStart[lower + 1], higher);
+        if (e < 0){
+            throw new IllegalStateException("No edge between " + lower + " and " + higher);
+        }
+        return e;
+    }
+    
+    private static int lightest(Lane[] lanes){
+        int weight = INFINITY;
+        if (lanes != null){
+            for (Lane l : lanes){
+                weight = Math.min(weight, l.getWeight());
+            }
+        }
+        return weight;
+    }
+    
+    private static int add(int a, int b){
+        if (a == INFINITY || b == INFINITY){
+            return INFINITY;
+        }
+        return (int) Math.min(INFINITY - 1L, (long) a + b);
+    }
+    
+    private static Lane[] add(Lane[] lanes, Lane l){
+        if (lanes == null){
+            return new Lane[]{l};
+        }
+        Lane[] more = Arrays.copyOf(lanes, lanes.length + 1);
+        more[lanes.length] = l;
+        return more;
+    }
+    
+    private static int[] push(int[] list, int index, int value){
+        if (index == list.length){
+            list = Arrays.copyOf(list, Math.max(4, list.length * 2));
+        }
+        list[index] = value;
+        return list;
+    }
+    
+    private static int[] unique(int[] values){
+        Arrays.sort(values);
+        int k = 0;
+        for (int i = 0; i < values.length; i++){
+            if (k == 0 || values[k - 1] != values[i]){
+                values[k++] = values[i];
+            }
+        }
+        return Arrays.copyOf(values, k);
+    }
+    
+    /**
+     * The weights of one customization.
+     */
+    private static final class Metric {
+        
+        private final int[] up;
+        private final int[] down;
+        //The node a shortcut goes through, -1 for a lane.
+        private final int[] upMiddle;
+        private final int[] downMiddle;
+        
+        Metric(int[] up, int[] down, int[] upMiddle, int[] downMiddle){
+            this.up = up;
+            this.down = down;
+            this.upMiddle = upMiddle;
+            this.downMiddle = downMiddle;
+        }
+    }
+    
+    /**
+     * The state of one search, reused by the next search on the
+     * same thread.
+     */
+    private final class Search {
+        
+        private final int[] forward = new int[size];
+        private final int[] backward = new int[size];
+        private final int[] forwardFrom = new int[size];
+        private final int[] backwardTo = new int[size];
+        private final int[] forwardStamp = new int[size];
+        private final int[] backwardStamp = new int[size];
+        private int current;
+        private int settled;
+        private int[] route = new int[16];
+        private int length;
+        
+        Route run(Metric m, int source, int target){
+            current++;
+            if (current == 0){
+                Arrays.fill(forwardStamp, 0);
+                Arrays.fill(backwardStamp, 0);
+                current = 1;
+            }
+            settled = 0;
+            //Up from the source along the lanes and shortcuts.
+            reach(forward, forwardFrom, forwardStamp, source, 0, -1);
+            for (int r = source; r >= 0; r = parent(r)){
+                settled++;
+                if (forwardStamp[r] != current){
+                    continue;
+                }
+                for (int e = upStart[r]; e < upStart[r + 1]; e++){
+                    reach(forward, forwardFrom, forwardStamp, upHead[e], add(forward[r], m.up[e]), r);
+                }
+            }
+            //Up from the target against them, meeting the first search.
+            int best = INFINITY;
+            int meeting = -1;
+            reach(backward, backwardTo, backwardStamp, target, 0, -1);
+            for (int r = target; r >= 0; r = parent(r)){
+                settled++;
+                if (backwardStamp[r] != current){
+                    continue;
+                }
+                if (forwardStamp[r] == current && add(forward[r], backward[r]) < best){
+                    best = add(forward[r], backward[r]);
+                    meeting = r;
+                }
+                for (int e = upStart[r]; e < upStart[r + 1]; e++){
+                    reach(backward, backwardTo, backwardStamp, upHead[e], add(backward[r], m.down[e]), r);
+                }
+            }
+            if (meeting < 0){
+                return null;
+            }
+            //The way up from the source, turned around.
+            length = 0;
+            for (int r = meeting; r >= 0; r = forwardFrom[r]){
+                push(r);
+            }
+            int[] up = new int[length];
+            for (int i = 0; i < up.length; i++){
+                up[i] = route[up.length - 1 - i];
+            }
+            //Then unpacked, together with the way down to the target.
+            length = 0;
+            push(up[0]);
+            for (int i = 1; i < up.length; i++){
+                unpack(m, up[i - 1], up[i]);
+            }
+            for (int r = meeting; backwardTo[r] >= 0; r = backwardTo[r]){
+                unpack(m, r, backwardTo[r]);
+            }
+            for (int i = 0; i < length; i++){
+                route[i] = nodeOf[route[i]];
+            }
+            return router.toRoute(route, length);
+        }
+        
+        private void reach(int[] distance, int[] from, int[] stamp, int r, int d, int previous){
+            if (d == INFINITY){
+                return;
+            }
+            if (stamp[r] != current || d < distance[r]){
+                stamp[r] = current;
+                distance[r] = d;
+                from[r] = previous;
+            }
+        }
+        
+        private int parent(int r){
+            return upStart[r] < upStart[r + 1] ? upHead[upStart[r]] : -1;
+        }
+        
+        /**
+         * Appends the nodes from a to b, but not a itself, replacing
+         * shortcuts with the two edges they were made from.
+         */
+        private void unpack(Metric m, int a, int b){
+            int middle = a < b ? m.upMiddle[edge(a, b)] : m.downMiddle[edge(b, a)];
+            if (middle < 0){
+                push(b);
+            } else {
+                unpack(m, a, middle);
+                unpack(m, middle, b);
+            }
+        }
+        
+        private void push(int r){
+            if (length == route.length){
+                route = Arrays.copyOf(route, length * 2);
+            }
+            route[length++] = r;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package model;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The indices of the things that changed since the list was last
+ * cleared, every index at most once.
+ *
+ * Marking may be done by many threads at once as long as no two of
+ * them mark the same index, which holds for the slots and nodes of a
+ * map since every vehicle and node is moved by one thread in a tick.
+ */
+final class DirtyList {
+    
+    private boolean[] marked;
+    private int[] indices;
+    private final AtomicInteger count = new AtomicInteger();
+    
+    /**
+     * @param capacity the number of indices that can be marked.
+     */
+    DirtyList(int capacity){
+        marked = new boolean[capacity];
+        indices = new int[capacity];
+    }
+    
+    /**
+     * Adds an index to the list unless it already is in it.
+     *
+     * @param index below the capacity of the list.
+     */
+    void mark(int index){
+        if (!marked[index]){
+            marked[index] = true;
+            indices[count.getAndIncrement()] = index;
+        }
+    }
+    
+    /**
+     * @return the number of marked indices.
+     */
+    int size(){
+        return count.get();
+    }
+    
+    /**
+     * @param i a number below size().
+     * @return a marked index, in the order they were marked.
+     */
+    int get(int i){
+        return indices[i];
+    }
+    
+    /**
+     * Forgets every marked index.
+     */
+    void clear(){
+        int n = count.get();
+        for (int i = 0; i < n; i++){
+            marked[indices[i]] = false;
+        }
+        count.set(0);
+    }
+    
+    /**
+     * Makes room for more indices. Not to be called while marking.
+     *
+     * @param capacity the new number of indices that can be marked.
+     */
+    void grow(int capacity){
+        if (capacity > marked.length){
+            marked = Arrays.copyOf(marked, capacity);
+            indices = Arrays.copyOf(indices, capacity);
+        }
+    }
+}
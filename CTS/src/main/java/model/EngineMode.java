@@ -0,0 +1,59 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package model;
+
+/**
+ * The different ways the map can run a tick.
+ *
+ * All modes split a tick in two phases. First every vehicle plans its
+ * move from the state at the start of the tick, then all moves are
+ * committed and the nodes hand vehicles over between lanes.
+ */
+public enum EngineMode {
+    
+    /**
+     * Everything runs on the thread calling think().
+     */
+    SERIAL,
+    
+    /**
+     * Plan and commit run on a fork-join pool, partitioned by lane.
+     * Gives exactly the same result as SERIAL.
+     */
+    PARALLEL,
+    
+    /**
+     * The map is split into spatial regions that each run their
+     * vehicles and nodes on their own thread. Vehicles crossing into
+     * another region are handed over with one tick of delay.
+     */
+    SHARDED,
+    
+    /**
+     * Only what changes in a tick is run. A vehicle alone in its lane
+     * moves without being planned until it reaches the end, and a node
+     * sleeps while no vehicle can pass it. Follows the same rules as
+     * SERIAL, but positions may differ from it in the last bits.
+     */
+    EVENT
+}
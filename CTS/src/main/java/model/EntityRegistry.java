@@ -0,0 +1,259 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * The live traffic entities of a map, kept densely packed in an array.
+ *
+ * Every entity remembers where it sits in the array through its store
+ * slot, so removing one is done by moving the last entity into the gap
+ * instead of shifting everything after it. The order of the entities is
+ * therefore not kept. Slots given back to the store are reused by later
+ * entities through the free list of the store.
+ *
+ * While a frame listener is kept up to date the entities that were
+ * added and removed are kept as well, until the changes are cleared.
+ */
+final class EntityRegistry extends AbstractList<TrafficEntity> implements RandomAccess {
+    
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int NOT_REGISTERED = -1;
+    
+    private TrafficEntity[] entities = new TrafficEntity[INITIAL_CAPACITY];
+    private int[] indexOfSlot = new int[INITIAL_CAPACITY];
+    private int size;
+    
+    private boolean tracking;
+    private TrafficEntity[] added = new TrafficEntity[16];
+    private int addedCount;
+    private TrafficEntity[] removed = new TrafficEntity[16];
+    private int removedCount;
+    
+    EntityRegistry(){
+        Arrays.fill(indexOfSlot, NOT_REGISTERED);
+    }
+    
+    @Override
+    public TrafficEntity get(int index){
+        if (index < 0 || index >= size){
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return entities[index];
+    }
+    
+    @Override
+    public int size(){
+        return size;
+    }
+    
+    /**
+     * Registers an entity at the end of the array.
+     *
+     * @param e the entity to add.
+     * @return true if the entity was added, false if it already was registered.
+     */
+    @Override
+    public boolean add(TrafficEntity e){
+        int slot = e.getSlot();
+        if (slot >= indexOfSlot.length){
+            int old = indexOfSlot.length;
+            indexOfSlot = Arrays.copyOf(indexOfSlot, Math.max(slot + 1, old * 2));
+            Arrays.fill(indexOfSlot, old, indexOfSlot.length, NOT_REGISTERED);
+        }
+        if (indexOfSlot[slot] != NOT_REGISTERED){
+            return false;
+        }
+        if (size == entities.length){
+            entities = Arrays.copyOf(entities, size * 2);
+        }
+        indexOfSlot[slot] = size;
+        entities[size++] = e;
+        modCount++;
+        if (tracking){
+            added = append(added, addedCount++, e);
+        }
+        return true;
+    }
+    
+    /**
+     * Removes an entity in constant time by moving the last
+     * entity into its place.
+     *
+     * @param o the entity to remove.
+     * @return true if the entity was registered.
+     */
+    @Override
+    public boolean remove(Object o){
+        int index = indexOf(o);
+        if (index == -1){
+            return false;
+        }
+        remove(index);
+        return true;
+    }
+    
+    /**
+     * Finds an entity in constant time through its store slot.
+     *
+     * @param o the entity to look for.
+     * @return where the entity sits in the array, -1 if it is not registered.
+     */
+    @Override
+    public int indexOf(Object o){
+        if (!(o instanceof TrafficEntity)){
+            return -1;
+        }
+        TrafficEntity e = (TrafficEntity) o;
+        int slot = e.getSlot();
+        if (slot >= indexOfSlot.length || indexOfSlot[slot] == NOT_REGISTERED
+                || entities[indexOfSlot[slot]] != e){
+            return -1;
+        }
+        return indexOfSlot[slot];
+    }
+    
+    @Override
+    public boolean contains(Object o){
+        return indexOf(o) != -1;
+    }
+    
+    @Override
+    public TrafficEntity remove(int index){
+        TrafficEntity removed = get(index);
+        TrafficEntity last = entities[--size];
+        entities[index] = last;
+        indexOfSlot[last.getSlot()] = index;
+        entities[size] = null;
+        indexOfSlot[removed.getSlot()] = NOT_REGISTERED;
+        modCount++;
+        if (tracking){
+            this.removed = append(this.removed, removedCount++, removed);
+        }
+        return removed;
+    }
+    
+    /**
+     * Removes every entity that is no longer alive and gives
+     * their slots back to the store.
+     *
+     * @param store that the entities were allocated in.
+     * @return the number of removed entities.
+     */
+    int removeDead(VehicleStore store){
+        int removed = 0;
+        int i = 0;
+        while (i < size){
+            TrafficEntity e = entities[i];
+            if (e.alive()){
+                i++;
+            } else {
+                //The last entity is moved into i, so look at i again.
+                remove(i);
+                store.release(e.getSlot());
+                removed++;
+            }
+        }
+        return removed;
+    }
+    
+    @Override
+    public void clear(){
+        for (int i = 0; i < size; i++){
+            indexOfSlot[entities[i].getSlot()] = NOT_REGISTERED;
+            if (tracking){
+                removed = append(removed, removedCount++, entities[i]);
+            }
+            entities[i] = null;
+        }
+        size = 0;
+        modCount++;
+    }
+    
+    /**
+     * Starts or stops keeping the entities that are added and removed.
+     * Tracking starts with every registered entity counted as added.
+     *
+     * @param track true to start tracking, false to stop.
+     */
+    void trackChanges(boolean track){
+        tracking = track;
+        clearChanges();
+        if (track){
+            for (int i = 0; i < size; i++){
+                added = append(added, addedCount++, entities[i]);
+            }
+        }
+    }
+    
+    /**
+     * @return the number of entities added since the changes were cleared.
+     */
+    int getAddedCount(){
+        return addedCount;
+    }
+    
+    /**
+     * @param i a number below getAddedCount().
+     * @return an added entity, which may have been removed again since.
+     */
+    TrafficEntity getAdded(int i){
+        return added[i];
+    }
+    
+    /**
+     * @return the number of entities removed since the changes were cleared.
+     */
+    int getRemovedCount(){
+        return removedCount;
+    }
+    
+    /**
+     * @param i a number below getRemovedCount().
+     * @return a removed entity.
+     */
+    TrafficEntity getRemoved(int i){
+        return removed[i];
+    }
+    
+    /**
+     * Forgets the entities that were added and removed.
+     */
+    void clearChanges(){
+        Arrays.fill(added, 0, addedCount, null);
+        Arrays.fill(removed, 0, removedCount, null);
+        addedCount = 0;
+        removedCount = 0;
+    }
+    
+    private static TrafficEntity[] append(TrafficEntity[] list, int index, TrafficEntity e){
+        if (index == list.length){
+            list = Arrays.copyOf(list, index * 2);
+        }
+        list[index] = e;
+        return list;
+    }
+}
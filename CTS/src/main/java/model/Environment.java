@@ -0,0 +1,75 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package model;
+
+import util.Weather;
+
+/**
+ * The time of day and the weather of one simulation, which every
+ * traffic entity in it takes into account when it decides whether
+ * to take a risk.
+ *
+ * Written by the controlling thread and read by the simulation, so
+ * both values are volatile.
+ */
+public final class Environment {
+    
+    private volatile int timeOfDay = 8;
+    private volatile Weather weather = Weather.SUNSHINE;
+    
+    /**
+     * Updates the current time if the new time is valid.
+     *
+     * @param time an hour between 0 and 23.
+     */
+    public void setTimeOfDay(int time){
+        if (time < 24 && time >= 0){
+            timeOfDay = time;
+        }
+    }
+    
+    /**
+     * @return the current hour as an integer.
+     */
+    public int getTimeOfDay(){
+        return timeOfDay;
+    }
+    
+    /**
+     * Updates the current weather, null is ignored.
+     *
+     * @param current weather.
+     */
+    public void setWeather(Weather current){
+        if (current != null){
+            weather = current;
+        }
+    }
+    
+    /**
+     * @return the current weather.
+     */
+    public Weather getWeather(){
+        return weather;
+    }
+}
@@ -0,0 +1,263 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import util.TimingWheel;
+
+/**
+ * Runs the map as a discrete-event simulation, so that a tick costs
+ * about as much as the things that actually happen in it.
+ *
+ * A vehicle that is alone in its lane has nobody to follow, so its path
+ * to the end of the lane is known when it enters. It is anchored in the
+ * VehicleStore and its arrival is put on a timing wheel. It is not
+ * planned or committed until it arrives, and its position is worked out
+ * from the anchor whenever somebody needs to look at it. Lanes holding
+ * two or more vehicles are planned and committed every tick as before.
+ *
+ * A node only thinks when something can happen there, see ActiveNodes.
+ * A node with no vehicle waiting at a stop line sleeps until a vehicle
+ * arrives, and one whose waiting vehicles all face a red light sleeps
+ * until the light turns.
+ *
+ * The rules are the same as in EngineMode.SERIAL, but an anchored
+ * vehicle's position comes from one multiplication instead of many
+ * additions, so positions can differ in the last bits.
+ */
+final class EventEngine implements LaneListener {
+    
+    private final List<Lane> lanes;
+    private final VehicleStore store;
+    private final ActiveNodes nodes;
+    
+    private final TimingWheel<Vehicle> arrivals = new TimingWheel<>();
+    private final List<Vehicle> arrived = new ArrayList<>();
+    
+    /*
+    lanes holding more than one vehicle, these are planned and committed
+    */
+    private final Set<Lane> busyLanes = Collections.newSetFromMap(new IdentityHashMap<Lane, Boolean>());
+    
+    /*
+    anchored vehicles that have not arrived yet, the only ones whose
+    position changes without them being planned and committed
+    */
+    private final Set<Vehicle> moving = Collections.newSetFromMap(new IdentityHashMap<Vehicle, Boolean>());
+    
+    private long now;
+    
+    /**
+     * Takes over a map whose vehicles and nodes are all up to date.
+     *
+     * @param nodes all nodes in the map.
+     * @param lanes all lanes in the map.
+     * @param store the store holding the vehicles of the map.
+     */
+    EventEngine(List<INode> nodes, List<Lane> lanes, VehicleStore store){
+        this.lanes = lanes;
+        this.store = store;
+        this.nodes = new ActiveNodes(nodes, true){
+            @Override
+            void beforeThink(INode n){
+                materializeExits(n);
+            }
+        };
+        for (Lane l : lanes){
+            l.setListener(this);
+            Vehicle first = l.getFirstVehicle();
+            if (first == null){
+                continue;
+            }
+            if (first.getVehicleBehind() == null){
+                anchor(first, l);
+            } else {
+                busyLanes.add(l);
+            }
+        }
+    }
+    
+    /**
+     * Runs one tick: delivers the arrivals and wake-ups that are due,
+     * moves the vehicles in busy lanes and lets the awake nodes think.
+     */
+    void tick(){
+        now = arrivals.advance(arrived);
+        nodes.advance();
+        for (Vehicle v : arrived){
+            arrive(v);
+        }
+        arrived.clear();
+        
+        for (Lane l : busyLanes){
+            for (Vehicle v = l.getFirstVehicle(); v != null; v = v.getVehicleBehind()){
+                store.plan(v.getSlot());
+            }
+        }
+        for (Lane l : busyLanes){
+            Vehicle first = l.getFirstVehicle();
+            boolean waiting = first.getTargetDistance() == 0;
+            for (Vehicle v = first; v != null; v = v.getVehicleBehind()){
+                store.commit(v.getSlot());
+            }
+            if (!waiting && first.getTargetDistance() == 0){
+                nodes.wake(l.getEndNode());
+            }
+        }
+        
+        nodes.think();
+    }
+    
+    /**
+     * Puts the anchored vehicles on the outgoing lanes of a node at
+     * their current positions, so the node can see how much room
+     * there is left.
+     *
+     * @param n the node.
+     */
+    void materializeExits(INode n){
+        for (Lane l : n.getOutgoingLanes()){
+            Vehicle v = l.getFirstVehicle();
+            if (v != null && store.ballistic[v.getSlot()]){
+                store.materialize(v.getSlot(), now);
+            }
+        }
+    }
+    
+    /**
+     * Puts every anchored vehicle that is still on its way at its
+     * current position. Vehicles that have arrived, left their lane or
+     * died since they were anchored are forgotten on the way.
+     */
+    void materializeMoving(){
+        for (Iterator<Vehicle> it = moving.iterator(); it.hasNext();){
+            Vehicle v = it.next();
+            int slot = v.getSlot();
+            Lane lane = v.getCurrentLane();
+            if (!v.alive() || !store.ballistic[slot] || lane == null || lane.getFirstVehicle() != v){
+                it.remove();
+                continue;
+            }
+            store.materialize(slot, now);
+            if (now >= store.arrivalTick[slot]){
+                it.remove();
+            }
+        }
+    }
+    
+    /**
+     * Brings the lights of all sleeping nodes up to date and wakes
+     * them, for when something outside the engine changes the nodes.
+     */
+    void wakeAll(){
+        nodes.wakeAll();
+    }
+    
+    /**
+     * Hands the map back in a state the other engines can run: every
+     * vehicle at its current position and planned each tick, and the
+     * lights of every node up to date.
+     */
+    void shutdown(){
+        for (Lane l : lanes){
+            Vehicle v = l.getFirstVehicle();
+            if (v != null && store.ballistic[v.getSlot()]){
+                store.unanchor(v.getSlot(), now);
+            }
+            l.setListener(null);
+        }
+        nodes.shutdown();
+        arrivals.clear();
+        busyLanes.clear();
+        moving.clear();
+    }
+    
+    /**
+     * @return the number of nodes that think in the coming tick.
+     */
+    int getActiveNodeCount(){
+        return nodes.getActiveCount();
+    }
+    
+    /**
+     * @return the number of lanes that are planned and committed.
+     */
+    int getBusyLaneCount(){
+        return busyLanes.size();
+    }
+    
+    @Override
+    public void vehicleEntered(Lane lane, Vehicle v){
+        Vehicle front = v.getVehicleInFront();
+        if (front == null){
+            anchor(v, lane);
+            return;
+        }
+        if (store.ballistic[front.getSlot()]){
+            store.unanchor(front.getSlot(), now);
+        }
+        busyLanes.add(lane);
+    }
+    
+    @Override
+    public void vehicleLeft(Lane lane, Vehicle v){
+        store.ballistic[v.getSlot()] = false;
+        Vehicle first = lane.getFirstVehicle();
+        if (first == null){
+            busyLanes.remove(lane);
+        } else if (first.getVehicleBehind() == null){
+            busyLanes.remove(lane);
+            anchor(first, lane);
+        }
+    }
+    
+    private void anchor(Vehicle v, Lane lane){
+        if (v.getCrashed()){
+            return;
+        }
+        long arrival = store.anchor(v.getSlot(), now);
+        if (arrival <= now){
+            nodes.wake(lane.getEndNode());
+        } else if (arrival != Long.MAX_VALUE){
+            arrivals.schedule(arrival, v);
+            moving.add(v);
+        }
+    }
+    
+    private void arrive(Vehicle v){
+        int slot = v.getSlot();
+        Lane lane = v.getCurrentLane();
+        //The vehicle may have died or been unanchored since it was scheduled.
+        if (!v.alive() || !store.ballistic[slot] || store.arrivalTick[slot] != now
+                || lane == null || lane.getFirstVehicle() != v){
+            return;
+        }
+        store.materialize(slot, now);
+        nodes.wake(lane.getEndNode());
+    }
+}
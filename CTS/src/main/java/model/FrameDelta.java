@@ -0,0 +1,280 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import util.RenderBuffer;
+
+/**
+ * What changed in a map during one tick: the vehicles that were killed,
+ * spawned or moved and the nodes whose lights changed.
+ *
+ * Vehicles are keyed by their slot in the store of the map. A slot may
+ * be given to a new vehicle in the same tick its old one was killed,
+ * so a delta is applied by removing the killed first, then adding the
+ * spawned and then moving the rest.
+ *
+ * The delta is made from what the map marked as changed during the
+ * tick: the vehicles that were added to or removed from the registry,
+ * the slots whose position or direction was set and the nodes whose
+ * lights were set. Its size and the time taken to make it grow with
+ * the number that changed, not with the size of the map, and the
+ * lanes are only sent when a map is loaded.
+ */
+public final class FrameDelta {
+    
+    private final RenderBuffer spawned = new RenderBuffer();
+    private final RenderBuffer moved = new RenderBuffer();
+    private int[] killed = new int[16];
+    private int killedCount;
+    private int[] signalNodes = new int[16];
+    private int[] signalStates = new int[16];
+    private int signalCount;
+    private long tick;
+    
+    private final EntityRegistry entities;
+    private final VehicleStore store;
+    private List<INode> nodes = Collections.emptyList();
+    private DirtyList signals = new DirtyList(0);
+    
+    /*
+    what was sent last, by slot: the vehicle and the position it was
+    drawn at, and by node the state of its lights
+    */
+    private TrafficEntity[] sent = new TrafficEntity[0];
+    private float[] sentX = new float[0];
+    private float[] sentY = new float[0];
+    private float[] sentYaw = new float[0];
+    private int[] lights = new int[0];
+    
+    /**
+     * @param entities the registry of the map.
+     * @param store the vehicles of the map are allocated in.
+     */
+    FrameDelta(EntityRegistry entities, VehicleStore store){
+        this.entities = entities;
+        this.store = store;
+    }
+    
+    /**
+     * @return the number of ticks since the map was loaded.
+     */
+    public long getTick(){
+        return tick;
+    }
+    
+    /**
+     * @return one command per new vehicle, keyed by its slot.
+     */
+    public RenderBuffer getSpawned(){
+        return spawned;
+    }
+    
+    /**
+     * @return one command per vehicle that moved or turned, keyed by its slot.
+     */
+    public RenderBuffer getMoved(){
+        return moved;
+    }
+    
+    /**
+     * @return the number of vehicles that were killed.
+     */
+    public int getKilledCount(){
+        return killedCount;
+    }
+    
+    /**
+     * @param index a number below getKilledCount().
+     * @return the slot of a killed vehicle.
+     */
+    public int getKilled(int index){
+        return killed[index];
+    }
+    
+    /**
+     * @return the number of nodes whose lights changed.
+     */
+    public int getSignalCount(){
+        return signalCount;
+    }
+    
+    /**
+     * @param index a number below getSignalCount().
+     * @return the index of the node in the list of nodes.
+     */
+    public int getSignalNode(int index){
+        return signalNodes[index];
+    }
+    
+    /**
+     * @param index a number below getSignalCount().
+     * @return the new state, see INode.getSignalState().
+     */
+    public int getSignalState(int index){
+        return signalStates[index];
+    }
+    
+    /**
+     * Forgets what was sent and starts keeping the changes of a newly
+     * loaded map. Every vehicle in it is sent as spawned by the next
+     * update.
+     */
+    void load(List<INode> nodes){
+        unload();
+        Arrays.fill(sent, null);
+        tick = 0;
+        this.nodes = nodes;
+        signals = new DirtyList(nodes.size());
+        lights = new int[nodes.size()];
+        for (int i = 0; i < nodes.size(); i++){
+            lights[i] = nodes.get(i).getSignalState();
+            if (nodes.get(i) instanceof Node){
+                final DirtyList marks = signals;
+                final int index = i;
+                ((Node) nodes.get(i)).setSignalListener(new SignalListener(){
+                    @Override
+                    public void signalChanged(Node node){
+                        marks.mark(index);
+                    }
+                });
+            }
+        }
+        entities.trackChanges(true);
+        store.trackMoves(true);
+    }
+    
+    /**
+     * Stops keeping the changes of the map.
+     */
+    void unload(){
+        for (INode n : nodes){
+            if (n instanceof Node){
+                ((Node) n).setSignalListener(null);
+            }
+        }
+        nodes = Collections.emptyList();
+        entities.trackChanges(false);
+        store.trackMoves(false);
+    }
+    
+    /**
+     * Turns what was marked as changed since the last update into a
+     * delta, and clears the marks.
+     */
+    void update(){
+        tick++;
+        spawned.clear();
+        moved.clear();
+        killedCount = 0;
+        signalCount = 0;
+        
+        for (int i = 0; i < entities.getRemovedCount(); i++){
+            TrafficEntity e = entities.getRemoved(i);
+            int slot = e.getSlot();
+            if (slot < sent.length && sent[slot] == e){
+                sent[slot] = null;
+                addKilled(slot);
+            }
+        }
+        
+        //Vehicles that are not sent yet are sent whole below.
+        DirtyList slots = store.getMoved();
+        for (int i = 0; i < slots.size(); i++){
+            int slot = slots.get(i);
+            TrafficEntity e = slot < sent.length ? sent[slot] : null;
+            if (e != null && keepPosition(e, slot)){
+                int n = moved.size();
+                e.render(moved);
+                moved.setKeys(n, slot);
+            }
+        }
+        slots.clear();
+        
+        for (int i = 0; i < entities.getAddedCount(); i++){
+            TrafficEntity e = entities.getAdded(i);
+            if (entities.contains(e)){
+                int slot = e.getSlot();
+                ensureSlot(slot);
+                sent[slot] = e;
+                keepPosition(e, slot);
+                int n = spawned.size();
+                e.render(spawned);
+                spawned.setKeys(n, slot);
+            }
+        }
+        entities.clearChanges();
+        
+        for (int i = 0; i < signals.size(); i++){
+            int node = signals.get(i);
+            int state = nodes.get(node).getSignalState();
+            if (state != lights[node]){
+                lights[node] = state;
+                if (signalCount == signalNodes.length){
+                    signalNodes = Arrays.copyOf(signalNodes, signalCount * 2);
+                    signalStates = Arrays.copyOf(signalStates, signalCount * 2);
+                }
+                signalNodes[signalCount] = node;
+                signalStates[signalCount] = state;
+                signalCount++;
+            }
+        }
+        signals.clear();
+    }
+    
+    /*
+    Remembers where a vehicle is drawn, returns false if it was already
+    drawn there.
+    */
+    private boolean keepPosition(TrafficEntity e, int slot){
+        float x = (float) e.getXpos();
+        float y = (float) e.getYpos();
+        float yaw = (float) e.getDirection();
+        if (x == sentX[slot] && y == sentY[slot] && yaw == sentYaw[slot]){
+            return false;
+        }
+        sentX[slot] = x;
+        sentY[slot] = y;
+        sentYaw[slot] = yaw;
+        return true;
+    }
+    
+    private void ensureSlot(int slot){
+        if (slot >= sent.length){
+            int capacity = Math.max(slot + 1, sent.length * 2);
+            sent = Arrays.copyOf(sent, capacity);
+            sentX = Arrays.copyOf(sentX, capacity);
+            sentY = Arrays.copyOf(sentY, capacity);
+            sentYaw = Arrays.copyOf(sentYaw, capacity);
+        }
+    }
+    
+    private void addKilled(int slot){
+        if (killedCount == killed.length){
+            killed = Arrays.copyOf(killed, killedCount * 2);
+        }
+        killed[killedCount++] = slot;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package model;
+
+import util.RenderBuffer;
+
+/**
+ * Told about the graphics of a map as they change, so that a view,
+ * a recorder or a remote client can keep its own copy of the world
+ * without reading all of it every frame.
+ *
+ * Both methods are called on the thread that runs the simulation,
+ * while it holds the map. The buffers and deltas are reused by the
+ * map and are only valid during the call.
+ */
+public interface FrameListener {
+    
+    /**
+     * Called when the listener is set and whenever a new map was
+     * generated or the map was cleared. Every vehicle sent before is gone.
+     *
+     * @param roads one command per lane, keyed by its index, followed by
+     * one per node, keyed by its index in the list of nodes.
+     */
+    void mapLoaded(RenderBuffer roads);
+    
+    /**
+     * Called at the end of every tick with what changed during it.
+     *
+     * @param delta the changes since the last call.
+     */
+    void tickFinished(FrameDelta delta);
+}
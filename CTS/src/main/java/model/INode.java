@@ -24,6 +24,7 @@ package model;
 
 import java.util.List;
 import util.IDrawable;
+import util.RenderBuffer;
 
 /**
  *
@@ -45,8 +46,25 @@ public interface INode {
     
     void removeYellowLight();
     
+    /**
+     * Gets the state of the traffic lights, one bit per green light
+     * and one for yellow. Two nodes show the same lights if and only
+     * if they return the same state.
+     *
+     * @return the light state.
+     */
+    int getSignalState();
+    
     IDrawable getGraphics();
     
+    /**
+     * Writes what getGraphics() returns to a render buffer,
+     * without creating a drawable object.
+     *
+     * @param buffer the buffer to append to.
+     */
+    void render(RenderBuffer buffer);
+    
     double getMinDistance();
     
     void setMinDistance(double d);
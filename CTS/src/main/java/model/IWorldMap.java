@@ -23,6 +23,9 @@
 package model;
 
 import util.IDrawable;
+import util.RenderBuffer;
+import util.Timings;
+import util.Viewport;
 import model.path.Path;
 import util.Weather;
 
@@ -33,12 +36,59 @@ public interface IWorldMap {
     
     /**
      * Returns generic graphical representations of all
-     * components in the model.
+     * components in the model, as of the latest finished tick.
+     * Does not block while a tick is running.
      * 
      * @return an array with Drawable objects
      */
     IDrawable[] getGraphics();
     
+    /**
+     * Returns the draw commands of the lanes and nodes, which do not
+     * change until a new map is generated. A new buffer is returned
+     * for every generated map, so a view can keep what it drew from it
+     * for as long as the same buffer is returned.
+     *
+     * @return the buffer holding the roads.
+     */
+    RenderBuffer getRoadBuffer();
+    
+    /**
+     * Returns the draw commands of everything that moves in the model,
+     * as of the latest finished tick. Does not block while a tick is running.
+     * The buffer is reused by the model, and is only valid until the
+     * next call.
+     *
+     * @return the buffer holding the latest frame.
+     */
+    RenderBuffer getRenderBuffer();
+    
+    /**
+     * Sets the part of the map that is shown. The frames from the next
+     * tick on only hold the vehicles on lanes that are in the viewport.
+     * If it is zoomed out below Viewport.DETAIL_ZOOM they hold one line
+     * per lane with vehicles instead, coloured by how full it is.
+     *
+     * @param view the part of the map on the screen, null for all of it.
+     */
+    void setViewport(Viewport view);
+    
+    /**
+     * Returns where the time of this map goes. The map records its own
+     * phases of a tick, the thread running it and the view record the rest.
+     *
+     * @return the timings, which live as long as the map.
+     */
+    Timings getTimings();
+    
+    /**
+     * Sets who is told about the changes in the graphics after every
+     * tick. It is first told about the roads of the current map, if any.
+     *
+     * @param listener the new listener, or null for none.
+     */
+    void setFrameListener(FrameListener listener);
+    
     /**
      * To be called each tick
      *
@@ -46,6 +96,52 @@ public interface IWorldMap {
      */
     boolean think();
     
+    /**
+     * Selects how think() runs a tick.
+     *
+     * @param mode the engine mode to use from the next tick on.
+     */
+    void setEngineMode(EngineMode mode);
+    
+    /**
+     * @return the engine mode used by think().
+     */
+    EngineMode getEngineMode();
+    
+    /**
+     * Gets the number of vehicles that are currently alive in the map.
+     *
+     * @return the number of live vehicles.
+     */
+    int getNumberOfVehicles();
+    
+    /**
+     * Restarts the generator behind every random choice in the
+     * simulation. Maps generated and run after the same seed was set
+     * give the same result.
+     *
+     * @param seed the new seed.
+     */
+    void setSeed(long seed);
+    
+    /**
+     * @return the seed that the simulation was last started from.
+     */
+    long getSeed();
+    
+    /**
+     * Sets how many vehicles may be alive in the map at the same time.
+     * No new vehicles spawn while the budget is used up.
+     *
+     * @param budget the maximum number of vehicles, must be positive.
+     */
+    void setVehicleBudget(int budget);
+    
+    /**
+     * @return the maximum number of vehicles that may be alive at once.
+     */
+    int getVehicleBudget();
+    
     /**
      * Finds the best route over the map from a
      * starting point to a goal.
@@ -57,6 +153,50 @@ public interface IWorldMap {
      */
     Path<INode> findRoute(INode from, INode to);
     
+    /**
+     * Finds the best route between two nodes with the given search,
+     * never taking it from the routes kept by the map.
+     *
+     * @param mode how to search for the route.
+     * @return the best route, null if there is none.
+     */
+    Path<INode> findRoute(INode from, INode to, RouteMode mode);
+    
+    /**
+     * Selects how findRoute(from, to) searches for routes.
+     *
+     * @param mode the search to use from now on, DIJKSTRA by default.
+     */
+    void setRouteMode(RouteMode mode);
+    
+    /**
+     * @return the search used by findRoute(from, to).
+     */
+    RouteMode getRouteMode();
+    
+    /**
+     * Sets how many routes findRoute() keeps between pairs of nodes.
+     * Kept routes are used until the lanes have become too much more or
+     * less crowded than when they were found.
+     *
+     * No routes are kept until this is called.
+     *
+     * @param size the most routes to keep, 0 to always search the map.
+     */
+    void setRouteCacheSize(int size);
+    
+    /**
+     * Sets how much work may go into repairing the routes of vehicles on
+     * their way every tick, as the lanes they are heading for fill up.
+     * Only vehicles spawned while rerouting is on are rerouted.
+     *
+     * Nothing is rerouted until this is called.
+     *
+     * @param budget the most nodes to search and write into new routes
+     *                  in a tick, 0 to keep the routes vehicles spawn with.
+     */
+    void setRerouteBudget(int budget);
+    
     /**
      * Removes everything from the Map into the initial state.
      */
@@ -25,18 +25,41 @@ package model;
 import java.awt.Color;
 import util.DrawableObject;
 import util.IDrawable;
+import util.RenderBuffer;
 
 /**
  * A Class representing a driving lane in the map.
  * @author Andreas Löfman <lofman.andreas@gmail.com>
 */
 public class Lane {
+    private static final int GRAY = Color.GRAY.getRGB();
+    //the room a car takes in a full lane, see hasRoomInLane()
+    static final double VEHICLE_SPACING = 4;
+    //how much the latest vehicle counts in getTravelTime()
+    static final double TRAVEL_TIME_WEIGHT = 0.2;
+    
     private double startX=0.0, startY=0.0, endX=0.0, endY=0.0;
     
     private Vehicle first, last;
     
+    /*
+    the vehicles between first and last, and the moving average of the
+    ticks the vehicles that left took from entering to leaving
+    */
+    private int vehicles;
+    private double travelTime;
+    private boolean travelled;
+    
     private INode start,end;
     
+    /*
+    set while the start and end node belong to different regions
+    of a sharded map, see ShardedEngine
+    */
+    private BoundaryQueue<Vehicle> handoff;
+    
+    private LaneListener listener;
+    
     protected Lane(){
         first = null;
         last = null;
@@ -91,19 +114,27 @@ public class Lane {
     }
     
     /**
-     * Get the total number of vehicles in the lane.
+     * Get the total number of vehicles in the lane, counted as they
+     * enter and leave.
      * 
      * @return the number of vehicles in the lane represented
      * as an integer. 0 if no vehicles in the lane.
      */
     public int getNumberOfVehicles(){
-        int num = 0;
-        Vehicle cur = first;
-        while (cur != null){
-            num++;
-            cur = cur.getVehicleBehind();
-        }
-        return num;
+        return vehicles;
+    }
+    
+    /**
+     * Gets how long vehicles take to get through the lane, waiting at
+     * its end included, as a moving average where every vehicle that
+     * leaves counts for TRAVEL_TIME_WEIGHT and those before it for the
+     * rest. Unlike the weight it also tells a long lane from a short one
+     * and a lane held up by a red light from a flowing one.
+     * 
+     * @return the average in ticks, 0 until a vehicle has left the lane.
+     */
+    public double getTravelTime(){
+        return travelTime;
     }
     
     /**
@@ -114,9 +145,70 @@ public class Lane {
         return getNumberOfVehicles();
     }
     
+    /**
+     * Gets the first vehicle in the lane without any checks.
+     * 
+     * @return the vehicle closest to the end of the lane,
+     *                  null if the lane is empty.
+     */
+    protected Vehicle getFirstVehicle(){
+        return first;
+    }
+    
     protected void clearCars(){
         last = null;
         first = null;
+        vehicles = 0;
+        if (handoff != null){
+            while (handoff.poll() != null){
+            }
+        }
+    }
+    
+    /**
+     * Makes the lane a boundary between two regions. Vehicles offered
+     * to the lane are queued by the region of the start node and only
+     * enter the lane when the region of the end node calls
+     * deliverHandoff().
+     * 
+     * @param queue for the vehicles waiting to enter, null to make
+     *                  this an ordinary lane again.
+     */
+    void setHandoff(BoundaryQueue<Vehicle> queue){
+        handoff = queue;
+    }
+    
+    /**
+     * @param listener to tell about vehicles entering and leaving
+     *                  the lane, null for nobody.
+     */
+    void setListener(LaneListener listener){
+        this.listener = listener;
+    }
+    
+    /**
+     * @return the queue of a boundary lane, null for ordinary lanes.
+     */
+    BoundaryQueue<Vehicle> getHandoff(){
+        return handoff;
+    }
+    
+    /**
+     * Moves queued vehicles into a boundary lane for as long as
+     * there is room for them, keeping their order.
+     * 
+     * @return the number of vehicles that entered the lane.
+     */
+    int deliverHandoff(){
+        int delivered = 0;
+        Vehicle v = handoff.peek();
+        while (v != null && hasRoomInLane(v)){
+            handoff.poll();
+            enter(v);
+            delivered++;
+            v = handoff.peek();
+        }
+        return delivered;
     }
     
     /**
@@ -128,7 +220,7 @@ public class Lane {
      * @return the first vehicle is any, otherwise null.
      */
     protected Vehicle peekVehicle(){
-        if (getNumberOfVehicles() == 0){
+        if (this.first == null){
             return null;
         }
         if (this.first.getTargetDistance() == 0){
@@ -146,7 +238,7 @@ public class Lane {
      * @return the first vehicle in the lane, if any otherwise null.
      */
     protected Vehicle pollVehicle(){
-        if (getNumberOfVehicles() == 0){
+        if (this.first == null){
             return null;
         }
         if (this.first.getTargetDistance() == 0){
@@ -163,6 +255,18 @@ public class Lane {
                 temp.setVehicleBehind(null);
                 temp.setVehicleInFront(null);
             }
+            vehicles--;
+            VehicleStore store = temp.getStore();
+            double took = store.getTick() - store.enteredTick[temp.getSlot()];
+            if (travelled){
+                travelTime += TRAVEL_TIME_WEIGHT * (took - travelTime);
+            } else {
+                travelTime = took;
+                travelled = true;
+            }
+            if (listener != null){
+                listener.vehicleLeft(this, temp);
+            }
             return temp;
         }
         return null;
@@ -178,6 +282,13 @@ public class Lane {
      * @return true if there's enough space for the vehicle. False otherwise.
      */
     protected boolean hasRoomForVehicle(Vehicle v){
+        if (handoff != null){
+            return !handoff.isFull();
+        }
+        return hasRoomInLane(v);
+    }
+    
+    private boolean hasRoomInLane(Vehicle v){
         if (last == null){
             return true;
         }
@@ -203,6 +314,14 @@ public class Lane {
         if (!this.hasRoomForVehicle(v) || v == null){
             return false;
         }
+        if (handoff != null){
+            return handoff.offer(v);
+        }
+        enter(v);
+        return true;
+    }
+    
+    private void enter(Vehicle v){
         if (this.last != null){
             this.last.setVehicleBehind(v);
             v.setVehicleInFront(this.last);
@@ -215,15 +334,45 @@ public class Lane {
             this.last = v;
             this.first = v;
         }
+        vehicles++;
+        VehicleStore store = v.getStore();
+        store.enteredTick[v.getSlot()] = store.getTick();
         v.setCurrentLane(this);
         v.setTargetPosition(this.endX, this.endY);
         v.setXpos(this.startX);
         v.setYpos(this.startY);
-        return true;
+        if (listener != null){
+            listener.vehicleEntered(this, v);
+        }
     }
     
     
     protected IDrawable getGraphics() {
         return DrawableObject.getLineGraphics(Color.gray, startX, startY, endX, endY);
     }
+    
+    /**
+     * Writes the lane as a line coloured from green to red by how full
+     * it is, if there is any vehicle in it.
+     *
+     * @param buffer the buffer to append to.
+     * @param key the key of the line.
+     */
+    void renderDensity(RenderBuffer buffer, int key) {
+        int vehicles = getNumberOfVehicles();
+        if (vehicles == 0){
+            return;
+        }
+        double length = Math.hypot(endX - startX, endY - startY);
+        float full = (float) Math.min(1, vehicles * VEHICLE_SPACING / Math.max(length, VEHICLE_SPACING));
+        int rgb = Color.HSBtoRGB((1 - full) / 3, 0.9f, 0.9f);
+        buffer.add(key, IDrawable.Type.LINE, rgb, startX, startY, 0, endX, endY);
+    }
+    
+    /**
+     * Writes the same line as getGraphics() to a render buffer.
+     */
+    void render(RenderBuffer buffer) {
+        buffer.add(IDrawable.Type.LINE, GRAY, startX, startY, 0, endX, endY);
+    }
 }
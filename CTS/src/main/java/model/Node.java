@@ -26,9 +26,10 @@ import java.awt.Color;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
-import model.path.Path;
 import util.DrawableObject;
 import util.IDrawable;
+import util.RenderBuffer;
+import util.SimRandom;
 
 
 
@@ -40,6 +41,7 @@ import util.IDrawable;
  */
 public class Node implements INode, Comparable<INode>{
     
+    private static final int GRAY = Color.GRAY.getRGB();
     private final List<Lane> outgoing;
     private final List<Lane> incoming;
     private final List<INode> connectedNodes;
@@ -70,6 +72,8 @@ public class Node implements INode, Comparable<INode>{
     
     private final double xpos, ypos;
     
+    private final Random random;
+    
     private int tick;
     private boolean start;
     
@@ -85,10 +89,27 @@ public class Node implements INode, Comparable<INode>{
     
     private final static int DEADLOCK_CHECKER = 1000;
     
+    /*
+    Lanes that a call to think() looks at, as bits of the sortedIn
+    indices. ALL_LANES also covers incoming lanes that were not sorted.
+    */
+    private final static int SORTED_LANES = 0xF;
+    private final static int ALL_LANES = 0x1F;
+    
+    /*
+    What stepLights() found the lights at: yellow, about to switch,
+    or green for the lanes of the current light.
+    */
+    private final static int YELLOW = 0;
+    private final static int SWITCHING = 1;
+    private final static int GREEN = 2;
+    
     boolean closedLane = false;
     boolean yellowLight = false;
     boolean rotatingLight = false;
     
+    private SignalListener signalListener;
+    
     
     /**
      * Creates a generic Node
@@ -96,9 +117,19 @@ public class Node implements INode, Comparable<INode>{
      * @param y
      */
     protected Node(double x, double y){
+        this(x, y, new SimRandom());
+    }
+    
+    /**
+     * Creates a generic Node
+     * @param x
+     * @param y
+     * @param random the node's own generator, used for its traffic lights
+     */
+    protected Node(double x, double y, Random random){
         xpos = x;
         ypos = y;
-        Random r = new Random();
+        this.random = random;
         outgoing = new ArrayList<Lane>(3);
         incoming = new ArrayList<Lane>(3);
         connectedNodes = new ArrayList<INode>(3);
@@ -112,7 +143,7 @@ public class Node implements INode, Comparable<INode>{
         trafficLightES = false;
         trafficLightSW = false;
         trafficLightWN = false;
-        trafficLightDelay = DELAY_MIN + r.nextInt(DELAY_MAX);
+        trafficLightDelay = DELAY_MIN + random.nextInt(DELAY_MAX);
         deadlockCheckNORTH = null;
         deadlockCheckSOUTH = null;
         deadlockCheckWEST = null;
@@ -220,13 +251,13 @@ public class Node implements INode, Comparable<INode>{
      */
     @Override
     public boolean spawn(Vehicle e){
-        Path<INode> p = e.getPath();
+        Route p = e.getRoute();
         
         if (p == null){
             return false;
         }
         
-        INode next = p.next(this);
+        INode next = e.nextNode(this);
         
         if (next == null){
             return false;
@@ -397,7 +428,7 @@ public class Node implements INode, Comparable<INode>{
                             return true;
                         }
                         
-                        Path<INode> p = v.getPath();
+                        Route p = v.getRoute();
                         
                         if (p == null){
                             v = l.pollVehicle();
@@ -405,7 +436,7 @@ public class Node implements INode, Comparable<INode>{
                             return false;
                         }
                         
-                        INode next = p.next(this);
+                        INode next = v.nextNode(this);
                         
                         if (next == null){
                             v = l.pollVehicle();
@@ -436,23 +467,18 @@ public class Node implements INode, Comparable<INode>{
         
         if(activateTrafficLights == true){
             
-            if(yellowLight){
-                tick = 0;
+            int light = stepLights(false);
+            
+            if(light == YELLOW){
                 return yellowLight();
             }
             
-            if(tick >= 4*trafficLightDelay/5 && tick < trafficLightDelay){
+            if(light == SWITCHING){
                 yellowLight();
                 return true;
-            }
-            else if (tick >= trafficLightDelay){
-                tick = 0;
-                switchLights();
             }
                 int lane;
                 Lane l;
-                
-            tick++;
             
             for (int i = 0; i < 2; i++){
                 if(trafficLightNS){
@@ -477,7 +503,7 @@ public class Node implements INode, Comparable<INode>{
                     Vehicle v = l.peekVehicle();
                     
                     if(closedLane){
-                        v.getPath();
+                        v.getRoute();
                     }
                     
                     checkDeadlock(i, l, v);
@@ -489,7 +515,7 @@ public class Node implements INode, Comparable<INode>{
                             return true;
                         }
                         
-                        Path<INode> p = v.getPath();
+                        Route p = v.getRoute();
                         
                         if (p == null){
                             v = l.pollVehicle();
@@ -497,7 +523,7 @@ public class Node implements INode, Comparable<INode>{
                             return false;
                         }
                         
-                        INode next = p.next(this);
+                        INode next = v.nextNode(this);
                         
                         if (next == null){
                             v = l.pollVehicle();
@@ -600,8 +626,8 @@ public class Node implements INode, Comparable<INode>{
         
         activateTrafficLights = true;
         tick = 0;
-        double rotating = Math.random() * 10;
-        double light = Math.random() * 10;
+        double rotating = random.nextDouble() * 10;
+        double light = random.nextDouble() * 10;
         
         if(rotating < 5){
             rotatingLight = true;
@@ -639,6 +665,7 @@ public class Node implements INode, Comparable<INode>{
         
         trafficLightWE = true;
         trafficLightNS = false;
+        signalChanged();
         
     }
     
@@ -646,6 +673,7 @@ public class Node implements INode, Comparable<INode>{
         
         trafficLightWE = false;
         trafficLightNS = true;
+        signalChanged();
         
     }
     
@@ -653,6 +681,7 @@ public class Node implements INode, Comparable<INode>{
         
         trafficLightNE = true;
         trafficLightNS = false;
+        signalChanged();
         
     }
     
@@ -660,6 +689,7 @@ public class Node implements INode, Comparable<INode>{
         
         trafficLightES = true;
         trafficLightNE = false;
+        signalChanged();
      
     }
     
@@ -667,6 +697,7 @@ public class Node implements INode, Comparable<INode>{
         
         trafficLightSW = true;
         trafficLightES = false;
+        signalChanged();
         
     }
     
@@ -674,6 +705,7 @@ public class Node implements INode, Comparable<INode>{
         
         trafficLightWN = true;
         trafficLightSW = false;
+        signalChanged();
         
     }
     
@@ -732,8 +764,6 @@ public class Node implements INode, Comparable<INode>{
     
     private boolean yellowLight(){
         
-        tick++;
-        
         for (Lane l : incoming){
             if(l != null){
                 Vehicle v = l.peekVehicle();
@@ -744,7 +774,7 @@ public class Node implements INode, Comparable<INode>{
                         return true;
                     }
                     
-                    Path<INode> p = v.getPath();
+                    Route p = v.getRoute();
                     
                     if (p == null){
                         v = l.pollVehicle();
@@ -752,7 +782,7 @@ public class Node implements INode, Comparable<INode>{
                         return false;
                     }
                     
-                    INode next = p.next(this);
+                    INode next = v.nextNode(this);
                     
                     if (next == null){
                         v = l.pollVehicle();
@@ -957,38 +987,58 @@ public class Node implements INode, Comparable<INode>{
         return DrawableObject.getRectGraphics(getXpos(), getYpos(), 0, Color.GRAY, 15, 15);
     }
     
+    @Override
+    public void render(RenderBuffer buffer) {
+        buffer.add(IDrawable.Type.RECTANGLE, GRAY, getXpos(), getYpos(), 0, 15, 15);
+    }
+    
     @Override
     public void setYellowLight(){
         yellowLight = true;
+        signalChanged();
     }
     
     @Override
     public void removeYellowLight(){
         yellowLight = false;
+        signalChanged();
+    }
+    
+    /**
+     * @param listener to tell whenever the lights are set, null for nobody.
+     */
+    void setSignalListener(SignalListener listener){
+        signalListener = listener;
+    }
+    
+    private void signalChanged(){
+        if (signalListener != null){
+            signalListener.signalChanged(this);
+        }
+    }
+    
+    @Override
+    public int getSignalState(){
+        return (int) (packSignals() >>> 32) | (yellowLight ? 1 << 6 : 0);
     }
     
         private boolean rotatingLight(){
         
-         if(yellowLight){
-                tick = 0;
+         int light = stepLights(true);
+         
+         if(light == YELLOW){
                 return yellowLight();
             }
             
-            if(tick >= 4*trafficLightDelay/5 && tick < trafficLightDelay){
+            if(light == SWITCHING){
                 yellowLight();
                 return true;
             }
-            else if (tick >= trafficLightDelay){
-                tick = 0;
-                switchLightsRotating();
-            }
    
                 int lane;
                 Lane l;
                 int laneOut;
                 boolean offlane = false;
-                
-            tick++;
             
             for (int i = 0; i < 2; i++){
                 if(trafficLightNE){
@@ -1029,7 +1079,7 @@ public class Node implements INode, Comparable<INode>{
                     Vehicle v = l.peekVehicle();
                     
                     if(closedLane){
-                        v.getPath();
+                        v.getRoute();
                     }
                     
                     checkDeadlock(lane, l, v);
@@ -1041,7 +1091,7 @@ public class Node implements INode, Comparable<INode>{
                             return true;
                         }
                         
-                        Path<INode> p = v.getPath();
+                        Route p = v.getRoute();
                         
                         if (p == null){
                             v = l.pollVehicle();
@@ -1049,7 +1099,7 @@ public class Node implements INode, Comparable<INode>{
                             return false;
                         }
                         
-                        INode next = p.next(this);
+                        INode next = v.nextNode(this);
                         
                         if (next == null){
                             v = l.pollVehicle();
@@ -1077,7 +1127,7 @@ public class Node implements INode, Comparable<INode>{
                     Vehicle v = l.peekVehicle();
                     
                     if(closedLane){
-                        v.getPath();
+                        v.getRoute();
                     }
                     
                     if (v != null){
@@ -1087,7 +1137,7 @@ public class Node implements INode, Comparable<INode>{
                             return true;
                         }
                         
-                        Path<INode> p = v.getPath();
+                        Route p = v.getRoute();
                         
                         if (p == null){
                             v = l.pollVehicle();
@@ -1095,7 +1145,7 @@ public class Node implements INode, Comparable<INode>{
                             return false;
                         }
                         
-                        INode next = p.next(this);
+                        INode next = v.nextNode(this);
                         
                         if (next == null){
                             v = l.pollVehicle();
@@ -1195,6 +1245,218 @@ public class Node implements INode, Comparable<INode>{
         
     }
 
+    /**
+     * Counts how many of the coming calls to think() would not look at
+     * any lane with a vehicle in it, so that they would do nothing but
+     * move the traffic lights on.
+     * 
+     * @param limit the most calls to look ahead.
+     * @param atStopLine true to only count vehicles waiting at the stop
+     *                  line, false to count every vehicle in the lanes.
+     * @return the number of such calls, at most limit. -1 if there is no
+     *                  such vehicle at all, so every call would only move
+     *                  the lights on.
+     */
+    int idleThinks(int limit, boolean atStopLine){
+        if (!start || closedLane){
+            return 0;
+        }
+        int waiting = lanesWithVehicles(atStopLine);
+        if (waiting == 0){
+            return -1;
+        }
+        long saved = packSignals();
+        int idle = 0;
+        while (idle < limit && (stepSignals() & waiting) == 0){
+            idle++;
+        }
+        unpackSignals(saved);
+        return idle;
+    }
+    
+    /**
+     * Moves the traffic lights on as if think() had been called a number
+     * of times without any vehicle waiting at the stop lines. The lights
+     * go round in a cycle, so whole cycles are skipped and the time taken
+     * does not depend on how many calls are skipped.
+     * 
+     * @param thinks the number of calls to skip.
+     */
+    void skipThinks(long thinks){
+        if (thinks <= 0 || !activateTrafficLights){
+            return;
+        }
+        long steps = thinks;
+        if (thinks > 8L * (trafficLightDelay + 2)){
+            //Brent's cycle detection, mu steps lead into a cycle of lambda steps.
+            long initial = packSignals();
+            int power = 1;
+            int lambda = 1;
+            long tortoise = initial;
+            long hare = nextSignals(initial);
+            while (tortoise != hare){
+                if (power == lambda){
+                    tortoise = hare;
+                    power *= 2;
+                    lambda = 0;
+                }
+                hare = nextSignals(hare);
+                lambda++;
+            }
+            tortoise = initial;
+            hare = initial;
+            for (int i = 0; i < lambda; i++){
+                hare = nextSignals(hare);
+            }
+            int mu = 0;
+            while (tortoise != hare){
+                tortoise = nextSignals(tortoise);
+                hare = nextSignals(hare);
+                mu++;
+            }
+            unpackSignals(initial);
+            steps = mu + (thinks - mu) % lambda;
+        }
+        for (long i = 0; i < steps; i++){
+            stepSignals();
+        }
+    }
+    
+    /*
+    Moves the traffic lights on by what one call to think() does to
+    them, without touching any lane. Returns the lanes that think()
+    would have looked at.
+    */
+    private int stepSignals(){
+        if (!activateTrafficLights){
+            return SORTED_LANES;
+        }
+        int touched = 0;
+        if (rotatingLight){
+            touched = lanesAt(stepLights(true), true);
+        }
+        return touched | lanesAt(stepLights(false), false);
+    }
+    
+    /*
+    Moves either the rotating or the parallel traffic lights on by one
+    step. A node with rotating lights takes both steps in every call to
+    think(), first the rotating one. Returns YELLOW, SWITCHING or GREEN.
+    */
+    private int stepLights(boolean rotating){
+        if (yellowLight){
+            tick = 1;
+            return YELLOW;
+        }
+        if (tick >= 4*trafficLightDelay/5 && tick < trafficLightDelay){
+            tick++;
+            return SWITCHING;
+        }
+        else if (tick >= trafficLightDelay){
+            tick = 0;
+            if (rotating){
+                switchLightsRotating();
+            }
+            else {
+                switchLights();
+            }
+        }
+        tick++;
+        return GREEN;
+    }
+    
+    /*
+    The lanes think() looks at after a step of the lights, with the
+    same bits as stepSignals().
+    */
+    private int lanesAt(int light, boolean rotating){
+        if (light != GREEN){
+            return ALL_LANES;
+        }
+        if (rotating){
+            if (trafficLightNE){
+                return 0x3;
+            }
+            if (trafficLightES){
+                return 0x6;
+            }
+            if (trafficLightSW){
+                return 0xC;
+            }
+            if (trafficLightWN){
+                return 0x9;
+            }
+            return 0;
+        }
+        if (trafficLightNS){
+            return 0x3;
+        }
+        if (trafficLightWE){
+            return 0xC;
+        }
+        return 0;
+    }
+    
+    private long nextSignals(long state){
+        unpackSignals(state);
+        stepSignals();
+        return packSignals();
+    }
+    
+    private long packSignals(){
+        long state = tick & 0xFFFFFFFFL;
+        state |= (trafficLightWE ? 1L : 0L) << 32;
+        state |= (trafficLightNS ? 1L : 0L) << 33;
+        state |= (trafficLightNE ? 1L : 0L) << 34;
+        state |= (trafficLightES ? 1L : 0L) << 35;
+        state |= (trafficLightSW ? 1L : 0L) << 36;
+        state |= (trafficLightWN ? 1L : 0L) << 37;
+        return state;
+    }
+    
+    private void unpackSignals(long state){
+        tick = (int) state;
+        trafficLightWE = (state & (1L << 32)) != 0;
+        trafficLightNS = (state & (1L << 33)) != 0;
+        trafficLightNE = (state & (1L << 34)) != 0;
+        trafficLightES = (state & (1L << 35)) != 0;
+        trafficLightSW = (state & (1L << 36)) != 0;
+        trafficLightWN = (state & (1L << 37)) != 0;
+        signalChanged();
+    }
+    
+    /*
+    The lanes with a vehicle in them, or only those with one waiting at
+    the stop line, with the same bits as stepSignals().
+    */
+    private int lanesWithVehicles(boolean atStopLine){
+        int waiting = 0;
+        for (int i = 0; i < sortedIn.length; i++){
+            if (hasVehicle(sortedIn[i], atStopLine)){
+                waiting |= 1 << i;
+            }
+        }
+        for (Lane l : incoming){
+            if (hasVehicle(l, atStopLine)){
+                boolean sorted = false;
+                for (Lane s : sortedIn){
+                    sorted |= s == l;
+                }
+                if (!sorted){
+                    waiting |= ALL_LANES & ~SORTED_LANES;
+                }
+            }
+        }
+        return waiting;
+    }
+    
+    private static boolean hasVehicle(Lane l, boolean atStopLine){
+        if (l == null){
+            return false;
+        }
+        return atStopLine ? l.peekVehicle() != null : l.getFirstVehicle() != null;
+    }
+    
     @Override
     public int compareTo(INode other) {
         return Double.compare(minDistance, other.getMinDistance());
@@ -0,0 +1,108 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package model;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs the plan and commit phases of a tick on a fork-join pool.
+ *
+ * The work is partitioned by lane. A vehicle only reads itself and
+ * the vehicle in front of it in the same lane while planning, and
+ * only writes itself when committing, so lanes never interfere.
+ */
+final class ParallelEngine {
+    
+    /**
+     * Number of lanes below which a task stops splitting itself.
+     */
+    private static final int LANES_PER_TASK = 16;
+    
+    private final ForkJoinPool pool;
+    
+    ParallelEngine(){
+        pool = new ForkJoinPool();
+    }
+    
+    /**
+     * Lets every vehicle in the lanes plan its move.
+     *
+     * @param lanes all lanes in the map.
+     */
+    void plan(List<Lane> lanes){
+        pool.invoke(new LaneTask(lanes, 0, lanes.size(), true));
+    }
+    
+    /**
+     * Commits the planned move of every vehicle in the lanes.
+     *
+     * @param lanes all lanes in the map.
+     */
+    void commit(List<Lane> lanes){
+        pool.invoke(new LaneTask(lanes, 0, lanes.size(), false));
+    }
+    
+    void shutdown(){
+        pool.shutdown();
+    }
+    
+    private static final class LaneTask extends RecursiveAction {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final List<Lane> lanes;
+        private final int from;
+        private final int to;
+        private final boolean plan;
+        
+        LaneTask(List<Lane> lanes, int from, int to, boolean plan){
+            this.lanes = lanes;
+            this.from = from;
+            this.to = to;
+            this.plan = plan;
+        }
+        
+        @Override
+        protected void compute(){
+            if (to - from <= LANES_PER_TASK){
+                for (int i = from; i < to; i++){
+                    Vehicle v = lanes.get(i).getFirstVehicle();
+                    while (v != null){
+                        if (plan){
+                            v.plan();
+                        } else {
+                            v.commit();
+                        }
+                        v = v.getVehicleBehind();
+                    }
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new LaneTask(lanes, from, middle, plan),
+                        new LaneTask(lanes, middle, to, plan));
+            }
+        }
+    }
+}
@@ -0,0 +1,452 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Repairs the routes of the vehicles on their way as the lanes fill up
+ * and empty, instead of them keeping the route they got when spawned.
+ *
+ * For every destination that a vehicle is heading for there is one
+ * Lifelong Planning A* search, run backwards from the destination over
+ * the lanes, with no heuristic since the vehicles heading there can be
+ * anywhere. It keeps the cost of getting to the destination from every
+ * node. When a lane becomes too much more or less crowded than the
+ * searches knew, only the node it leaves from is put back in their
+ * queues, and a search only goes through the nodes whose cost changes.
+ * A vehicle is then rerouted from the end of the lane it is in, by
+ * following the cheapest lanes, as soon as the search has settled that
+ * node again.
+ *
+ * A lane costs one more than its weight, so that of equally crowded
+ * routes the one with the fewest lanes is taken and following the
+ * cheapest lanes never goes round in circles.
+ *
+ * The work is bounded by a budget per tick, counted in nodes searched
+ * plus nodes of the new routes. Searches and vehicles that do not fit
+ * in the budget are carried on with in the next tick. Vehicles that
+ * have arrived are let go of the next time the routes to their
+ * destination change, and a search with no vehicles left with them.
+ */
+final class Replanner {
+    
+    private static final int UNREACHED = Integer.MAX_VALUE;
+    
+    private final Router router;
+    private final Lane[] lanes;
+    private final int[] laneStart;
+    private final int[] laneEnd;
+    private final int[] cost;
+    private final int[] firstOut;
+    private final int[] out;
+    private final int[] firstIn;
+    private final int[] in;
+    
+    /*
+    the searches in the order their destinations were first asked for,
+    and the search of every node that is a destination, -1 for none
+    */
+    private final List<Planner> planners = new ArrayList<>();
+    private final int[] plannerOf;
+    private int turn;
+    
+    private long expanded;
+    private long rerouted;
+    
+    /**
+     * @param router the router over the nodes of the map.
+     */
+    Replanner(Router router){
+        this.router = router;
+        int n = router.size();
+        List<Lane> found = new ArrayList<>();
+        List<Integer> starts = new ArrayList<>();
+        List<Integer> ends = new ArrayList<>();
+        for (int i = 0; i < n; i++){
+            for (Lane l : router.getNode(i).getOutgoingLanes()){
+                int end = router.indexOf(l.getEndNode());
+                if (end >= 0){
+                    found.add(l);
+                    starts.add(i);
+                    ends.add(end);
+                }
+            }
+        }
+        int count = found.size();
+        lanes = found.toArray(new Lane[count]);
+        laneStart = new int[count];
+        laneEnd = new int[count];
+        cost = new int[count];
+        for (int e = 0; e < count; e++){
+            laneStart[e] = starts.get(e);
+            laneEnd[e] = ends.get(e);
+            cost[e] = lanes[e].getWeight() + 1;
+        }
+        firstOut = new int[n + 1];
+        firstIn = new int[n + 1];
+        out = new int[count];
+        in = new int[count];
+        group(laneStart, firstOut, out);
+        group(laneEnd, firstIn, in);
+        plannerOf = new int[n];
+        Arrays.fill(plannerOf, -1);
+    }
+    
+    /**
+     * Sorts the lanes by the node they belong to, so that the lanes of
+     * node i are lanes[first[i]] up to lanes[first[i + 1]].
+     */
+    private static void group(int[] node, int[] first, int[] sorted){
+        for (int e = 0; e < node.length; e++){
+            first[node[e] + 1]++;
+        }
+        for (int i = 0; i + 1 < first.length; i++){
+            first[i + 1] += first[i];
+        }
+        int[] next = Arrays.copyOf(first, first.length - 1);
+        for (int e = 0; e < node.length; e++){
+            sorted[next[node[e]]++] = e;
+        }
+    }
+    
+    /**
+     * @return true if the replanner was made with the router.
+     */
+    boolean isFor(Router router){
+        return this.router == router;
+    }
+    
+    /**
+     * Starts repairing the route of a vehicle that was just spawned.
+     * Vehicles heading somewhere that is not one of the nodes of the
+     * router keep their route.
+     */
+    void add(Vehicle v){
+        int goal = v.getDestination() == null ? -1 : router.indexOf(v.getDestination());
+        if (goal < 0){
+            return;
+        }
+        if (plannerOf[goal] < 0){
+            plannerOf[goal] = planners.size();
+            planners.add(new Planner(goal));
+        }
+        planners.get(plannerOf[goal]).add(v);
+    }
+    
+    /**
+     * Takes the lanes that have changed enough, searches and reroutes
+     * vehicles until the budget is spent.
+     *
+     * @param budget the most nodes to search and write into new routes.
+     */
+    void tick(int budget){
+        for (int e = 0; e < lanes.length; e++){
+            int now = lanes[e].getWeight() + 1;
+            int before = cost[e];
+            if (Math.abs(now - before) > Math.max(WorldMap.MIN_LANE_DRIFT, before / 2)){
+                cost[e] = now;
+                for (Planner p : planners){
+                    p.update(laneStart[e]);
+                }
+            }
+        }
+        int left = budget;
+        for (int i = 0; i < planners.size() && left > 0; i++){
+            if (turn >= planners.size()){
+                turn = 0;
+            }
+            left = planners.get(turn).repair(left);
+            turn++;
+        }
+        for (int i = planners.size() - 1; i >= 0; i--){
+            if (planners.get(i).isEmpty()){
+                remove(i);
+            }
+        }
+    }
+    
+    private void remove(int i){
+        plannerOf[planners.get(i).goal] = -1;
+        planners.remove(i);
+        for (int j = i; j < planners.size(); j++){
+            plannerOf[planners.get(j).goal] = j;
+        }
+        if (turn > i){
+            turn--;
+        }
+    }
+    
+    /**
+     * @return how many destinations routes are repaired for.
+     */
+    int getDestinations(){
+        return planners.size();
+    }
+    
+    /**
+     * @return how many nodes the searches have gone through in total.
+     */
+    long getExpanded(){
+        return expanded;
+    }
+    
+    /**
+     * @return how many times a vehicle got a new route.
+     */
+    long getRerouted(){
+        return rerouted;
+    }
+    
+    /**
+     * The search towards one destination, and the vehicles heading there.
+     */
+    private final class Planner {
+        
+        private final int goal;
+        private final int[] g;
+        private final int[] rhs;
+        private final int[] heap;
+        private final int[] heapPosition;
+        private int heapSize;
+        
+        private final List<Vehicle> vehicles = new ArrayList<>();
+        private int next;
+        
+        Planner(int goal){
+            this.goal = goal;
+            int n = router.size();
+            g = new int[n];
+            rhs = new int[n];
+            heap = new int[n];
+            heapPosition = new int[n];
+            Arrays.fill(g, UNREACHED);
+            Arrays.fill(rhs, UNREACHED);
+            Arrays.fill(heapPosition, -1);
+            rhs[goal] = 0;
+            push(goal);
+        }
+        
+        void add(Vehicle v){
+            //A new vehicle has a fresh route, it waits for the next change.
+            boolean done = next == vehicles.size();
+            vehicles.add(v);
+            if (done){
+                next++;
+            }
+        }
+        
+        boolean isEmpty(){
+            return vehicles.isEmpty();
+        }
+        
+        /**
+         * Works out again what the cheapest lane out of a node costs and
+         * puts the node in the queue if that differs from what it had.
+         */
+        void update(int node){
+            if (node != goal){
+                int best = UNREACHED;
+                for (int i = firstOut[node]; i < firstOut[node + 1]; i++){
+                    int e = out[i];
+                    int through = g[laneEnd[e]];
+                    if (through != UNREACHED && through + cost[e] < best){
+                        best = through + cost[e];
+                    }
+                }
+                rhs[node] = best;
+            }
+            if (heapPosition[node] >= 0){
+                if (g[node] == rhs[node]){
+                    removeAt(heapPosition[node]);
+                } else {
+                    up(heapPosition[node]);
+                    down(heapPosition[node]);
+                }
+            } else if (g[node] != rhs[node]){
+                push(node);
+            }
+        }
+        
+        /**
+         * Searches until the budget is spent or nothing has changed,
+         * then reroutes the vehicles whose node is settled.
+         *
+         * @return what is left of the budget.
+         */
+        int repair(int budget){
+            int left = budget;
+            while (heapSize > 0 && left > 0){
+                int node = poll();
+                left--;
+                expanded++;
+                if (g[node] > rhs[node]){
+                    g[node] = rhs[node];
+                } else {
+                    g[node] = UNREACHED;
+                    update(node);
+                }
+                for (int i = firstIn[node]; i < firstIn[node + 1]; i++){
+                    update(laneStart[in[i]]);
+                }
+                next = 0;
+            }
+            while (next < vehicles.size() && left > 0){
+                Vehicle v = vehicles.get(next);
+                if (!v.alive()){
+                    vehicles.set(next, vehicles.get(vehicles.size() - 1));
+                    vehicles.remove(vehicles.size() - 1);
+                    continue;
+                }
+                Lane lane = v.getCurrentLane();
+                int from = lane == null ? -1 : router.indexOf(lane.getEndNode());
+                if (from >= 0 && !isSettled(from)){
+                    break;
+                }
+                if (from >= 0 && from != goal && g[from] != UNREACHED){
+                    left -= reroute(v, from);
+                }
+                next++;
+            }
+            return left;
+        }
+        
+        /**
+         * @return true if nothing in the queue can change the cost of
+         *                  the node or of the nodes on its route.
+         */
+        private boolean isSettled(int node){
+            return g[node] == rhs[node] && (heapSize == 0 || key(heap[0]) >= key(node));
+        }
+        
+        /**
+         * Gives the vehicle the route from the node along the cheapest
+         * lanes.
+         *
+         * @return the number of nodes on the route.
+         */
+        private int reroute(Vehicle v, int from){
+            int length = 1;
+            int[] route = new int[8];
+            route[0] = from;
+            for (int node = from; node != goal; ){
+                int best = -1;
+                for (int i = firstOut[node]; i < firstOut[node + 1]; i++){
+                    int e = out[i];
+                    int through = g[laneEnd[e]];
+                    if (through != UNREACHED && (best < 0 || through + cost[e] < g[laneEnd[best]] + cost[best])){
+                        best = e;
+                    }
+                }
+                if (best < 0){
+                    return length;
+                }
+                node = laneEnd[best];
+                if (length == route.length){
+                    route = Arrays.copyOf(route, length * 2);
+                }
+                route[length++] = node;
+            }
+            v.setRoute(router.toRoute(route, length));
+            rerouted++;
+            return length;
+        }
+        
+        private int key(int node){
+            return Math.min(g[node], rhs[node]);
+        }
+        
+        /**
+         * Nodes with the lowest key first, and of nodes with the same
+         * key the one with the lowest number, so that runs repeat.
+         */
+        private boolean before(int a, int b){
+            int ka = key(a);
+            int kb = key(b);
+            return ka < kb || (ka == kb && a < b);
+        }
+        
+        private void push(int node){
+            heap[heapSize] = node;
+            heapPosition[node] = heapSize;
+            up(heapSize++);
+        }
+        
+        private int poll(){
+            int top = heap[0];
+            removeAt(0);
+            return top;
+        }
+        
+        private void removeAt(int i){
+            heapPosition[heap[i]] = -1;
+            heapSize--;
+            if (i < heapSize){
+                int node = heap[heapSize];
+                heap[i] = node;
+                heapPosition[node] = i;
+                up(i);
+                if (heapPosition[node] == i){
+                    down(i);
+                }
+            }
+        }
+        
+        private void up(int i){
+            int node = heap[i];
+            while (i > 0){
+                int parent = (i - 1) >>> 1;
+                if (!before(node, heap[parent])){
+                    break;
+                }
+                heap[i] = heap[parent];
+                heapPosition[heap[i]] = i;
+                i = parent;
+            }
+            heap[i] = node;
+            heapPosition[node] = i;
+        }
+        
+        private void down(int i){
+            int node = heap[i];
+            while (true){
+                int child = 2 * i + 1;
+                if (child >= heapSize){
+                    break;
+                }
+                if (child + 1 < heapSize && before(heap[child + 1], heap[child])){
+                    child++;
+                }
+                if (!before(heap[child], node)){
+                    break;
+                }
+                heap[i] = heap[child];
+                heapPosition[heap[i]] = i;
+                i = child;
+            }
+            heap[i] = node;
+            heapPosition[node] = i;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+package model;
+
+import model.path.Path;
+
+/**
+ * A route over the nodes of a map, kept as the numbers of its nodes in
+ * a table of the nodes, such as the one of the router that found it.
+ *
+ * Routes are never changed once made, so one route is shared by every
+ * vehicle given it. How far along it a vehicle has come is kept by the
+ * vehicle, see Vehicle.nextNode(), so finding the next node at an
+ * intersection costs the same however long the route is.
+ */
+final class Route {
+    
+    private final INode[] table;
+    private final int[] nodes;
+    
+    /**
+     * @param table the nodes the route is numbered by.
+     * @param nodes the numbers of the nodes along the route, from the
+     *                  start to the goal, owned by the route from now on.
+     */
+    Route(INode[] table, int[] nodes){
+        this.table = table;
+        this.nodes = nodes;
+    }
+    
+    /**
+     * @return the number of nodes on the route, start and goal included.
+     */
+    int getLength(){
+        return nodes.length;
+    }
+    
+    /**
+     * Gets the node at a position along the route, the first being at
+     * 1 like in Path.
+     */
+    INode get(int n){
+        return table[nodes[n - 1]];
+    }
+    
+    /**
+     * Finds a node on the route, looking from a position on.
+     *
+     * @param from the first position to look at.
+     * @return the position of the node, -1 if it is not on the route
+     *                  from there on.
+     */
+    int indexOf(INode node, int from){
+        for (int i = Math.max(1, from); i <= nodes.length; i++){
+            if (table[nodes[i - 1]] == node){
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * @return a new Path with the nodes of the route.
+     */
+    Path<INode> toPath(){
+        Path<INode> path = new Path<>();
+        for (int n : nodes){
+            path.append(table[n], 1);
+        }
+        return path;
+    }
+}
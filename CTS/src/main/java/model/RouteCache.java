@@ -0,0 +1,189 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The latest routes found between pairs of nodes, so that vehicles
+ * spawned between the same ends share one route instead of each
+ * searching the map again.
+ *
+ * The cache holds at most its capacity of routes and forgets the one
+ * used longest ago to make room. Every route belongs to the congestion
+ * epoch it was found in. When the map starts a new epoch, because the
+ * weights of the lanes have changed too much since the last one, all
+ * older routes are stale and are found again the next time they are
+ * asked for.
+ *
+ * The routes handed out are shared, they must not be changed. The cache
+ * is not thread safe.
+ */
+final class RouteCache {
+    
+    /**
+     * Returned by get() when there is no route from the current epoch.
+     */
+    static final Route MISSING = new Route(new INode[0], new int[0]);
+    
+    private final Map<Key, Kept> routes;
+    private int capacity;
+    private int epoch;
+    private long hits;
+    private long misses;
+    
+    /**
+     * @param capacity the most routes to keep, 0 to keep none.
+     */
+    RouteCache(int capacity){
+        if (capacity < 0){
+            throw new IllegalArgumentException("Negative capacity: " + capacity);
+        }
+        this.capacity = capacity;
+        routes = new LinkedHashMap<Key, Kept>(16, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Kept> eldest){
+                return size() > RouteCache.this.capacity;
+            }
+        };
+    }
+    
+    /**
+     * Gets the route between two nodes, which may be null if there
+     * is none.
+     *
+     * @return the route, or MISSING if it is not known in this epoch.
+     */
+    Route get(INode from, INode to){
+        Key key = new Key(from, to);
+        Kept r = routes.get(key);
+        if (r == null || r.epoch != epoch){
+            if (r != null){
+                routes.remove(key);
+            }
+            misses++;
+            return MISSING;
+        }
+        hits++;
+        return r.route;
+    }
+    
+    /**
+     * Remembers the route between two nodes for the current epoch.
+     *
+     * @param route the route, null if there is none.
+     */
+    void put(INode from, INode to, Route route){
+        if (capacity > 0){
+            routes.put(new Key(from, to), new Kept(route, epoch));
+        }
+    }
+    
+    /**
+     * Makes every route known so far stale.
+     */
+    void advanceEpoch(){
+        epoch++;
+    }
+    
+    int getEpoch(){
+        return epoch;
+    }
+    
+    /**
+     * Changes how many routes are kept, forgetting the ones used longest
+     * ago if there are too many.
+     *
+     * @param capacity the most routes to keep, 0 to keep none.
+     */
+    void setCapacity(int capacity){
+        if (capacity < 0){
+            throw new IllegalArgumentException("Negative capacity: " + capacity);
+        }
+        this.capacity = capacity;
+        while (routes.size() > capacity){
+            routes.remove(routes.keySet().iterator().next());
+        }
+    }
+    
+    int getCapacity(){
+        return capacity;
+    }
+    
+    int size(){
+        return routes.size();
+    }
+    
+    long getHits(){
+        return hits;
+    }
+    
+    long getMisses(){
+        return misses;
+    }
+    
+    /**
+     * Forgets every route, for when the nodes are no longer the same.
+     */
+    void clear(){
+        routes.clear();
+        epoch++;
+    }
+    
+    private static final class Key {
+        
+        private final INode from;
+        private final INode to;
+        
+        Key(INode from, INode to){
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        public boolean equals(Object o){
+            if (!(o instanceof Key)){
+                return false;
+            }
+            Key k = (Key) o;
+            return from == k.from && to == k.to;
+        }
+        
+        @Override
+        public int hashCode(){
+            return 31 * System.identityHashCode(from) + System.identityHashCode(to);
+        }
+    }
+    
+    private static final class Kept {
+        
+        private final Route route;
+        private final int epoch;
+        
+        Kept(Route route, int epoch){
+            this.route = route;
+            this.epoch = epoch;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package model;
+
+/**
+ * The different ways findRoute() can search for a route.
+ */
+public enum RouteMode {
+    
+    /**
+     * Dijkstra over the weights of the lanes, the number of vehicles
+     * on them. Searches outwards from the start in every direction.
+     */
+    DIJKSTRA,
+    
+    /**
+     * A* over the weights of the lanes plus the distance driven, where
+     * driving the room a vehicle takes in a lane costs as much as one
+     * vehicle in the way. The straight line to the goal never costs more
+     * than the road there, so the search heads for the goal and looks at
+     * far fewer nodes, and still finds the cheapest route.
+     */
+    ASTAR,
+    
+    /**
+     * A contraction hierarchy over the same weights as DIJKSTRA, for big
+     * maps. It is built once per map, which takes a while, and then takes
+     * the weights of the lanes again every congestion epoch. Routes follow
+     * the weights as they were at the start of the epoch.
+     */
+    HIERARCHY,
+    
+    /**
+     * The routes between all ends of the map, searched in parallel when
+     * the map is made and again every congestion epoch, so that finding
+     * a route between two ends is a lookup. Routes follow the weights as
+     * they were at the start of the epoch. Routes from other nodes are
+     * searched with DIJKSTRA.
+     */
+    TABLE
+}
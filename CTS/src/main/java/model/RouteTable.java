@@ -0,0 +1,170 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+package model;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The cheapest routes from every end of a map, the nodes with only one
+ * neighbour that vehicles are spawned at and drive to, found all at
+ * once so that a vehicle gets its route by looking it up.
+ *
+ * For every end the table keeps the tree of cheapest routes out of it,
+ * as the node before every node on the way. Knowing only the first step
+ * towards every other end would not be enough, the nodes along a route
+ * are not ends themselves. The trees are searched in parallel, one
+ * Dijkstra per end, and a route is read back by walking the tree from
+ * the goal, which costs as much as the route is long.
+ *
+ * The table holds the weights of the lanes as they were when it was
+ * made, so it is made again every congestion epoch.
+ */
+final class RouteTable {
+    
+    /**
+     * Number of ends below which a task stops splitting itself.
+     */
+    private static final int ENDS_PER_TASK = 4;
+    
+    private final Router router;
+    private final int[] slot;
+    private final int[][] previous;
+    private final int epoch;
+    
+    /**
+     * Searches the routes from every end, on as many threads as there
+     * are cores.
+     *
+     * @param router the router over the nodes of the map.
+     * @param ends the ends of the map, the nodes vehicles drive between.
+     * @param epoch the congestion epoch the weights are from.
+     */
+    RouteTable(Router router, List<INode> ends, int epoch){
+        this.router = router;
+        this.epoch = epoch;
+        slot = new int[router.size()];
+        Arrays.fill(slot, -1);
+        int[] sources = new int[ends.size()];
+        int count = 0;
+        for (INode end : ends){
+            int n = router.indexOf(end);
+            if (n >= 0 && slot[n] < 0){
+                slot[n] = count;
+                sources[count++] = n;
+            }
+        }
+        previous = new int[count][];
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
+            pool.invoke(new TreeTask(sources, 0, count));
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    /**
+     * @return true if the route between the nodes is in the table.
+     */
+    boolean covers(INode from, INode to){
+        int source = router.indexOf(from);
+        return source >= 0 && slot[source] >= 0 && router.indexOf(to) >= 0;
+    }
+    
+    /**
+     * Looks up the cheapest route between two nodes.
+     *
+     * @return the route, or null if there is none or the nodes are the
+     *                  same or not in the table.
+     */
+    Route findRoute(INode from, INode to){
+        int source = router.indexOf(from);
+        int target = router.indexOf(to);
+        if (source < 0 || target < 0 || source == target || slot[source] < 0){
+            return null;
+        }
+        int[] tree = previous[slot[source]];
+        if (tree[target] < 0){
+            return null;
+        }
+        int length = 1;
+        for (int n = target; n != source; n = tree[n]){
+            length++;
+        }
+        int[] route = new int[length];
+        for (int n = target, i = length - 1; i >= 0; n = tree[n], i--){
+            route[i] = n;
+        }
+        return router.toRoute(route, length);
+    }
+    
+    /**
+     * @return the congestion epoch the weights of the table are from.
+     */
+    int getEpoch(){
+        return epoch;
+    }
+    
+    /**
+     * @return how many ends the table has routes from.
+     */
+    int getEnds(){
+        return previous.length;
+    }
+    
+    /**
+     * @return true if the table was made with the router.
+     */
+    boolean isFor(Router router){
+        return this.router == router;
+    }
+    
+    private final class TreeTask extends RecursiveAction {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final int[] sources;
+        private final int from;
+        private final int to;
+        
+        TreeTask(int[] sources, int from, int to){
+            this.sources = sources;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected void compute(){
+            if (to - from <= ENDS_PER_TASK){
+                for (int i = from; i < to; i++){
+                    previous[i] = router.findTree(sources[i]);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new TreeTask(sources, from, middle),
+                    new TreeTask(sources, middle, to));
+        }
+    }
+}
@@ -0,0 +1,399 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package model;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the cheapest routes over the lanes between the nodes of a map.
+ *
+ * The nodes are numbered once, in the order of the list the router is
+ * made from, and the lanes leaving every node are kept in flat arrays.
+ * A search keeps its distances and predecessors in arrays of its own,
+ * one set per thread, and its queue is a binary heap that knows where
+ * every node is in it, so a shorter distance moves a node up in place
+ * instead of it being searched for. Nothing is stored on the nodes, so
+ * any number of threads can search at once.
+ *
+ * The weight of a lane is read when the search gets to it, so routes
+ * follow the traffic at the time of the search. Lanes added to the nodes
+ * after the router was made are not seen.
+ *
+ * Searches are either plain Dijkstra over the weights, or A* over the
+ * weights plus the distance between the nodes, see RouteMode.
+ */
+final class Router {
+    
+    /**
+     * What driving one map unit costs in A*, so that driving the room a
+     * vehicle takes in a lane costs as much as a vehicle in the way.
+     */
+    static final double DISTANCE_COST = 1 / Lane.VEHICLE_SPACING;
+    
+    private final List<INode> source;
+    private final INode[] nodes;
+    private final Map<INode, Integer> index = new IdentityHashMap<>();
+    private final int[] firstLane;
+    private final Lane[] lanes;
+    private final int[] laneEnd;
+    private final double[] laneCost;
+    
+    private final ThreadLocal<Search> searches = new ThreadLocal<Search>(){
+        @Override
+        protected Search initialValue(){
+            return new Search(nodes.length);
+        }
+    };
+    
+    /**
+     * @param nodes the nodes to route between, with their outgoing lanes.
+     */
+    Router(List<INode> nodes){
+        source = nodes;
+        this.nodes = nodes.toArray(new INode[nodes.size()]);
+        for (int i = 0; i < this.nodes.length; i++){
+            index.put(this.nodes[i], i);
+        }
+        firstLane = new int[this.nodes.length + 1];
+        int count = 0;
+        for (int i = 0; i < this.nodes.length; i++){
+            firstLane[i] = count;
+            for (Lane l : this.nodes[i].getOutgoingLanes()){
+                if (index.containsKey(l.getEndNode())){
+                    count++;
+                }
+            }
+        }
+        firstLane[this.nodes.length] = count;
+        lanes = new Lane[count];
+        laneEnd = new int[count];
+        laneCost = new double[count];
+        int e = 0;
+        for (INode n : this.nodes){
+            for (Lane l : n.getOutgoingLanes()){
+                Integer end = index.get(l.getEndNode());
+                if (end != null){
+                    lanes[e] = l;
+                    laneEnd[e] = end;
+                    laneCost[e] = distance(n, this.nodes[end]) * DISTANCE_COST;
+                    e++;
+                }
+            }
+        }
+    }
+    
+    /**
+     * @return true if the router was made from this list of nodes, and
+     *                  no nodes were added to it since.
+     */
+    boolean isFor(List<INode> nodes){
+        return nodes == source && nodes.size() == this.nodes.length;
+    }
+    
+    /**
+     * @return the number the router gives the node, -1 if it is not
+     *                  one of the nodes it was made from.
+     */
+    int indexOf(INode node){
+        Integer i = index.get(node);
+        return i == null ? -1 : i;
+    }
+    
+    INode getNode(int i){
+        return nodes[i];
+    }
+    
+    /**
+     * Makes a route from the numbers of its nodes.
+     *
+     * @param route the numbers of the nodes from the start to the goal.
+     * @param length how many of them make up the route.
+     */
+    Route toRoute(int[] route, int length){
+        return new Route(nodes, Arrays.copyOf(route, length));
+    }
+    
+    int size(){
+        return nodes.length;
+    }
+    
+    /**
+     * Finds the cheapest route between two of the nodes of the router
+     * with Dijkstra.
+     *
+     * @return the route, or null if there is none or the nodes are the
+     *                  same or unknown to the router.
+     */
+    Route findRoute(INode from, INode to){
+        return findRoute(from, to, RouteMode.DIJKSTRA);
+    }
+    
+    /**
+     * Finds the cheapest route between two of the nodes of the router.
+     *
+     * @param mode how to search, and so what the route costs.
+     * @return the route, or null if there is none or the nodes are the
+     *                  same or unknown to the router.
+     */
+    Route findRoute(INode from, INode to, RouteMode mode){
+        boolean astar = mode == RouteMode.ASTAR;
+        return findRoute(from, to, astar, astar);
+    }
+    
+    /**
+     * Finds the cheapest route with the distance driven counted in the
+     * cost or not, and heading for the goal or not. Guiding a search
+     * that does not count the distance would not find the cheapest route.
+     */
+    Route findRoute(INode from, INode to, boolean byDistance, boolean guided){
+        int source = indexOf(from);
+        int target = indexOf(to);
+        if (source < 0 || target < 0 || source == target){
+            return null;
+        }
+        Search s = searches.get();
+        if (!s.run(source, target, byDistance, guided && byDistance)){
+            return null;
+        }
+        return s.toRoute(target);
+    }
+    
+    /**
+     * Finds the cheapest routes with Dijkstra from one node to all
+     * others it can reach.
+     *
+     * @param source the number of the node to start from.
+     * @return the number of the node before every node on its route,
+     *                  the source itself for the source and -1 for the
+     *                  nodes that can not be reached.
+     */
+    int[] findTree(int source){
+        Search s = searches.get();
+        s.run(source, -1, false, false);
+        return s.toTree(source);
+    }
+    
+    /**
+     * @return how many nodes the latest search on this thread settled.
+     */
+    int getSettled(){
+        return searches.get().settled;
+    }
+    
+    private static double distance(INode a, INode b){
+        double dx = a.getXpos() - b.getXpos();
+        double dy = a.getYpos() - b.getYpos();
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+    
+    /**
+     * The state of one search, reused by the next search on the
+     * same thread. Nodes that were not reached in the current search
+     * are told apart by an older stamp, so nothing is cleared between
+     * searches.
+     */
+    private final class Search {
+        
+        private final double[] distance;
+        private final double[] priority;
+        private final int[] previous;
+        private final int[] stamp;
+        private int current;
+        
+        private final int[] heap;
+        private final int[] heapPosition;
+        private final int[] order;
+        private int heapSize;
+        private int pushed;
+        
+        private int[] route = new int[16];
+        private int settled;
+        
+        Search(int size){
+            distance = new double[size];
+            priority = new double[size];
+            previous = new int[size];
+            stamp = new int[size];
+            heap = new int[size];
+            heapPosition = new int[size];
+            order = new int[size];
+        }
+        
+        /**
+         * Runs Dijkstra from the source until the target is settled, or
+         * until every node it can reach is for a target of -1. A
+         * guided search is A*, it takes the nodes in the order of their
+         * distance plus the cost of the straight line to the target.
+         *
+         * @return true if the target was reached.
+         */
+        boolean run(int source, int target, boolean byDistance, boolean guided){
+            current++;
+            if (current == 0){
+                Arrays.fill(stamp, 0);
+                current = 1;
+            }
+            heapSize = 0;
+            pushed = 0;
+            settled = 0;
+            INode goal = target < 0 ? null : nodes[target];
+            reach(source, 0, 0, -1);
+            while (heapSize > 0){
+                int node = poll();
+                settled++;
+                if (node == target){
+                    return true;
+                }
+                double base = distance[node];
+                for (int e = firstLane[node]; e < firstLane[node + 1]; e++){
+                    int next = laneEnd[e];
+                    double through = base + lanes[e].getWeight();
+                    if (byDistance){
+                        through += laneCost[e];
+                    }
+                    if (stamp[next] != current){
+                        double left = guided ? distance(nodes[next], goal) * DISTANCE_COST : 0;
+                        reach(next, through, left, node);
+                    } else if (through < distance[next] && heapPosition[next] >= 0){
+                        reach(next, through, priority[next] - distance[next], node);
+                    }
+                }
+            }
+            return false;
+        }
+        
+        /**
+         * Gives a node a shorter distance, putting it in the queue or
+         * moving it up in it. A settled node is never reached again,
+         * since weights are never negative and the straight line is
+         * never longer than the road.
+         *
+         * @param left the least the rest of the way to the target costs.
+         */
+        private void reach(int node, double d, double left, int from){
+            boolean queued = stamp[node] == current && heapPosition[node] >= 0;
+            stamp[node] = current;
+            distance[node] = d;
+            priority[node] = d + left;
+            previous[node] = from;
+            order[node] = pushed++;
+            if (queued){
+                up(heapPosition[node]);
+            } else {
+                heap[heapSize] = node;
+                heapPosition[node] = heapSize;
+                up(heapSize++);
+            }
+        }
+        
+        private int poll(){
+            int top = heap[0];
+            heapPosition[top] = -1;
+            heapSize--;
+            if (heapSize > 0){
+                heap[0] = heap[heapSize];
+                heapPosition[heap[0]] = 0;
+                down(0);
+            }
+            return top;
+        }
+        
+        /**
+         * Nodes with the lowest priority first, and of nodes with the
+         * same priority the one that got there first.
+         */
+        private boolean before(int a, int b){
+            return priority[a] < priority[b] || (priority[a] == priority[b] && order[a] < order[b]);
+        }
+        
+        private void up(int i){
+            int node = heap[i];
+            while (i > 0){
+                int parent = (i - 1) >>> 1;
+                if (!before(node, heap[parent])){
+                    break;
+                }
+                heap[i] = heap[parent];
+                heapPosition[heap[i]] = i;
+                i = parent;
+            }
+            heap[i] = node;
+            heapPosition[node] = i;
+        }
+        
+        private void down(int i){
+            int node = heap[i];
+            while (true){
+                int child = 2 * i + 1;
+                if (child >= heapSize){
+                    break;
+                }
+                if (child + 1 < heapSize && before(heap[child + 1], heap[child])){
+                    child++;
+                }
+                if (!before(heap[child], node)){
+                    break;
+                }
+                heap[i] = heap[child];
+                heapPosition[heap[i]] = i;
+                i = child;
+            }
+            heap[i] = node;
+            heapPosition[node] = i;
+        }
+        
+        /**
+         * Copies the predecessors of a search run to exhaustion.
+         */
+        int[] toTree(int source){
+            int[] tree = new int[nodes.length];
+            for (int i = 0; i < tree.length; i++){
+                tree[i] = stamp[i] == current ? previous[i] : -1;
+            }
+            tree[source] = source;
+            return tree;
+        }
+        
+        /**
+         * Follows the predecessors back from the target, then turns the
+         * route front to back.
+         */
+        Route toRoute(int target){
+            int length = 0;
+            for (int n = target; n >= 0; n = previous[n]){
+                if (length == route.length){
+                    route = Arrays.copyOf(route, length * 2);
+                }
+                route[length++] = n;
+            }
+            int[] nodes = new int[length];
+            for (int i = 0; i < length; i++){
+                nodes[i] = route[length - 1 - i];
+            }
+            return new Route(Router.this.nodes, nodes);
+        }
+    }
+}
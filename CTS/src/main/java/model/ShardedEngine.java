@@ -0,0 +1,252 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+/**
+ * Runs the vehicles and nodes of a map split into spatial regions,
+ * each region on its own worker thread.
+ *
+ * The map is cut into vertical strips holding about the same number of
+ * nodes. A region owns its nodes and every lane that ends in one of
+ * them, together with the vehicles on those lanes, so the car following
+ * rule and the nodes never look outside their own region. A lane that
+ * starts in another region gets a BoundaryQueue. The start node puts
+ * vehicles in the queue and the owning region moves them into the lane
+ * at the start of the next tick.
+ *
+ * The thread calling tick() meets the workers at a barrier when the
+ * tick starts and again when all regions are done. Vehicles crossing a
+ * boundary enter their new lane one tick later than they would in the
+ * serial engine, so the two modes do not give identical results.
+ */
+final class ShardedEngine {
+    
+    /**
+     * Vehicles that can wait at a boundary lane before the start
+     * node has to hold them back.
+     */
+    private static final int BOUNDARY_CAPACITY = 8;
+    
+    private final Region[] regions;
+    private final List<Lane> boundaryLanes = new ArrayList<>();
+    private final CyclicBarrier barrier;
+    private final Thread[] workers;
+    private volatile boolean running = true;
+    private volatile RuntimeException failure;
+    
+    /**
+     * Splits the map into one region per available processor.
+     *
+     * @param nodes all nodes in the map.
+     * @param lanes all lanes in the map.
+     */
+    ShardedEngine(List<INode> nodes, List<Lane> lanes){
+        this(nodes, lanes, Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * @param nodes all nodes in the map.
+     * @param lanes all lanes in the map.
+     * @param regionCount the number of regions and worker threads.
+     */
+    ShardedEngine(List<INode> nodes, List<Lane> lanes, int regionCount){
+        int count = Math.max(1, Math.min(regionCount, nodes.size()));
+        regions = new Region[count];
+        for (int i = 0; i < count; i++){
+            regions[i] = new Region();
+        }
+        
+        //Strips of about the same number of nodes, from west to east.
+        List<INode> sorted = new ArrayList<>(nodes);
+        Collections.sort(sorted, new Comparator<INode>(){
+            @Override
+            public int compare(INode a, INode b){
+                return Double.compare(a.getXpos(), b.getXpos());
+            }
+        });
+        Map<INode, Region> owner = new IdentityHashMap<>();
+        for (int i = 0; i < sorted.size(); i++){
+            Region r = regions[(int) ((long) i * count / sorted.size())];
+            r.nodes.add(sorted.get(i));
+            owner.put(sorted.get(i), r);
+        }
+        for (Lane l : lanes){
+            Region r = owner.get(l.getEndNode());
+            if (r == null){
+                continue;
+            }
+            r.lanes.add(l);
+            if (owner.get(l.getStartNode()) != r){
+                l.setHandoff(new BoundaryQueue<Vehicle>(BOUNDARY_CAPACITY));
+                r.boundary.add(l);
+                boundaryLanes.add(l);
+            }
+        }
+        
+        barrier = new CyclicBarrier(count + 1);
+        workers = new Thread[count];
+        for (int i = 0; i < count; i++){
+            workers[i] = new Thread(new Worker(regions[i]), "region-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+    
+    /**
+     * @return the number of regions the map was split into.
+     */
+    int getRegionCount(){
+        return regions.length;
+    }
+    
+    /**
+     * @return the number of lanes that cross between two regions.
+     */
+    int getBoundaryLaneCount(){
+        return boundaryLanes.size();
+    }
+    
+    /**
+     * Runs one tick in every region and waits until all are done.
+     */
+    void tick(){
+        await();
+        await();
+        RuntimeException e = failure;
+        if (e != null){
+            failure = null;
+            throw e;
+        }
+    }
+    
+    /**
+     * Stops the workers and turns the boundary lanes back into
+     * ordinary lanes. Vehicles still queued enter their lane if
+     * there is room, the rest are removed from the map.
+     */
+    void shutdown(){
+        running = false;
+        await();
+        for (Thread t : workers){
+            try {
+                t.join();
+            } catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (Lane l : boundaryLanes){
+            l.deliverHandoff();
+            BoundaryQueue<Vehicle> queue = l.getHandoff();
+            Vehicle v = queue.poll();
+            while (v != null){
+                v.kill();
+                v = queue.poll();
+            }
+            l.setHandoff(null);
+        }
+    }
+    
+    private void await(){
+        try {
+            barrier.await();
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the regions", e);
+        } catch (BrokenBarrierException e){
+            throw new IllegalStateException("A region stopped during a tick", e);
+        }
+    }
+    
+    /**
+     * The nodes and lanes owned by one worker thread.
+     */
+    private static final class Region {
+        
+        private final List<INode> nodes = new ArrayList<>();
+        private final List<Lane> lanes = new ArrayList<>();
+        private final List<Lane> boundary = new ArrayList<>();
+        
+        void tick(){
+            for (Lane l : boundary){
+                l.deliverHandoff();
+            }
+            for (Lane l : lanes){
+                Vehicle v = l.getFirstVehicle();
+                while (v != null){
+                    v.plan();
+                    v = v.getVehicleBehind();
+                }
+            }
+            for (Lane l : lanes){
+                Vehicle v = l.getFirstVehicle();
+                while (v != null){
+                    v.commit();
+                    v = v.getVehicleBehind();
+                }
+            }
+            for (INode n : nodes){
+                n.think();
+            }
+        }
+    }
+    
+    private final class Worker implements Runnable {
+        
+        private final Region region;
+        
+        Worker(Region region){
+            this.region = region;
+        }
+        
+        @Override
+        public void run(){
+            try {
+                while (true){
+                    barrier.await();
+                    if (!running){
+                        return;
+                    }
+                    try {
+                        region.tick();
+                    } catch (RuntimeException e){
+                        failure = e;
+                    }
+                    barrier.await();
+                }
+            } catch (InterruptedException e){
+                barrier.reset();
+            } catch (BrokenBarrierException e){
+                //The map is shutting down.
+            }
+        }
+    }
+}
@@ -23,7 +23,7 @@
 package model;
 
 import java.awt.Color;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.Random;
@@ -32,6 +32,8 @@ import model.risk.*;
 import model.stress.*;
 import util.IDrawable;
 import util.RandomColor;
+import util.RenderBuffer;
+import util.SimRandom;
 import util.Weather;
 
 
@@ -58,19 +60,27 @@ public abstract class TrafficEntity {
     
     private boolean alive = true;
     
-    private static int timeOfDay = 8;
-    private static Weather weather = Weather.SUNSHINE;
-    
     private final String ID;
-    private double xpos;
-    private double ypos;
     
-    private Color color;
+    /*
+    position, direction, speed and color live in the store
+    */
+    private final VehicleStore store;
+    private final int slot;
+    
+    /*
+    time of day and weather of the simulation the entity is part of
+    */
+    private final Environment environment;
+    
+    /*
+    the entity's own stream, split from the simulation's generator
+    */
+    private final Random random;
+    
     private int bathroom;
-    private double yaw;
     private int hunger;
     private boolean drunk;
-    private int currentSpeed;
     
     /**
      * Constants
@@ -83,6 +93,7 @@ public abstract class TrafficEntity {
     private final static int MAX_SPEED = 500;
     private final static int MAX_HUNGER = 1000;
     private final static int MAX_BATHROOM = 1000;
+    private final static List<Color> IGNORED_COLORS = Collections.singletonList(Color.GRAY);
     
     /**
      * Behaviors extracted with Strategy Pattern
@@ -95,26 +106,43 @@ public abstract class TrafficEntity {
     private Stress stress;
     
     /**
+     * Creates an entity outside of a map, with a store and an
+     * environment of its own that go away together with it.
+     *
      * @param length as an integer in the range from 1 to 50 meters
      * @param max as an integer in the range from 1 to 500 km/h
      */
     protected TrafficEntity(int length, int max){
+        this(length, max, new VehicleStore(1), new Environment(), new SimRandom());
+    }
+    
+    /**
+     * @param length as an integer in the range from 1 to 50 meters
+     * @param max as an integer in the range from 1 to 500 km/h
+     * @param store that holds the moving state of the entity.
+     * @param environment the time of day and weather the entity lives in.
+     * @param random the entity's own generator, everything random
+     *                  about the entity is drawn from it.
+     */
+    TrafficEntity(int length, int max, VehicleStore store, Environment environment, Random random){
         if ((length > MAX_LENGTH || length < MIN_LENGTH) || (max > MAX_SPEED || max < MIN_SPEED)){
             throw new IllegalArgumentException();
         }
-        Random random = new Random();
-        ID = UUID.randomUUID().toString();
+        this.random = random;
+        ID = randomID(random);
         this.LENGTH = length;
         this.SPEED = max;
-        currentSpeed = randomSpeed(SPEED);
-        List<Color> ignore = new ArrayList<>();
-        ignore.add(Color.GRAY);
-        color = RandomColor.generateColor(ignore);
+        this.store = store;
+        this.environment = environment;
+        slot = store.allocate();
+        store.length[slot] = length;
+        store.speed[slot] = randomSpeed(SPEED);
+        store.color[slot] = RandomColor.generateColor(IGNORED_COLORS, random).getRGB();
         drunk  = false;
         bathroom = random.nextInt(MAX_BATHROOM -1);
         hunger = random.nextInt(MAX_HUNGER -1);
-        this.risk = new Average();
-        this.stress = new Normal();
+        this.risk = new Average(random);
+        this.stress = new Normal(random);
     }
     
     /**
@@ -125,6 +153,17 @@ public abstract class TrafficEntity {
      */
     protected abstract IDrawable getGraphics();
     
+    /**
+     * Writes the graphics of the entity to a render buffer. Entities
+     * that can write their command directly override this, so that
+     * no drawable object is created per frame.
+     *
+     * @param buffer the buffer to append to.
+     */
+    void render(RenderBuffer buffer) {
+        buffer.add(getGraphics());
+    }
+    
     /**
      * Called on each tick.
      * This is where the entity moves or changes states
@@ -132,8 +171,56 @@ public abstract class TrafficEntity {
      */
     protected abstract boolean think();
     
+    /**
+     * First half of a two phase tick.
+     * Decides what the entity will do this tick, based only on the
+     * state everyone had at the start of the tick. Nothing that other
+     * entities can see may change here, so entities can plan in any
+     * order or in parallel.
+     */
+    protected void plan(){
+    }
+    
+    /**
+     * Second half of a two phase tick.
+     * Applies what was decided in plan().
+     */
+    protected void commit(){
+    }
+    
+    /**
+     * @return the store holding the moving state of this entity.
+     */
+    final VehicleStore getStore(){
+        return store;
+    }
+    
+    /**
+     * @return the index of this entity in its store.
+     */
+    final int getSlot(){
+        return slot;
+    }
+    
+    /**
+     * @return the generator of this entity.
+     */
+    protected final Random getRandom(){
+        return random;
+    }
+    
     private int randomSpeed(int speed){
-        return speed/2 + ((int) (Math.random()*(speed/2))) ;
+        return speed/2 + ((int) (random.nextDouble()*(speed/2))) ;
+    }
+    
+    /**
+     * A version 4 UUID drawn from the given generator instead of
+     * the shared secure random of UUID.randomUUID().
+     */
+    private static String randomID(Random random){
+        long most = (random.nextLong() & ~0xf000L) | 0x4000L;
+        long least = (random.nextLong() & ~(0xc000000000000000L)) | 0x8000000000000000L;
+        return new UUID(most, least).toString();
     }
     
     protected final void setDrunk(){
@@ -147,16 +234,14 @@ public abstract class TrafficEntity {
     }
     
     /**
-     * Update the current time.
+     * Update the current time of the environment the entity lives in.
      * A time is represented in hours by an integer value
      * from 0 to 23. 0 is equal to 24.00.
      *
      * @param time to update to.
      */
-    protected final static void setTimeOfDay(int time){
-        if (time < 24 && time >= 0){
-            timeOfDay = time;
-        }
+    protected final void setTimeOfDay(int time){
+        environment.setTimeOfDay(time);
     }
     
     /**
@@ -185,32 +270,30 @@ public abstract class TrafficEntity {
         }
     }
     /**
-     * Gets the current time in the simulation.
+     * Gets the current time of the environment the entity lives in.
      *
      * @return the current hour as an integer.
      */
-    protected final static int getTimeOfDay(){
-        return timeOfDay;
+    protected final int getTimeOfDay(){
+        return environment.getTimeOfDay();
     }
     
     /**
-     * Update current weather.
+     * Update current weather of the environment the entity lives in.
      *
      * @param current weather.
      */
-    protected final static void setWeather(Weather current){
-        if (current != null){
-            weather = current;
-        }
+    protected final void setWeather(Weather current){
+        environment.setWeather(current);
     }
     
     /**
-     * Gets the current weather in the simulation.
+     * Gets the current weather of the environment the entity lives in.
      *
      * @return the current weather.
      */
-    protected final static Weather getWeather(){
-        return weather;
+    protected final Weather getWeather(){
+        return environment.getWeather();
     }
     
     /**
@@ -219,7 +302,7 @@ public abstract class TrafficEntity {
      * @return the x coordinate as an integer.
      */
     public final double getXpos(){
-        return xpos;
+        return store.xpos[slot];
     }
     
     /**
@@ -228,7 +311,7 @@ public abstract class TrafficEntity {
      * @return the y coordinate as an integer.
      */
     public final double getYpos(){
-        return ypos;
+        return store.ypos[slot];
     }
     
     /**
@@ -237,7 +320,9 @@ public abstract class TrafficEntity {
      * @param ypos of the new position as an integer.
      */
     protected final void setYpos(double ypos){
-        this.ypos = ypos;
+        store.ypos[slot] = ypos;
+        store.wake(slot);
+        store.markMoved(slot);
     }
     
     /**
@@ -246,7 +331,9 @@ public abstract class TrafficEntity {
      * @param xpos of the new position as an integer.
      */
     protected final void setXpos(double xpos){
-        this.xpos = xpos;
+        store.xpos[slot] = xpos;
+        store.wake(slot);
+        store.markMoved(slot);
     }
     
     protected final void kill(){
@@ -347,7 +434,7 @@ public abstract class TrafficEntity {
      * @return the current speed as an integer.
      */
     protected final int getCurrentSpeed(){
-        return currentSpeed;
+        return store.speed[slot];
     }
     
     /**
@@ -357,7 +444,7 @@ public abstract class TrafficEntity {
      */
     protected final void setColor(Color color) {
         if (color != null){
-            this.color = color;
+            store.color[slot] = color.getRGB();
         }
     }
     
@@ -367,7 +454,14 @@ public abstract class TrafficEntity {
      * @return the current Color of the TrafficEntity.
      */
     protected final Color getColor() {
-        return new Color(color.getRed(),color.getGreen(),color.getBlue());
+        return new Color(store.color[slot]);
+    }
+    
+    /**
+     * @return the current color as packed RGB.
+     */
+    final int getColorRGB() {
+        return store.color[slot];
     }
     
     /**
@@ -376,7 +470,7 @@ public abstract class TrafficEntity {
      * @return an integer representation of the current stress level.
      */
     protected final int getStress() {
-        return stress.calculateStress(bathroom, hunger, timeOfDay);
+        return stress.calculateStress(bathroom, hunger, environment.getTimeOfDay());
     }
     
     /**
@@ -425,7 +519,7 @@ public abstract class TrafficEntity {
      * @return the current direction (degrees) as a double.
      */
     protected final double getDirection(){
-        return yaw;
+        return store.yaw[slot];
     }
     
     /**
@@ -434,7 +528,9 @@ public abstract class TrafficEntity {
      * @param direction in degrees represented as a double.
      */
     protected final void setDirection(double direction){
-        yaw = direction%360;
+        store.yaw[slot] = direction%360;
+        store.wake(slot);
+        store.markMoved(slot);
     }
     
     /**
@@ -446,7 +542,7 @@ public abstract class TrafficEntity {
      * false otherwise.
      */
     protected final boolean takesRisk(){
-        return risk.willTakeRisk(getStress(), 0, getWeather(), timeOfDay);
+        return risk.willTakeRisk(getStress(), 0, environment.getWeather(), environment.getTimeOfDay());
     }
     
     protected final String getRiskDescription(){
@@ -22,7 +22,7 @@
 
 package model;
 
-import model.path.Path;
+import java.util.Random;
 
 /**
  * Gathered functionality and shared variables for
@@ -34,32 +34,53 @@ import model.path.Path;
 public abstract class Vehicle extends TrafficEntity{
     
     private final int YEAR_MODEL;
-    private boolean crashed;
     
     /*
     Vehicles are supposed to act like linked lists
     A vehicle has knowledge of what vehicle is in front / behind of itself.
     Based on this the vehicle can drive faster/slower or wait in queues.
+    The slots of the vehicles in front and behind are mirrored into the store.
     */
     private Vehicle front;
     private Vehicle behind;
     
-    /*
-    the position the vehicle moves towards
-    */
-    private double targetX;
-    private double targetY;
     private Lane currentLane;
     
     private INode destination;
-    private Path<INode> path;
+    
+    /*
+    the route, shared with other vehicles, and the position along it of
+    the node the vehicle is driving to
+    */
+    private Route route;
+    private int routeCursor;
+    
+    /*
+    the map the vehicle drives in, asked for routes
+    */
+    private final WorldMap world;
     
     protected Vehicle(int length, int max){
         super(length, max);
+        world = null;
+        YEAR_MODEL = randomYear(1940, 2014);
+        front = null;
+        behind = null;
+    }
+    
+    /**
+     * @param length as an integer in the range from 1 to 50 meters
+     * @param max as an integer in the range from 1 to 500 km/h
+     * @param store that holds the moving state of the vehicle.
+     * @param environment the time of day and weather the vehicle drives in.
+     * @param random the vehicle's own generator.
+     * @param world the map that routes are asked from, null for a
+     *                  vehicle outside of a map, which finds no routes.
+     */
+    Vehicle(int length, int max, VehicleStore store, Environment environment, Random random, WorldMap world){
+        super(length, max, store, environment, random);
+        this.world = world;
         YEAR_MODEL = randomYear(1940, 2014);
-        targetX = 0.0;
-        targetY = 0.0;
-        crashed = false;
         front = null;
         behind = null;
     }
@@ -73,10 +94,41 @@ public abstract class Vehicle extends TrafficEntity{
     }
     
     /**
-     * @return  the current path of this entity
+     * @return the route of the vehicle, null if it has none.
      */
-    protected final Path<INode> getPath(){
-        return path;
+    final Route getRoute(){
+        return route;
+    }
+    
+    /**
+     * Gives the vehicle a new route, which must contain the node at the
+     * end of the lane it is in.
+     */
+    final void setRoute(Route r){
+        route = r;
+        routeCursor = 1;
+    }
+    
+    /**
+     * Gets the node after the given one on the route. The route is only
+     * looked at from the node the vehicle drove to last on, since it
+     * never goes back, so going through a node costs the same wherever
+     * it is on the route.
+     *
+     * @param at the node the vehicle is at.
+     * @return the next node, null if there is no route, the node is not
+     *                  on it or it is the goal.
+     */
+    final INode nextNode(INode at){
+        if (route == null){
+            return null;
+        }
+        int i = route.indexOf(at, routeCursor);
+        if (i < 0){
+            return null;
+        }
+        routeCursor = i;
+        return i < route.getLength() ? route.get(i + 1) : null;
     }
     
     /**
@@ -84,18 +136,30 @@ public abstract class Vehicle extends TrafficEntity{
      * 
      * @param from is the starting node.
      * @return false if no path was found, true otherwise
+     * @throws IllegalStateException if the vehicle is not part of a map.
      */
     protected final boolean calculatePath(INode from){
-        Path<INode> p = WorldMap.getInstance().findRoute(from, destination); 
-        if (p == null){
+        if (world == null){
+            throw new IllegalStateException("The vehicle is not part of a map");
+        }
+        Route r = world.routeBetween(from, destination);
+        if (r == null){
             return false;
         }
         else {
-            path = p;
+            setRoute(r);
             return true;
         }
     }
     
+    /**
+     * Applies the move planned in this tick, if any.
+     */
+    @Override
+    protected final void commit(){
+        getStore().commit(getSlot());
+    }
+    
     protected final void aimAtTarget(){
         double dx = this.getTargetX() - this.getXpos();
         double dy = this.getTargetY() - this.getYpos();
@@ -129,8 +193,10 @@ public abstract class Vehicle extends TrafficEntity{
     protected final void setVehicleBehind(Vehicle v){
         if (v == null){
             behind = null;
+            getStore().behind[getSlot()] = VehicleStore.NO_VEHICLE;
         }else if (!this.equals(v) && !v.equals(getVehicleInFront())){
             behind = v;
+            getStore().behind[getSlot()] = v.getStore() == getStore() ? v.getSlot() : VehicleStore.NO_VEHICLE;
         }
     }
     
@@ -142,9 +208,12 @@ public abstract class Vehicle extends TrafficEntity{
     protected final void setVehicleInFront(Vehicle v){
         if (v == null){
             front = null;
+            getStore().front[getSlot()] = VehicleStore.NO_VEHICLE;
         }else if (!this.equals(v) && !v.equals(getVehicleBehind())){
             front = v;
+            getStore().front[getSlot()] = v.getStore() == getStore() ? v.getSlot() : VehicleStore.NO_VEHICLE;
         }
+        getStore().wake(getSlot());
     }
     
     /**
@@ -174,8 +243,9 @@ public abstract class Vehicle extends TrafficEntity{
      * @param y coordinate represented as a double.
      */
     protected final void setTargetPosition(double x, double y){
-        this.targetX = x;
-        this.targetY = y;
+        getStore().targetX[getSlot()] = x;
+        getStore().targetY[getSlot()] = y;
+        getStore().wake(getSlot());
     }
     
     /**
@@ -184,7 +254,7 @@ public abstract class Vehicle extends TrafficEntity{
      * @return target x position represented as a double.
      */
     protected final double getTargetX(){
-        return targetX;
+        return getStore().targetX[getSlot()];
     }
     
     /**
@@ -193,7 +263,7 @@ public abstract class Vehicle extends TrafficEntity{
      * @return target y position represented as a double.
      */
     protected final double getTargetY(){
-        return targetY;
+        return getStore().targetY[getSlot()];
     }
     
     /**
@@ -236,9 +306,7 @@ public abstract class Vehicle extends TrafficEntity{
      * @return the distance to the vehicle's target represented as a double.
      */
     protected final double getTargetDistance(){
-        double dx = Math.abs(targetX - this.getXpos());
-        double dy = Math.abs(targetY - this.getYpos());
-        return Math.sqrt(Math.pow(dx,2)+Math.pow(dy,2));
+        return getStore().distance(getSlot(), getTargetX(), getTargetY());
     }
     
     /**
@@ -247,7 +315,7 @@ public abstract class Vehicle extends TrafficEntity{
      * @return true if vehicle is currently crashed, false otherwise.
      */
     protected final boolean getCrashed() {
-        return crashed;
+        return getStore().crashed[getSlot()];
     }
     
     /**
@@ -257,7 +325,8 @@ public abstract class Vehicle extends TrafficEntity{
      *                                  false otherwise.
      */
     protected final void setCrashed(boolean crashed) {
-        this.crashed = crashed;
+        getStore().crashed[getSlot()] = crashed;
+        getStore().wake(getSlot());
     }
     
     /**
@@ -281,9 +350,9 @@ public abstract class Vehicle extends TrafficEntity{
      */
     private int randomYear(int start, int end) {
         if (end > start && 0 < start){
-            return (start + (int)Math.round(Math.random() * (end - start)));
+            return (start + (int)Math.round(getRandom().nextDouble() * (end - start)));
         }
         return 0;
     }
-    
+
 }
@@ -0,0 +1,493 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Holds the moving state of many vehicles in parallel primitive arrays.
+ *
+ * Every vehicle owns one slot, and its position, direction, target,
+ * speed and the slot of the vehicle in front of it live at that index
+ * in the columns below. The car following rule then runs as a plain
+ * loop over the columns instead of chasing references between objects.
+ *
+ * Slots of released vehicles are reused through a free list so the
+ * columns stay dense while vehicles come and go.
+ *
+ * A vehicle whose plan would leave it where it is, because it waits at
+ * its target or behind a vehicle that is too close, goes to sleep and
+ * is skipped by plan() until something it looks at changes: the vehicle
+ * in front moves or is replaced, or its own position or target is set.
+ */
+final class VehicleStore {
+    
+    static final int NO_VEHICLE = -1;
+    
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int TAILGATE_DISTANCE = 10;
+    
+    double[] xpos;
+    double[] ypos;
+    double[] yaw;
+    double[] targetX;
+    double[] targetY;
+    int[] speed;
+    int[] length;
+    int[] color;
+    int[] front;
+    int[] behind;
+    boolean[] crashed;
+    boolean[] live;
+    
+    /*
+    the move decided in plan(), applied in commit()
+    */
+    boolean[] planned;
+    double[] plannedX;
+    double[] plannedY;
+    double[] plannedYaw;
+    boolean[] asleep;
+    
+    /*
+    vehicles moved analytically by the event engine, see anchor()
+    */
+    boolean[] ballistic;
+    long[] anchorTick;
+    long[] arrivalTick;
+    double[] anchorX;
+    double[] anchorY;
+    double[] anchorYaw;
+    
+    /*
+    the tick every vehicle entered its lane in, see Lane.getTravelTime()
+    */
+    long[] enteredTick;
+    
+    /*
+    the tick every slot was handed to its vehicle in, and how many
+    times it was handed out, which tells its vehicles apart
+    */
+    long[] allocatedTick;
+    int[] generation;
+    private long tick;
+    
+    /*
+    the slots whose position or direction changed, while a frame
+    listener is kept up to date, see trackMoves()
+    */
+    private DirtyList moved;
+    
+    private int size;
+    private int[] free;
+    private int freeCount;
+    private int liveCount;
+    
+    VehicleStore(){
+        this(INITIAL_CAPACITY);
+    }
+    
+    VehicleStore(int capacity){
+        allocateColumns(Math.max(1, capacity));
+        free = new int[16];
+    }
+    
+    /**
+     * Sets the tick the vehicles are in, before they move in it.
+     */
+    void setTick(long tick){
+        this.tick = tick;
+    }
+    
+    /**
+     * @return the tick the vehicles are in, 0 for a store outside a map.
+     */
+    long getTick(){
+        return tick;
+    }
+    
+    /**
+     * Starts or stops keeping the slots whose position or direction
+     * was changed, for the frame deltas of the map.
+     *
+     * @param track true to start with no slot marked, false to stop.
+     */
+    void trackMoves(boolean track){
+        moved = track ? new DirtyList(xpos.length) : null;
+    }
+    
+    /**
+     * @return the slots whose position or direction changed since the
+     *          list was cleared, null when moves are not tracked.
+     */
+    DirtyList getMoved(){
+        return moved;
+    }
+    
+    /**
+     * Notes that the position or direction of a slot was changed.
+     *
+     * @param slot of the vehicle.
+     */
+    void markMoved(int slot){
+        if (moved != null){
+            moved.mark(slot);
+        }
+    }
+    
+    /**
+     * Reserves a slot for a new vehicle. The slot is cleared before
+     * it is returned.
+     *
+     * @return the index of the new slot.
+     */
+    synchronized int allocate(){
+        int slot;
+        if (freeCount > 0){
+            slot = free[--freeCount];
+        } else {
+            if (size == xpos.length){
+                allocateColumns(size * 2);
+            }
+            slot = size++;
+        }
+        xpos[slot] = 0.0;
+        ypos[slot] = 0.0;
+        yaw[slot] = 0.0;
+        targetX[slot] = 0.0;
+        targetY[slot] = 0.0;
+        speed[slot] = 0;
+        length[slot] = 0;
+        color[slot] = 0;
+        front[slot] = NO_VEHICLE;
+        behind[slot] = NO_VEHICLE;
+        crashed[slot] = false;
+        planned[slot] = false;
+        asleep[slot] = false;
+        ballistic[slot] = false;
+        allocatedTick[slot] = tick;
+        generation[slot]++;
+        live[slot] = true;
+        liveCount++;
+        return slot;
+    }
+    
+    /**
+     * Gives a slot back to the store so that a later vehicle can use it.
+     *
+     * @param slot the slot of a vehicle that has left the simulation.
+     */
+    synchronized void release(int slot){
+        if (slot < 0 || slot >= size || !live[slot]){
+            return;
+        }
+        live[slot] = false;
+        liveCount--;
+        if (freeCount == free.length){
+            free = Arrays.copyOf(free, freeCount * 2);
+        }
+        free[freeCount++] = slot;
+    }
+    
+    /**
+     * Releases every slot at once.
+     */
+    synchronized void clear(){
+        Arrays.fill(live, 0, size, false);
+        size = 0;
+        freeCount = 0;
+        liveCount = 0;
+    }
+    
+    /**
+     * @return the number of slots currently in use.
+     */
+    synchronized int getLiveCount(){
+        return liveCount;
+    }
+    
+    /**
+     * @return the number of slots the columns currently have room for.
+     */
+    synchronized int getCapacity(){
+        return xpos.length;
+    }
+    
+    /**
+     * Lets every vehicle in the store plan its move.
+     */
+    void planAll(){
+        for (int slot = 0; slot < size; slot++){
+            if (live[slot]){
+                plan(slot);
+            }
+        }
+    }
+    
+    /**
+     * Commits the planned move of every vehicle in the store.
+     */
+    void commitAll(){
+        for (int slot = 0; slot < size; slot++){
+            if (live[slot]){
+                commit(slot);
+            }
+        }
+    }
+    
+    /**
+     * Decides where the vehicle in a slot will be at the end of
+     * this tick. Only reads the slot itself and the slot in front.
+     *
+     * @param slot of the vehicle.
+     */
+    void plan(int slot){
+        if (crashed[slot] || asleep[slot]){
+            return;
+        }
+        
+        double moveDistance = speed[slot]/50;
+        int f = front[slot];
+        if (f != NO_VEHICLE){
+            //We must look at where the vehicle in front is.
+            if (distance(slot, xpos[f], ypos[f]) > moveDistance+TAILGATE_DISTANCE+length[f]){
+                planMoveTowardsTarget(slot, moveDistance);
+            }
+            //If the vehicle in front is too close, dont move until it does
+            else {
+                asleep[slot] = true;
+            }
+        }
+        else {
+            //We have no vehicle in front, just move as you wish, based on the target.
+            if (distance(slot, targetX[slot], targetY[slot]) > moveDistance){
+                planMoveTowardsTarget(slot, moveDistance);
+            }
+            //Already there, nothing changes until the crossing takes us.
+            else if (xpos[slot] == targetX[slot] && ypos[slot] == targetY[slot]){
+                asleep[slot] = true;
+            }
+            //Not enough distance to move, just set the position to the target.
+            else {
+                planPosition(slot, targetX[slot], targetY[slot], yaw[slot]);
+                // wait for the crossing, which routes us through to the next road
+            }
+        }
+    }
+    
+    /**
+     * Applies the move planned for a slot in this tick, if any.
+     *
+     * @param slot of the vehicle.
+     */
+    void commit(int slot){
+        if (planned[slot]){
+            boolean moved = xpos[slot] != plannedX[slot] || ypos[slot] != plannedY[slot];
+            boolean turned = yaw[slot] != plannedYaw[slot]%360;
+            yaw[slot] = plannedYaw[slot]%360;
+            xpos[slot] = plannedX[slot];
+            ypos[slot] = plannedY[slot];
+            planned[slot] = false;
+            if (moved && behind[slot] != NO_VEHICLE){
+                asleep[behind[slot]] = false;
+            }
+            if (moved || turned){
+                markMoved(slot);
+            }
+        }
+    }
+    
+    /**
+     * Makes a sleeping vehicle plan again from the next tick on.
+     * Called whenever something the vehicle looks at is changed
+     * from outside plan() and commit().
+     *
+     * @param slot of the vehicle.
+     */
+    void wake(int slot){
+        asleep[slot] = false;
+    }
+    
+    /**
+     * Lets a vehicle move on its own from its current position, without
+     * being planned and committed each tick. Used for a vehicle that is
+     * alone in its lane, so it has nobody in front of it to look at.
+     * The vehicle moves like in plan(): straight towards the target
+     * until it is close enough to be put on it.
+     *
+     * @param slot of the vehicle.
+     * @param tick the tick the current position belongs to.
+     * @return the tick in which the vehicle reaches its target.
+     */
+    long anchor(int slot, long tick){
+        ballistic[slot] = true;
+        anchorTick[slot] = tick;
+        anchorX[slot] = xpos[slot];
+        anchorY[slot] = ypos[slot];
+        double dx = targetX[slot] - xpos[slot];
+        double dy = targetY[slot] - ypos[slot];
+        anchorYaw[slot] = (Math.atan2(dy,dx)*(180/Math.PI))%360;
+        
+        double moveDistance = speed[slot]/50;
+        double distance = distance(slot, targetX[slot], targetY[slot]);
+        if (distance == 0){
+            arrivalTick[slot] = tick;
+        } else if (distance <= moveDistance){
+            arrivalTick[slot] = tick + 1;
+        } else if (moveDistance <= 0){
+            arrivalTick[slot] = Long.MAX_VALUE;
+        } else {
+            //Full moves while further away than one move, then one snap.
+            arrivalTick[slot] = tick + (long) Math.ceil((distance - moveDistance)/moveDistance) + 1;
+        }
+        return arrivalTick[slot];
+    }
+    
+    /**
+     * Writes where an anchored vehicle is at the given tick into
+     * its position columns.
+     *
+     * @param slot of an anchored vehicle.
+     * @param tick no earlier than the tick it was anchored at.
+     */
+    void materialize(int slot, long tick){
+        long moves = Math.min(tick, arrivalTick[slot] - 1) - anchorTick[slot];
+        if (moves > 0){
+            double distance = moves * (double) (speed[slot]/50);
+            double angle = anchorYaw[slot]/(180/Math.PI);
+            yaw[slot] = anchorYaw[slot];
+            xpos[slot] = anchorX[slot] + distance*Math.cos(angle);
+            ypos[slot] = anchorY[slot] + distance*Math.sin(angle);
+            markMoved(slot);
+        }
+        if (tick >= arrivalTick[slot]){
+            xpos[slot] = targetX[slot];
+            ypos[slot] = targetY[slot];
+            markMoved(slot);
+        }
+    }
+    
+    /**
+     * Puts an anchored vehicle back under plan() and commit(),
+     * at its position of the given tick.
+     *
+     * @param slot of an anchored vehicle.
+     * @param tick the current tick.
+     */
+    void unanchor(int slot, long tick){
+        materialize(slot, tick);
+        ballistic[slot] = false;
+        asleep[slot] = false;
+    }
+    
+    /**
+     * Distance from the vehicle in a slot to a point.
+     *
+     * @param slot of the vehicle.
+     * @param x coordinate of the point.
+     * @param y coordinate of the point.
+     * @return the distance represented as a double.
+     */
+    double distance(int slot, double x, double y){
+        double dx = Math.abs(x - xpos[slot]);
+        double dy = Math.abs(y - ypos[slot]);
+        return Math.sqrt(Math.pow(dx,2)+Math.pow(dy,2));
+    }
+    
+    private void planMoveTowardsTarget(int slot, double distance){
+        double dx = targetX[slot] - xpos[slot];
+        double dy = targetY[slot] - ypos[slot];
+        double direction = (Math.atan2(dy,dx)*(180/Math.PI))%360;
+        double angle = direction/(180/Math.PI);
+        planPosition(slot, xpos[slot]+distance*Math.cos(angle),
+                ypos[slot]+distance*Math.sin(angle), direction);
+    }
+    
+    private void planPosition(int slot, double x, double y, double direction){
+        plannedX[slot] = x;
+        plannedY[slot] = y;
+        plannedYaw[slot] = direction;
+        planned[slot] = true;
+    }
+    
+    private void allocateColumns(int capacity){
+        if (xpos == null){
+            xpos = new double[capacity];
+            ypos = new double[capacity];
+            yaw = new double[capacity];
+            targetX = new double[capacity];
+            targetY = new double[capacity];
+            speed = new int[capacity];
+            length = new int[capacity];
+            color = new int[capacity];
+            front = new int[capacity];
+            behind = new int[capacity];
+            crashed = new boolean[capacity];
+            live = new boolean[capacity];
+            planned = new boolean[capacity];
+            plannedX = new double[capacity];
+            plannedY = new double[capacity];
+            plannedYaw = new double[capacity];
+            asleep = new boolean[capacity];
+            ballistic = new boolean[capacity];
+            anchorTick = new long[capacity];
+            arrivalTick = new long[capacity];
+            anchorX = new double[capacity];
+            anchorY = new double[capacity];
+            anchorYaw = new double[capacity];
+            enteredTick = new long[capacity];
+            allocatedTick = new long[capacity];
+            generation = new int[capacity];
+        } else {
+            xpos = Arrays.copyOf(xpos, capacity);
+            ypos = Arrays.copyOf(ypos, capacity);
+            yaw = Arrays.copyOf(yaw, capacity);
+            targetX = Arrays.copyOf(targetX, capacity);
+            targetY = Arrays.copyOf(targetY, capacity);
+            speed = Arrays.copyOf(speed, capacity);
+            length = Arrays.copyOf(length, capacity);
+            color = Arrays.copyOf(color, capacity);
+            front = Arrays.copyOf(front, capacity);
+            behind = Arrays.copyOf(behind, capacity);
+            crashed = Arrays.copyOf(crashed, capacity);
+            live = Arrays.copyOf(live, capacity);
+            planned = Arrays.copyOf(planned, capacity);
+            plannedX = Arrays.copyOf(plannedX, capacity);
+            plannedY = Arrays.copyOf(plannedY, capacity);
+            plannedYaw = Arrays.copyOf(plannedYaw, capacity);
+            asleep = Arrays.copyOf(asleep, capacity);
+            ballistic = Arrays.copyOf(ballistic, capacity);
+            anchorTick = Arrays.copyOf(anchorTick, capacity);
+            arrivalTick = Arrays.copyOf(arrivalTick, capacity);
+            anchorX = Arrays.copyOf(anchorX, capacity);
+            anchorY = Arrays.copyOf(anchorY, capacity);
+            anchorYaw = Arrays.copyOf(anchorYaw, capacity);
+            enteredTick = Arrays.copyOf(enteredTick, capacity);
+            allocatedTick = Arrays.copyOf(allocatedTick, capacity);
+            generation = Arrays.copyOf(generation, capacity);
+        }
+        if (moved != null){
+            moved.grow(capacity);
+        }
+    }
+}
@@ -24,12 +24,17 @@ package model;
 import java.awt.Color;
 import util.IDrawable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.PriorityQueue;
 import java.util.Queue;
 import java.util.Random;
 import model.path.Path;
-import util.DrawableObject;
+import util.GridIndex;
+import util.RenderBuffer;
+import util.SimRandom;
+import util.Timings;
+import util.Viewport;
 import util.Weather;
 
 /**
@@ -41,29 +46,125 @@ import util.Weather;
  */
 public class WorldMap implements IWorldMap {
     
-    private static int spawnCoolDown = 5;
-    private static final int MAX_VEHICLES = 500;
+    private static final int DEFAULT_SPAWN_DELAY = 5;
+    private static final int DEFAULT_VEHICLE_BUDGET = 500;
+    private static final int YELLOW = Color.YELLOW.getRGB();
+    private static final double LANE_INDEX_CELL = 100;
     
+    /**
+     * The part of the lanes whose weight must have changed by more than
+     * half, and by more than MIN_LANE_DRIFT, before the cached routes are
+     * found again. Lanes going up and down by a vehicle or two as the
+     * traffic flows do not count.
+     */
+    private static final double ROUTE_DRIFT = 0.1;
+    static final int MIN_LANE_DRIFT = 2;
+    
+    private int spawnCoolDown = DEFAULT_SPAWN_DELAY;
     private int spawnCooldownCounter = 0;
+    private int vehicleBudget = DEFAULT_VEHICLE_BUDGET;
     
     private static WorldMap INSTANCE;
     //Shared resources
     private volatile List<Lane> lanes = new ArrayList<>();
-    private volatile List<TrafficEntity> entities = new ArrayList<>();
+    private final EntityRegistry entities = new EntityRegistry();
     private volatile List<INode> nodes = new ArrayList<>();
     private volatile List<INode> ends = new ArrayList<>();
-   
+    private final VehicleStore store = new VehicleStore();
+    private final Environment environment = new Environment();
+    private final Timings timings = new Timings();
+    private volatile Router router;
+    private volatile ContractionHierarchy hierarchy;
+    private volatile RouteTable routeTable;
+    private Replanner replanner;
+    private int rerouteBudget;
+    private final RouteCache routeCache = new RouteCache(0);
+    private volatile int routeCacheSize;
+    private volatile RouteMode routeMode = RouteMode.DIJKSTRA;
+    private int[] epochWeights;
+    private long driftCheckedTick = -1;
+    
+    /*
+    every random choice in the simulation comes from this generator
+    or from a stream split off from it
+    */
+    private long seed;
+    private long tick;
+    private SimRandom random;
+    
     private volatile boolean initialized = false;
     
+    /*
+    the lanes and nodes, written once for every generated map
+    */
+    private volatile RenderBuffer roads = new RenderBuffer();
+    
+    /*
+    the part of the map on the screen, null for all of it, and the
+    lanes by where they are so that only those on screen are drawn
+    */
+    private volatile Viewport viewport;
+    private GridIndex laneIndex;
+    
+    /*
+    the last frame published for the view, the frame the view drew
+    last and whether it has fetched the latest one, so that a new frame
+    is only built while someone draws. Frames are written to whichever
+    of the three buffers is neither published nor held by the view
+    */
+    private final RenderBuffer[] buffers = {new RenderBuffer(), new RenderBuffer(), new RenderBuffer()};
+    private volatile RenderBuffer frame = buffers[0];
+    private volatile RenderBuffer held;
+    private volatile boolean frameTaken = true;
+    
+    /*
+    the vehicle drawn with a yellow marker, the oldest one in the map
+    when it was picked
+    */
+    private TrafficEntity marked;
+    
+    /*
+    drawable objects made from the last frame for getGraphics()
+    */
+    private IDrawable[] graphics = new IDrawable[0];
+    private RenderBuffer graphicsBuffer;
+    private long graphicsFrame;
+    
+    /*
+    told about every change in the graphics, with the changes the
+    map marked during the tick
+    */
+    private FrameListener frameListener;
+    private final FrameDelta delta = new FrameDelta(entities, store);
+    
+    private EngineMode engineMode = EngineMode.SERIAL;
+    private ParallelEngine parallelEngine;
+    private ShardedEngine shardedEngine;
+    private EventEngine eventEngine;
+    private ActiveNodes activeNodes;
+    
     private WorldMap() {
+        setSeed(new SimRandom().nextLong());
     }
     
     /**
-     * Returns and IWorldMap
+     * Creates a map of its own, with its own vehicles, environment and
+     * generator, that shares nothing with any other map. Any number of
+     * them can run at the same time, each on its own thread.
+     * 
+     * @return a new, empty map.
+     */
+    public static IWorldMap newInstance() {
+        return new WorldMap();
+    }
+    
+    /**
+     * Returns the map shared by everyone that asks for it, for code
+     * that only ever runs one simulation.
      * 
      * @return the  instance of worldMap
      */
-    public static IWorldMap getInstance() {
+    public static synchronized IWorldMap getInstance() {
         if (INSTANCE == null) {
             INSTANCE = new WorldMap();
         }
@@ -71,14 +172,26 @@ public class WorldMap implements IWorldMap {
     }
     
     @Override
-    public void setLightsYellow(){
+    public synchronized void setLightsYellow(){
+        if (eventEngine != null){
+            eventEngine.wakeAll();
+        }
+        if (activeNodes != null){
+            activeNodes.wakeAll();
+        }
         for (INode n : nodes){
             n.setYellowLight();
         }
     }
     
     @Override
-    public void removeYellowLights(){
+    public synchronized void removeYellowLights(){
+        if (eventEngine != null){
+            eventEngine.wakeAll();
+        }
+        if (activeNodes != null){
+            activeNodes.wakeAll();
+        }
         for (INode n : nodes){
             n.removeYellowLight();
         }
@@ -88,42 +201,318 @@ public class WorldMap implements IWorldMap {
      * Map destructor.
      */
     public static synchronized void destroyMap() {
+        if (INSTANCE != null) {
+            INSTANCE.setEngineMode(EngineMode.SERIAL);
+        }
         INSTANCE = null;
     }
     
     @Override
-    public void clearMap(){
-        entities = new ArrayList<>();
+    public synchronized void setEngineMode(EngineMode mode) {
+        if (mode == null) {
+            return;
+        }
+        if (mode == EngineMode.PARALLEL && parallelEngine == null) {
+            parallelEngine = new ParallelEngine();
+        } else if (mode != EngineMode.PARALLEL && parallelEngine != null) {
+            parallelEngine.shutdown();
+            parallelEngine = null;
+        }
+        if (mode != EngineMode.SHARDED){
+            discardShardedEngine();
+        }
+        if (mode != EngineMode.EVENT){
+            discardEventEngine();
+        }
+        if (mode != EngineMode.SERIAL && mode != EngineMode.PARALLEL){
+            discardActiveNodes();
+        }
+        engineMode = mode;
+    }
+    
+    /**
+     * Stops the region workers, the next sharded tick splits
+     * the map again.
+     */
+    private synchronized void discardShardedEngine(){
+        if (shardedEngine != null){
+            shardedEngine.shutdown();
+            shardedEngine = null;
+        }
+    }
+    
+    /**
+     * Hands the vehicles and nodes back from the event engine, the
+     * next event tick starts a new one.
+     */
+    private synchronized void discardEventEngine(){
+        if (eventEngine != null){
+            eventEngine.shutdown();
+            eventEngine = null;
+        }
+    }
+    
+    /**
+     * Brings the sleeping nodes up to date, the next serial or
+     * parallel tick starts with every node awake.
+     */
+    private synchronized void discardActiveNodes(){
+        if (activeNodes != null){
+            activeNodes.shutdown();
+            activeNodes = null;
+        }
+    }
+    
+    @Override
+    public synchronized EngineMode getEngineMode() {
+        return engineMode;
+    }
+    
+    @Override
+    public synchronized void clearMap(){
+        discardEventEngine();
+        discardActiveNodes();
+        entities.clear();
         for (Lane l : lanes){
             l.clearCars();
         }
+        store.clear();
+        frame = buildFrame();
+        loadFrameListener();
     }
     
+    /**
+     * Returns the lanes and nodes of the map. A new buffer is returned
+     * after a map was generated, and is never written to after that.
+     */
     @Override
-    public synchronized IDrawable[] getGraphics() {
-        IDrawable[] list = new IDrawable[entities.size() + lanes.size() + nodes.size()+(entities.size() > 0 ? 1 : 0)];
-        int j = 0;
-        
+    public RenderBuffer getRoadBuffer() {
+        return roads;
+    }
+    
+    /**
+     * Returns the frame published at the end of the latest tick. Never
+     * waits for a tick to finish, and ticks never wait for the caller.
+     * The buffer is not written to until the next call, so it can be
+     * drawn by one view without copying.
+     */
+    @Override
+    public RenderBuffer getRenderBuffer() {
+        RenderBuffer latest = frame;
+        held = latest;
+        frameTaken = true;
+        return latest;
+    }
+    
+    /**
+     * Returns the roads and the frame published at the end of the latest
+     * tick as drawable objects. The objects are only created again when
+     * a new frame was published, and the array can be kept as long as
+     * needed.
+     */
+    @Override
+    public IDrawable[] getGraphics() {
+        RenderBuffer road = roads;
+        RenderBuffer latest = getRenderBuffer();
+        if (latest != graphicsBuffer || latest.getFrame() != graphicsFrame){
+            IDrawable[] list = new IDrawable[road.size() + latest.size()];
+            for (int i = 0; i < road.size(); i++){
+                list[i] = road.toDrawable(i);
+            }
+            for (int i = 0; i < latest.size(); i++){
+                list[road.size() + i] = latest.toDrawable(i);
+            }
+            graphics = list;
+            graphicsBuffer = latest;
+            graphicsFrame = latest.getFrame();
+        }
+        return graphics;
+    }
+    
+    /**
+     * Builds a new frame if the view has taken the last one.
+     * Called by the simulation thread at the end of a tick.
+     */
+    private void publishFrame(){
+        if (frameTaken){
+            frameTaken = false;
+            frame = buildFrame();
+        }
+    }
+    
+    @Override
+    public synchronized void setFrameListener(FrameListener listener) {
+        frameListener = listener;
+        if (initialized || listener == null){
+            loadFrameListener();
+        }
+    }
+    
+    private void loadFrameListener(){
+        if (frameListener != null){
+            delta.load(nodes);
+            frameListener.mapLoaded(roads);
+        } else {
+            delta.unload();
+        }
+    }
+    
+    /**
+     * Tells the frame listener what changed during the tick.
+     * Called by the simulation thread at the end of a tick.
+     */
+    private void sendDelta(){
+        if (frameListener != null){
+            if (eventEngine != null){
+                eventEngine.materializeMoving();
+            }
+            delta.update();
+            frameListener.tickFinished(delta);
+        }
+    }
+    
+    private GridIndex buildLaneIndex() {
+        GridIndex index = new GridIndex(LANE_INDEX_CELL);
         for (int i = 0; i < lanes.size(); i++) {
-            list[j] = lanes.get(i).getGraphics();
-            j++;
+            Lane l = lanes.get(i);
+            index.add(i, l.getStartX(), l.getStartY(), l.getEndX(), l.getEndY());
+        }
+        return index;
+    }
+    
+    @Override
+    public void setViewport(Viewport view) {
+        viewport = view;
+    }
+    
+    @Override
+    public Timings getTimings() {
+        return timings;
+    }
+    
+    /**
+     * Writes the lanes and nodes, each keyed by its index, to a new
+     * buffer.
+     */
+    private RenderBuffer buildRoads() {
+        RenderBuffer buffer = new RenderBuffer();
+        for (int i = 0; i < lanes.size(); i++) {
+            int n = buffer.size();
+            lanes.get(i).render(buffer);
+            buffer.setKeys(n, i);
         }
         for (int i = 0; i < nodes.size(); i++){
-            list[j] = nodes.get(i).getGraphics();
-            j++;
+            int n = buffer.size();
+            nodes.get(i).render(buffer);
+            buffer.setKeys(n, i);
         }
-        for (int i = 0; i < entities.size(); i++) {
-            list[j] = entities.get(i).getGraphics();
-            j++;
+        return buffer;
+    }
+    
+    /**
+     * Writes the vehicles to a free buffer. The roads are not part of
+     * the frame, see getRoadBuffer(). With a viewport set, only the
+     * vehicles on lanes in it are written, or the lanes coloured by
+     * how full they are if it is zoomed out too far.
+     * Vehicles are keyed by their slot and its generation, so that a
+     * view can match them with the previous frame.
+     */
+    private RenderBuffer buildFrame() {
+        if (eventEngine != null){
+            eventEngine.materializeMoving();
         }
-        if (entities.size() > 0){
-            list[j] = DrawableObject.getCircleGraphics(entities.get(0).getXpos(), entities.get(0).getYpos(), 0, Color.yellow, 5);
+        RenderBuffer list = buffers[0];
+        for (RenderBuffer b : buffers){
+            if (b != frame && b != held){
+                list = b;
+                break;
+            }
         }
+        list.clear();
+        
+        Viewport view = viewport;
+        if (view == null || laneIndex == null
+                || (view.isDetailed() && laneIndex.covers(view.getLeft(), view.getTop(), view.getRight(), view.getBottom()))){
+            for (int i = 0; i < entities.size(); i++) {
+                int n = list.size();
+                entities.get(i).render(list);
+                int slot = entities.get(i).getSlot();
+                list.setKeys(n, slot, store.generation[slot]);
+            }
+        } else {
+            //Only the lanes on the screen, and only how full they are when zoomed out.
+            int found = laneIndex.query(view.getLeft(), view.getTop(), view.getRight(), view.getBottom());
+            for (int i = 0; i < found; i++){
+                int index = laneIndex.getResult(i);
+                Lane l = lanes.get(index);
+                if (view.isDetailed()){
+                    for (Vehicle v = l.getFirstVehicle(); v != null; v = v.getVehicleBehind()){
+                        int n = list.size();
+                        v.render(list);
+                        list.setKeys(n, v.getSlot(), store.generation[v.getSlot()]);
+                    }
+                } else {
+                    l.renderDensity(list, index);
+                }
+            }
+        }
+        if (!entities.contains(marked)){
+            marked = oldestVehicle();
+        }
+        if (marked != null){
+            int n = list.size();
+            list.add(IDrawable.Type.CIRCLE, YELLOW, marked.getXpos(), marked.getYpos(), 0, 5, 0);
+            list.setKeys(n, marked.getSlot(), store.generation[marked.getSlot()]);
+        }
+        list.setTime(tick, System.nanoTime());
         return list;
     }
     
+    /*
+    The vehicle that has been in the map the longest, null if there
+    is none. Only looked for when the marked vehicle is gone.
+    */
+    private TrafficEntity oldestVehicle(){
+        TrafficEntity oldest = null;
+        for (int i = 0; i < entities.size(); i++){
+            TrafficEntity e = entities.get(i);
+            if (oldest == null || store.allocatedTick[e.getSlot()] < store.allocatedTick[oldest.getSlot()]){
+                oldest = e;
+            }
+        }
+        return oldest;
+    }
+    
+    @Override
+    public int getNumberOfVehicles(){
+        return entities.size();
+    }
+    
+    @Override
+    public synchronized void setSeed(long seed){
+        this.seed = seed;
+        random = new SimRandom(seed);
+    }
+    
+    @Override
+    public synchronized long getSeed(){
+        return seed;
+    }
+    
+    @Override
+    public synchronized void setVehicleBudget(int budget){
+        if (budget > 0){
+            vehicleBudget = budget;
+        }
+    }
+    
+    @Override
+    public synchronized int getVehicleBudget(){
+        return vehicleBudget;
+    }
+    
     @Override
-    public void updateSpawnDelay(int delay){
+    public synchronized void updateSpawnDelay(int delay){
         spawnCoolDown = delay;
     }
     
@@ -131,52 +520,101 @@ public class WorldMap implements IWorldMap {
     public synchronized boolean think() {
         if (initialized == true) {
             
+            long start = System.nanoTime();
+            tick++;
+            store.setTick(tick);
             spawnCooldownCounter--;
             
             //If the cooldown has passed, try to spawn a new car
-            if (entities.size() < MAX_VEHICLES && spawnCooldownCounter <= 0) {
+            if (entities.size() < vehicleBudget && spawnCooldownCounter <= 0) {
                 spawnCooldownCounter = spawnCoolDown;
-                Vehicle c = Car.newInstance();
+                Vehicle c = Car.newInstance(this, random.split());
                 INode startNode;
-                int choice = (int) Math.floor(Math.random() * ends.size());
+                int choice = random.nextInt(ends.size());
                 startNode = ends.get(choice);
-                choice = (int) Math.floor(Math.random() * ends.size());
+                choice = random.nextInt(ends.size());
                 c.setDestination(ends.get(choice));
                 c.calculatePath(startNode);
                 c.setXpos(50);
                 c.setYpos(50);
                 
                 //Check if this node can take the car, otherwise don't spawn it.
+                if (eventEngine != null){
+                    eventEngine.materializeExits(startNode);
+                }
                 if (startNode.spawn(c)) {
                     entities.add(c);
+                    if (rerouteBudget > 0){
+                        getReplanner().add(c);
+                    }
+                } else {
+                    store.release(c.getSlot());
                 }
             }
+            long spawned = System.nanoTime();
+            timings.record(Timings.Phase.SPAWN, spawned - start);
             
-            int i = 0;
-            //Iterate through all entities and make them think.
-            while (i < entities.size()) {
-                TrafficEntity e = entities.get(i);
-                if (e.alive()) {
-                    e.think();
-                    i++;
+            //Remove the dead, then let everyone plan and commit their moves.
+            entities.removeDead(store);
+            if (engineMode == EngineMode.SHARDED) {
+                //Every region moves its vehicles and runs its nodes.
+                if (shardedEngine == null) {
+                    shardedEngine = new ShardedEngine(nodes, lanes);
+                }
+                shardedEngine.tick();
+            } else if (engineMode == EngineMode.EVENT) {
+                //Only the busy lanes and the nodes that can let someone through.
+                if (eventEngine == null) {
+                    eventEngine = new EventEngine(nodes, lanes, store);
+                }
+                eventEngine.tick();
+            } else {
+                if (engineMode == EngineMode.PARALLEL) {
+                    parallelEngine.plan(lanes);
+                    parallelEngine.commit(lanes);
                 } else {
-                    entities.remove(e);
+                    store.planAll();
+                    store.commitAll();
                 }
+                long moved = System.nanoTime();
+                timings.record(Timings.Phase.MOVE, moved - spawned);
                 
+                //Let the nodes think, except those with nothing to do.
+                if (activeNodes == null) {
+                    activeNodes = new ActiveNodes(nodes, false);
+                    activeNodes.listenTo(lanes);
+                }
+                activeNodes.advance();
+                activeNodes.think();
+                timings.record(Timings.Phase.NODES, System.nanoTime() - moved);
             }
-            //Iterate through all nodes and make them think.
-            for (INode n : nodes) {
-                n.think();
+            long ticked = System.nanoTime();
+            if (engineMode == EngineMode.SHARDED || engineMode == EngineMode.EVENT) {
+                timings.record(Timings.Phase.MOVE, ticked - spawned);
             }
+            if (rerouteBudget > 0){
+                getReplanner().tick(rerouteBudget);
+                long rerouted = System.nanoTime();
+                timings.record(Timings.Phase.REROUTE, rerouted - ticked);
+                ticked = rerouted;
+            }
+            publishFrame();
+            sendDelta();
+            long end = System.nanoTime();
+            timings.record(Timings.Phase.FRAME, end - ticked);
+            timings.record(Timings.Phase.THINK, end - start);
         }
         return true;
     }
     
     @Override
     public boolean generate(int w, int h, int density, int maxLength, int passes) {
+        discardShardedEngine();
+        discardEventEngine();
+        discardActiveNodes();
         int width = (int) Math.floor(w / density);
         int height = (int) Math.floor(h / density);
-        RandomEnum<Direction> r = new RandomEnum<>(Direction.class);
+        RandomEnum<Direction> r = new RandomEnum<>(Direction.class, random);
         
         //The temporary map matrix
         NElement matrix[][] = new NElement[width][height];
@@ -190,8 +628,8 @@ public class WorldMap implements IWorldMap {
         }
         
         //Insert a starting node
-        int x = (int) (Math.random() * (width - 1));
-        int y = (int) (Math.random() * (height - 1));
+        int x = (int) (random.nextDouble() * (width - 1));
+        int y = (int) (random.nextDouble() * (height - 1));
         matrix[x][y].content = NContent.NODE;
         //System.out.println("Starting at: "+x+","+y);
         
@@ -203,12 +641,12 @@ public class WorldMap implements IWorldMap {
                         
                         //Chance of adding another road based on the number of currently connected nodes
                         int chance = 100-(25*matrix[i][j].connected.size());
-                        int random = (int)(Math.random()*100);
+                        int random = (int)(this.random.nextDouble()*100);
                         
                         if (random < chance && matrix[i][j].connected.size() < 4){
                             //Add a node
                             
-                            int len = (int)(Math.random() * (maxLength-1))+1;
+                            int len = (int)(this.random.nextDouble() * (maxLength-1))+1;
                             //System.out.println(len);
                             Direction dir = r.random();
                             
@@ -315,7 +753,7 @@ public class WorldMap implements IWorldMap {
         for (int i = 0; i < width; i++) {
             for (int j = 0; j < height; j++) {
                 if (matrix[i][j].content == NContent.NODE) {
-                    ns[i][j] = new Node((i * density)+density/2, (j * density)+density/2);
+                    ns[i][j] = new Node((i * density)+density/2, (j * density)+density/2, random.split());
                     nodes.add(ns[i][j]);
                 }
             }
@@ -338,6 +776,23 @@ public class WorldMap implements IWorldMap {
         for (INode n : nodes){
             if (n.getNodes().size() == 1) ends.add(n);
         }
+        synchronized (this){
+            roads = buildRoads();
+            laneIndex = buildLaneIndex();
+            frame = buildFrame();
+            loadFrameListener();
+            router = null;
+            hierarchy = null;
+            routeTable = null;
+            replanner = null;
+            routeCache.clear();
+            epochWeights = null;
+            if (routeMode == RouteMode.HIERARCHY){
+                getHierarchy();
+            } else if (routeMode == RouteMode.TABLE){
+                getRouteTable();
+            }
+        }
         initialized = true;
         return true;
     }
@@ -350,28 +805,224 @@ public class WorldMap implements IWorldMap {
     
     @Override
     public void setTimeOfDay(int time) {
-        TrafficEntity.setTimeOfDay(time);
+        environment.setTimeOfDay(time);
     }
     
     @Override
     public void setWeather(Weather current) {
-        TrafficEntity.setWeather(current);
+        environment.setWeather(current);
     }
     
     @Override
     public int getTimeOfDay() {
-        return TrafficEntity.getTimeOfDay();
+        return environment.getTimeOfDay();
     }
     
     @Override
     public Weather getWeather() {
-        return TrafficEntity.getWeather();
+        return environment.getWeather();
+    }
+    
+    /**
+     * @return the store holding the moving state of the vehicles in the map.
+     */
+    VehicleStore getStore(){
+        return store;
+    }
+    
+    /**
+     * @return the time of day and weather of the map.
+     */
+    Environment getEnvironment(){
+        return environment;
     }
     
     @Override
     public Path<INode> findRoute(INode from, INode to){
-        computePaths(from);
-        return getShortestPathTo(to);
+        Route route = routeBetween(from, to);
+        return route == null ? null : route.toPath();
+    }
+    
+    @Override
+    public Path<INode> findRoute(INode from, INode to, RouteMode mode){
+        Route route = route(from, to, mode == null ? routeMode : mode);
+        return route == null ? null : route.toPath();
+    }
+    
+    /**
+     * Finds the route with the router, or takes it from the route cache
+     * if it was found while the lanes were about as crowded as now.
+     * The routes returned from the cache are shared between vehicles.
+     *
+     * Without the cache any number of threads can find routes at once.
+     */
+    Route routeBetween(INode from, INode to){
+        if (routeCacheSize == 0){
+            return route(from, to, routeMode);
+        }
+        synchronized (this){
+            updateCongestionEpoch();
+            Route route = routeCache.get(from, to);
+            if (route == RouteCache.MISSING){
+                route = route(from, to, routeMode);
+                routeCache.put(from, to, route);
+            }
+            return route;
+        }
+    }
+    
+    @Override
+    public synchronized void setRouteMode(RouteMode mode){
+        if (mode != null && mode != routeMode){
+            routeMode = mode;
+            routeCache.advanceEpoch();
+            if (mode == RouteMode.HIERARCHY && initialized){
+                getHierarchy();
+            } else if (mode == RouteMode.TABLE && initialized){
+                getRouteTable();
+            }
+        }
+    }
+    
+    @Override
+    public RouteMode getRouteMode(){
+        return routeMode;
+    }
+    
+    @Override
+    public synchronized void setRerouteBudget(int budget){
+        rerouteBudget = Math.max(0, budget);
+        if (rerouteBudget == 0){
+            replanner = null;
+        }
+    }
+    
+    @Override
+    public synchronized void setRouteCacheSize(int size){
+        routeCacheSize = Math.max(0, size);
+        routeCache.setCapacity(routeCacheSize);
+    }
+    
+    /**
+     * Routes over the nodes of the map with the router, which is made
+     * again whenever the nodes have changed. Nodes outside the map are
+     * routed with the old search that keeps its state on the nodes,
+     * which is always Dijkstra. Routes from nodes that are not ends are
+     * not in the route table and are searched with Dijkstra.
+     */
+    private Route route(INode from, INode to, RouteMode mode){
+        Router r = getRouter();
+        if (r.indexOf(from) < 0 || r.indexOf(to) < 0){
+            synchronized (this){
+                computePaths(from);
+                return getShortestPathTo(to);
+            }
+        }
+        if (mode == RouteMode.HIERARCHY){
+            return getHierarchy().findRoute(from, to);
+        }
+        if (mode == RouteMode.TABLE){
+            RouteTable t = getRouteTable();
+            if (t.covers(from, to)){
+                return t.findRoute(from, to);
+            }
+            return r.findRoute(from, to, RouteMode.DIJKSTRA);
+        }
+        return r.findRoute(from, to, mode);
+    }
+    
+    /**
+     * Gets the contraction hierarchy over the current nodes of the map,
+     * building it if the nodes have changed and customizing it if a new
+     * congestion epoch has started.
+     */
+    synchronized ContractionHierarchy getHierarchy(){
+        Router r = getRouter();
+        ContractionHierarchy h = hierarchy;
+        if (h == null || !h.isFor(r)){
+            h = new ContractionHierarchy(r);
+            hierarchy = h;
+        }
+        updateCongestionEpoch();
+        if (h.getEpoch() != routeCache.getEpoch()){
+            h.customize(routeCache.getEpoch());
+        }
+        return h;
+    }
+    
+    /**
+     * Gets the routes from every end of the map, searching them again if
+     * the nodes have changed or a new congestion epoch has started.
+     */
+    synchronized RouteTable getRouteTable(){
+        Router r = getRouter();
+        updateCongestionEpoch();
+        RouteTable t = routeTable;
+        if (t == null || !t.isFor(r) || t.getEpoch() != routeCache.getEpoch()){
+            t = new RouteTable(r, ends, routeCache.getEpoch());
+            routeTable = t;
+        }
+        return t;
+    }
+    
+    /**
+     * @return the replanner repairing the routes over the current nodes
+     *                  of the map, made again if they have changed.
+     */
+    synchronized Replanner getReplanner(){
+        Router r = getRouter();
+        if (replanner == null || !replanner.isFor(r)){
+            replanner = new Replanner(r);
+        }
+        return replanner;
+    }
+    
+    /**
+     * @return the router over the current nodes of the map.
+     */
+    Router getRouter(){
+        List<INode> current = nodes;
+        Router r = router;
+        if (r == null || !r.isFor(current)){
+            r = new Router(current);
+            router = r;
+        }
+        return r;
+    }
+    
+    /**
+     * Starts a new congestion epoch, which makes every cached route
+     * stale, once the weights of the lanes differ enough from those at
+     * the start of the current one. Checked at most once per tick.
+     */
+    private void updateCongestionEpoch(){
+        if (driftCheckedTick == tick && epochWeights != null){
+            return;
+        }
+        driftCheckedTick = tick;
+        List<Lane> current = lanes;
+        if (epochWeights == null || epochWeights.length != current.size()){
+            epochWeights = new int[current.size()];
+            startCongestionEpoch(current);
+            return;
+        }
+        int changed = 0;
+        for (int i = 0; i < epochWeights.length; i++){
+            int before = epochWeights[i];
+            if (Math.abs(current.get(i).getWeight() - before) > Math.max(MIN_LANE_DRIFT, before / 2)){
+                changed++;
+            }
+        }
+        if (changed > ROUTE_DRIFT * epochWeights.length){
+            startCongestionEpoch(current);
+        }
+    }
+    
+    private void startCongestionEpoch(List<Lane> current){
+        for (int i = 0; i < epochWeights.length; i++){
+            epochWeights[i] = current.get(i).getWeight();
+        }
+        routeCache.advanceEpoch();
     }
     
     /*
@@ -417,21 +1068,22 @@ public class WorldMap implements IWorldMap {
      * of weights.
      *
      * @param target node to reach.
-     * @return a Path to the taget node.
+     * @return a Route to the taget node.
      */
-    private Path<INode> getShortestPathTo(INode target) {
-        Path<INode> path = new Path<>();
+    private Route getShortestPathTo(INode target) {
+        List<INode> path = new ArrayList<>();
         for (INode node = target; node != null; node = node.getPrevious()){
-            path.append(node, 1);
-        }
-        Path<INode> reverse = new Path<>();
-        for (int i = path.getLength(); i > 0; i--){
-            reverse.append(path.get(i), 1);
+            path.add(node);
         }
-        if (reverse.getLength() <= 1){
+        if (path.size() <= 1){
             return null;
         }
-        return reverse;
+        Collections.reverse(path);
+        int[] order = new int[path.size()];
+        for (int i = 0; i < order.length; i++){
+            order[i] = i;
+        }
+        return new Route(path.toArray(new INode[order.length]), order);
     }
     
     
@@ -481,15 +1133,16 @@ public class WorldMap implements IWorldMap {
      */
     private static class RandomEnum<E extends Enum> {
         
-        private static final Random RND = new Random();
+        private final Random rnd;
         private final E[] values;
         
-        public RandomEnum(Class<E> token) {
+        public RandomEnum(Class<E> token, Random rnd) {
             values = token.getEnumConstants();
+            this.rnd = rnd;
         }
         
         public E random() {
-            return values[RND.nextInt(values.length)];
+            return values[rnd.nextInt(values.length)];
         }
     }
     
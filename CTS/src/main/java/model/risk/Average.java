@@ -22,6 +22,8 @@
 
 package model.risk;
 
+import java.util.Random;
+import util.SimRandom;
 import util.Weather;
 
 /**
@@ -31,6 +33,19 @@ public class Average implements Risk{
     
     private final static int MAX_STRESS = 2000;
     private final static int RISK_VALUE = 1100;
+    
+    private final Random random;
+    
+    public Average(){
+        this(new SimRandom());
+    }
+    
+    /**
+     * @param random the generator that the risk taking varies by.
+     */
+    public Average(Random random){
+        this.random = random;
+    }
 
     @Override
     public boolean willTakeRisk(int stress, int yearModel, Weather weather, int timeOfDay) {
@@ -76,7 +91,7 @@ public class Average implements Risk{
             risk += 50;
         } else {
             risk += stress / 2;
-            risk += (int) ((Math.random()*stress)/2);
+            risk += (int) ((random.nextDouble()*stress)/2);
         }
         return risk > RISK_VALUE;
     }
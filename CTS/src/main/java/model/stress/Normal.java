@@ -22,12 +22,28 @@
 
 package model.stress;
 
+import java.util.Random;
+import util.SimRandom;
+
 /**
  * @invariant 0 <= stress <= 2000
  *
  * @author Gustaf Ringius <Gustaf@linux.com>
  */
 public class Normal implements Stress{
+    
+    private final Random random;
+    
+    public Normal(){
+        this(new SimRandom());
+    }
+    
+    /**
+     * @param random the generator that the stress varies by.
+     */
+    public Normal(Random random){
+        this.random = random;
+    }
 
     @Override
     public int calculateStress(int bathroom, int hunger, int timeOfDay) {
@@ -36,13 +52,13 @@ public class Normal implements Stress{
             stress += bathroom;
         } else {
             stress += bathroom / 2;
-            stress += (int) ((Math.random() * bathroom)/2);
+            stress += (int) ((random.nextDouble() * bathroom)/2);
         }
         if (hunger <= 500){
             stress += hunger;
         } else {
             stress += hunger / 2;
-            stress += (int) ((Math.random() * hunger)/2);
+            stress += (int) ((random.nextDouble() * hunger)/2);
         }
         if (timeOfDay < 16 && 9 < timeOfDay){
             stress *= 0.75;
@@ -0,0 +1,195 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package util;
+
+import java.util.Arrays;
+
+/**
+ * A uniform grid over boxes, used to find the items that may be
+ * inside a part of the map without looking at all of them.
+ *
+ * Items are added with their bounding box and the grid is built the
+ * first time it is queried. Each cell lists the items whose box
+ * overlaps it, so a query only looks at the cells it overlaps.
+ *
+ * The index is not thread safe, not even for queries.
+ */
+public final class GridIndex {
+    
+    private static final int MAX_CELLS_PER_SIDE = 1024;
+    
+    private final double cellSize;
+    private int size;
+    private int[] ids = new int[16];
+    private double[] boxes = new double[16 * 4];
+    
+    private boolean built;
+    private double minX, minY, maxX, maxY;
+    private int columns, rows;
+    private int[] cellStart;
+    private int[] cellItems;
+    
+    private int[] stamps;
+    private int stamp;
+    private int[] result = new int[16];
+    private int resultSize;
+    
+    /**
+     * @param cellSize the width and height of a cell, in map units.
+     */
+    public GridIndex(double cellSize){
+        if (cellSize <= 0){
+            throw new IllegalArgumentException("The cell size must be positive");
+        }
+        this.cellSize = cellSize;
+    }
+    
+    /**
+     * Adds an item. The corners may be given in any order.
+     *
+     * @param id what a query returns for the item.
+     */
+    public void add(int id, double x0, double y0, double x1, double y1){
+        if (size == ids.length){
+            ids = Arrays.copyOf(ids, size * 2);
+            boxes = Arrays.copyOf(boxes, size * 2 * 4);
+        }
+        ids[size] = id;
+        boxes[size * 4] = Math.min(x0, x1);
+        boxes[size * 4 + 1] = Math.min(y0, y1);
+        boxes[size * 4 + 2] = Math.max(x0, x1);
+        boxes[size * 4 + 3] = Math.max(y0, y1);
+        size++;
+        built = false;
+    }
+    
+    /**
+     * @return the number of items.
+     */
+    public int size(){
+        return size;
+    }
+    
+    /**
+     * Finds the items whose box overlaps a rectangle. Each item is
+     * found once, read them with getResult() until the next query.
+     *
+     * @return the number of items found.
+     */
+    public int query(double x0, double y0, double x1, double y1){
+        build();
+        resultSize = 0;
+        if (size == 0 || x1 < minX || y1 < minY || x0 > maxX || y0 > maxY){
+            return 0;
+        }
+        stamp++;
+        int c0 = column(x0), c1 = column(x1);
+        int r0 = row(y0), r1 = row(y1);
+        for (int r = r0; r <= r1; r++){
+            for (int c = c0; c <= c1; c++){
+                int cell = r * columns + c;
+                for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++){
+                    int item = cellItems[k];
+                    if (stamps[item] != stamp){
+                        stamps[item] = stamp;
+                        int b = item * 4;
+                        if (boxes[b] <= x1 && boxes[b + 1] <= y1 && boxes[b + 2] >= x0 && boxes[b + 3] >= y0){
+                            if (resultSize == result.length){
+                                result = Arrays.copyOf(result, resultSize * 2);
+                            }
+                            result[resultSize++] = ids[item];
+                        }
+                    }
+                }
+            }
+        }
+        return resultSize;
+    }
+    
+    /**
+     * @param index a number below what the last query returned.
+     * @return the id of a found item.
+     */
+    public int getResult(int index){
+        return result[index];
+    }
+    
+    /**
+     * @return true if the rectangle holds every item.
+     */
+    public boolean covers(double x0, double y0, double x1, double y1){
+        build();
+        return size == 0 || (x0 <= minX && y0 <= minY && x1 >= maxX && y1 >= maxY);
+    }
+    
+    private void build(){
+        if (built){
+            return;
+        }
+        built = true;
+        minX = Double.MAX_VALUE;
+        minY = Double.MAX_VALUE;
+        maxX = -Double.MAX_VALUE;
+        maxY = -Double.MAX_VALUE;
+        for (int i = 0; i < size; i++){
+            minX = Math.min(minX, boxes[i * 4]);
+            minY = Math.min(minY, boxes[i * 4 + 1]);
+            maxX = Math.max(maxX, boxes[i * 4 + 2]);
+            maxY = Math.max(maxY, boxes[i * 4 + 3]);
+        }
+        columns = size == 0 ? 1 : (int) Math.min(MAX_CELLS_PER_SIDE, (maxX - minX) / cellSize + 1);
+        rows = size == 0 ? 1 : (int) Math.min(MAX_CELLS_PER_SIDE, (maxY - minY) / cellSize + 1);
+        
+        //Count the items of each cell, then place them.
+        cellStart = new int[columns * rows + 1];
+        for (int i = 0; i < size; i++){
+            for (int r = row(boxes[i * 4 + 1]); r <= row(boxes[i * 4 + 3]); r++){
+                for (int c = column(boxes[i * 4]); c <= column(boxes[i * 4 + 2]); c++){
+                    cellStart[r * columns + c + 1]++;
+                }
+            }
+        }
+        for (int cell = 0; cell < columns * rows; cell++){
+            cellStart[cell + 1] += cellStart[cell];
+        }
+        cellItems = new int[cellStart[columns * rows]];
+        int[] fill = Arrays.copyOf(cellStart, columns * rows);
+        for (int i = 0; i < size; i++){
+            for (int r = row(boxes[i * 4 + 1]); r <= row(boxes[i * 4 + 3]); r++){
+                for (int c = column(boxes[i * 4]); c <= column(boxes[i * 4 + 2]); c++){
+                    cellItems[fill[r * columns + c]++] = i;
+                }
+            }
+        }
+        stamps = new int[size];
+        stamp = 0;
+    }
+    
+    private int column(double x){
+        return Math.max(0, Math.min(columns - 1, (int) ((x - minX) / cellSize)));
+    }
+    
+    private int row(double y){
+        return Math.max(0, Math.min(rows - 1, (int) ((y - minY) / cellSize)));
+    }
+}
@@ -52,6 +52,18 @@ public final class RandomColor{
      * @return a Color object representing a random color.
      */
     public static Color generateColor(List<Color> ignoredColors){
+        return generateColor(ignoredColors, random);
+    }
+    
+    /**
+     * Generate Colors except for those in the specified list,
+     * drawing from the given generator.
+     *
+     * @param ignoredColors is a list of colors to ignore.
+     * @param random the generator to draw the color components from.
+     * @return a Color object representing a random color.
+     */
+    public static Color generateColor(List<Color> ignoredColors, Random random){
         int red, green, blue;
         do{
             red = random.nextInt(256);
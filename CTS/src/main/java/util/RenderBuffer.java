@@ -0,0 +1,264 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package util;
+
+import java.awt.Color;
+import java.util.Arrays;
+
+/**
+ * A reusable list of draw commands that the model writes and the view
+ * reads every frame, without creating an object per command.
+ *
+ * Each command is a record of a key, a type, an RGB color and five
+ * numbers: x, y, yaw, width and height. Lines keep their end point in
+ * width and height, circles keep their radius in width. The records
+ * live in two packed arrays that only grow, so filling the buffer
+ * again after {@link #clear()} does not allocate once it has reached
+ * its size.
+ *
+ * The key names the object a command was drawn for. For a vehicle it
+ * is its slot in the store of the map, for the roads it is the index
+ * of the lane or node, and it is -1 for a command without one. Slots
+ * are handed to new vehicles when old ones die, so a vehicle's command
+ * also carries the generation of its slot, which changes every time
+ * the slot is handed out. Two commands with the same key and
+ * generation draw the same vehicle. Everything else has generation 0.
+ *
+ * The buffer is not thread safe. It is handed between threads through
+ * a volatile field by the one that fills it.
+ */
+public final class RenderBuffer {
+    
+    private static final int INTS = 4;
+    private static final int FLOATS = 5;
+    private static final int INITIAL_CAPACITY = 256;
+    private static final IDrawable.Type[] TYPES = IDrawable.Type.values();
+    
+    private int[] ints = new int[INITIAL_CAPACITY * INTS];
+    private float[] floats = new float[INITIAL_CAPACITY * FLOATS];
+    private int size;
+    private long frame;
+    private long tick;
+    private long time;
+    
+    /**
+     * Removes every command and moves the buffer on to a new frame.
+     */
+    public void clear(){
+        size = 0;
+        frame++;
+    }
+    
+    /**
+     * Appends a command without a key.
+     *
+     * @param type the kind of shape to draw.
+     * @param rgb the color as returned by {@link Color#getRGB()}.
+     * @param x the center, or the start of a line.
+     * @param y the center, or the start of a line.
+     * @param yaw the direction in degrees.
+     * @param width the width, the radius of a circle or the end x of a line.
+     * @param height the height or the end y of a line.
+     */
+    public void add(IDrawable.Type type, int rgb, double x, double y, double yaw, double width, double height){
+        add(-1, type, rgb, x, y, yaw, width, height);
+    }
+    
+    /**
+     * Appends a command.
+     *
+     * @param key what the command draws, -1 if nothing in particular.
+     * @param type the kind of shape to draw.
+     * @param rgb the color as returned by {@link Color#getRGB()}.
+     * @param x the center, or the start of a line.
+     * @param y the center, or the start of a line.
+     * @param yaw the direction in degrees.
+     * @param width the width, the radius of a circle or the end x of a line.
+     * @param height the height or the end y of a line.
+     */
+    public void add(int key, IDrawable.Type type, int rgb, double x, double y, double yaw, double width, double height){
+        if (size * INTS == ints.length){
+            ints = Arrays.copyOf(ints, ints.length * 2);
+            floats = Arrays.copyOf(floats, floats.length * 2);
+        }
+        int i = size * INTS;
+        ints[i] = key;
+        ints[i + 1] = type.ordinal();
+        ints[i + 2] = rgb;
+        ints[i + 3] = 0;
+        int f = size * FLOATS;
+        floats[f] = (float) x;
+        floats[f + 1] = (float) y;
+        floats[f + 2] = (float) yaw;
+        floats[f + 3] = (float) width;
+        floats[f + 4] = (float) height;
+        size++;
+    }
+    
+    /**
+     * Appends the command that draws a drawable object. Circles are
+     * read the way DrawableObject stores them, with the radius as width.
+     * Images and texts are not supported and are skipped.
+     *
+     * @param drawable the object to draw.
+     */
+    public void add(IDrawable drawable){
+        int rgb = drawable.getColor().getRGB();
+        switch (drawable.getType()){
+        case RECTANGLE:
+        case CIRCLE:
+            add(drawable.getType(), rgb, drawable.getXPos(), drawable.getYPos(), drawable.getYaw(), drawable.getWidth(), drawable.getHeight());
+            break;
+        case DOT:
+            add(drawable.getType(), rgb, drawable.getXPos(), drawable.getYPos(), 0, 0, 0);
+            break;
+        case LINE:
+            add(drawable.getType(), rgb, drawable.getXPos(), drawable.getYPos(), 0, drawable.getEndX(), drawable.getEndY());
+            break;
+        default:
+            break;
+        }
+    }
+    
+    /**
+     * @return the number of commands in the buffer.
+     */
+    public int size(){
+        return size;
+    }
+    
+    /**
+     * @return a number that changes each time the buffer is cleared.
+     */
+    public long getFrame(){
+        return frame;
+    }
+    
+    /**
+     * Tells when the commands were written.
+     *
+     * @param tick the simulation tick the commands show.
+     * @param time the System.nanoTime() at which the tick ended.
+     */
+    public void setTime(long tick, long time){
+        this.tick = tick;
+        this.time = time;
+    }
+    
+    /**
+     * @return the simulation tick the commands show.
+     */
+    public long getTick(){
+        return tick;
+    }
+    
+    /**
+     * @return the System.nanoTime() at which the tick ended.
+     */
+    public long getTime(){
+        return time;
+    }
+    
+    public int getKey(int index){
+        return ints[index * INTS];
+    }
+    
+    /**
+     * Sets the key of the commands that were added without one,
+     * from an index up to the last command.
+     *
+     * @param from the first command to set.
+     * @param key the new key.
+     */
+    public void setKeys(int from, int key){
+        setKeys(from, key, 0);
+    }
+    
+    /**
+     * Sets the key and its generation of the commands that were added
+     * without one, from an index up to the last command.
+     *
+     * @param from the first command to set.
+     * @param key the new key.
+     * @param generation the generation of the key.
+     */
+    public void setKeys(int from, int key, int generation){
+        for (int i = from; i < size; i++){
+            ints[i * INTS] = key;
+            ints[i * INTS + 3] = generation;
+        }
+    }
+    
+    public int getGeneration(int index){
+        return ints[index * INTS + 3];
+    }
+    
+    public IDrawable.Type getType(int index){
+        return TYPES[ints[index * INTS + 1]];
+    }
+    
+    public int getColor(int index){
+        return ints[index * INTS + 2];
+    }
+    
+    public float getX(int index){
+        return floats[index * FLOATS];
+    }
+    
+    public float getY(int index){
+        return floats[index * FLOATS + 1];
+    }
+    
+    public float getYaw(int index){
+        return floats[index * FLOATS + 2];
+    }
+    
+    public float getWidth(int index){
+        return floats[index * FLOATS + 3];
+    }
+    
+    public float getHeight(int index){
+        return floats[index * FLOATS + 4];
+    }
+    
+    /**
+     * Creates a drawable object from a command, for code that still
+     * works with {@link IDrawable}.
+     *
+     * @param index the command to convert.
+     * @return a new drawable object.
+     */
+    public IDrawable toDrawable(int index){
+        Color color = new Color(getColor(index));
+        switch (getType(index)){
+        case CIRCLE:
+            return DrawableObject.getCircleGraphics(getX(index), getY(index), getYaw(index), color, getWidth(index));
+        case DOT:
+            return DrawableObject.getDotGraphics(getX(index), getY(index), color);
+        case LINE:
+            return DrawableObject.getLineGraphics(color, getX(index), getY(index), getWidth(index), getHeight(index));
+        default:
+            return DrawableObject.getRectGraphics(getX(index), getY(index), getYaw(index), color, getWidth(index), getHeight(index));
+        }
+    }
+}
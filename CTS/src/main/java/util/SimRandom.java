@@ -0,0 +1,105 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package util;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A seeded, splittable random generator based on SplitMix64.
+ *
+ * One generator is seeded per simulation, and every part that needs
+ * randomness of its own (a node, a vehicle, a worker thread) gets a
+ * stream split off from it. The same seed therefore gives the same run,
+ * no matter how the work is spread over threads, and threads never
+ * contend on a shared generator.
+ *
+ * Unlike java.util.Random an instance is not safe for use by several
+ * threads at once, split off a stream per thread instead.
+ */
+public final class SimRandom extends Random {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final AtomicLong SEED_UNIQUIFIER = new AtomicLong(System.nanoTime());
+    
+    private long state;
+    
+    /**
+     * Creates a generator with a seed that differs between calls.
+     */
+    public SimRandom(){
+        this(mix64(SEED_UNIQUIFIER.addAndGet(GOLDEN_GAMMA) ^ System.nanoTime()));
+    }
+    
+    /**
+     * @param seed the seed, generators with the same seed give the
+     *                  same sequence.
+     */
+    public SimRandom(long seed){
+        super(seed);
+        state = seed;
+    }
+    
+    /**
+     * Creates a new generator whose stream is independent of this one.
+     * Also advances this generator.
+     *
+     * @return the new generator.
+     */
+    public SimRandom split(){
+        return new SimRandom(mix64(nextSeed()) ^ GOLDEN_GAMMA);
+    }
+    
+    @Override
+    public void setSeed(long seed){
+        state = seed;
+    }
+    
+    @Override
+    protected int next(int bits){
+        return (int) (mix64(nextSeed()) >>> (64 - bits));
+    }
+    
+    @Override
+    public long nextLong(){
+        return mix64(nextSeed());
+    }
+    
+    @Override
+    public double nextDouble(){
+        return (mix64(nextSeed()) >>> 11) * 0x1.0p-53;
+    }
+    
+    private long nextSeed(){
+        state += GOLDEN_GAMMA;
+        return state;
+    }
+    
+    private static long mix64(long z){
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,135 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Counts how long something takes, in a fixed number of buckets.
+ *
+ * Durations are kept in nanoseconds. Below 16 ns every value has a
+ * bucket of its own, above that every power of two is split into 16
+ * buckets, so a percentile is never off by more than about 6% whatever
+ * the duration, and recording never allocates.
+ *
+ * All methods are synchronized, the simulation records while the view
+ * reads.
+ */
+public final class TimingHistogram {
+    
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+    
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long total;
+    private long max;
+    
+    /**
+     * Adds a duration, negative ones are counted as zero.
+     *
+     * @param nanos the duration in nanoseconds.
+     */
+    public synchronized void record(long nanos){
+        if (nanos < 0){
+            nanos = 0;
+        }
+        counts[bucketOf(nanos)]++;
+        count++;
+        total += nanos;
+        if (nanos > max){
+            max = nanos;
+        }
+    }
+    
+    public synchronized long getCount(){
+        return count;
+    }
+    
+    /**
+     * @return the mean duration in nanoseconds, 0 if nothing is recorded.
+     */
+    public synchronized double getMean(){
+        return count == 0 ? 0 : (double) total / count;
+    }
+    
+    /**
+     * @return the longest duration in nanoseconds.
+     */
+    public synchronized long getMax(){
+        return max;
+    }
+    
+    /**
+     * Gives the duration that the given part of all recorded ones are
+     * shorter than or equal to, rounded up to the end of its bucket but
+     * never past the longest one.
+     *
+     * @param percent between 0 and 100.
+     * @return the duration in nanoseconds, 0 if nothing is recorded.
+     */
+    public synchronized long getPercentile(double percent){
+        if (percent < 0 || percent > 100){
+            throw new IllegalArgumentException("Not a percentage: " + percent);
+        }
+        if (count == 0){
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * percent / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++){
+            seen += counts[i];
+            if (seen >= rank){
+                return Math.min(upperBound(i), max);
+            }
+        }
+        return max;
+    }
+    
+    public synchronized void reset(){
+        Arrays.fill(counts, 0);
+        count = 0;
+        total = 0;
+        max = 0;
+    }
+    
+    static int bucketOf(long nanos){
+        if (nanos < SUB_BUCKETS){
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+    
+    static long upperBound(int bucket){
+        if (bucket < SUB_BUCKETS){
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BITS);
+        return (1L << exponent) + sub * width + width - 1;
+    }
+}
@@ -0,0 +1,188 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A hierarchical timing wheel that hands out scheduled elements
+ * when the tick they were scheduled for is reached.
+ *
+ * The lowest wheel has one slot per tick for the next 64 ticks, every
+ * wheel above it has slots that are 64 times as wide. An element is put
+ * in the lowest wheel that reaches its tick, and moved down a wheel each
+ * time the clock enters its slot. Scheduling and expiring are constant
+ * time no matter how many elements are waiting or how far ahead they are.
+ *
+ * The wheel is not thread safe.
+ *
+ * @param <E> the type of the scheduled elements.
+ */
+public final class TimingWheel<E> {
+    
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    
+    private final List<List<Entry<E>>> wheels;
+    private final List<Entry<E>> overflow = new ArrayList<>();
+    private long now;
+    private int size;
+    
+    /**
+     * Creates a wheel whose clock starts at tick 0.
+     */
+    public TimingWheel(){
+        this(0);
+    }
+    
+    /**
+     * @param start the tick the clock starts at.
+     */
+    public TimingWheel(long start){
+        now = start;
+        wheels = new ArrayList<>(LEVELS * SLOTS);
+        for (int i = 0; i < LEVELS * SLOTS; i++){
+            wheels.add(null);
+        }
+    }
+    
+    /**
+     * @return the current tick of the clock.
+     */
+    public long getNow(){
+        return now;
+    }
+    
+    /**
+     * @return the number of scheduled elements.
+     */
+    public int size(){
+        return size;
+    }
+    
+    /**
+     * Schedules an element.
+     *
+     * @param tick the tick to hand out the element at, after the current tick.
+     * @param element to hand out.
+     * @throws IllegalArgumentException if the tick is not in the future.
+     */
+    public void schedule(long tick, E element){
+        if (tick <= now){
+            throw new IllegalArgumentException("Tick " + tick + " is not after " + now);
+        }
+        place(new Entry<>(tick, element));
+        size++;
+    }
+    
+    /**
+     * Moves the clock one tick ahead and hands out every element
+     * scheduled for the new tick.
+     *
+     * @param expired collects the elements, in no particular order.
+     * @return the new tick of the clock.
+     */
+    public long advance(Collection<? super E> expired){
+        now++;
+        for (int level = LEVELS; level > 0; level--){
+            if ((now & ((1L << (SLOT_BITS * level)) - 1)) == 0){
+                cascade(level);
+            }
+        }
+        List<Entry<E>> due = wheels.get((int) (now & SLOT_MASK));
+        if (due != null && !due.isEmpty()){
+            for (Entry<E> e : due){
+                expired.add(e.element);
+            }
+            size -= due.size();
+            due.clear();
+        }
+        return now;
+    }
+    
+    /**
+     * Drops every scheduled element.
+     */
+    public void clear(){
+        for (List<Entry<E>> slot : wheels){
+            if (slot != null){
+                slot.clear();
+            }
+        }
+        overflow.clear();
+        size = 0;
+    }
+    
+    /**
+     * Moves the elements of the slot the clock just entered on a
+     * wheel down to the wheels below it.
+     */
+    private void cascade(int level){
+        List<Entry<E>> slot;
+        if (level == LEVELS){
+            slot = overflow;
+        } else {
+            slot = wheels.get(level * SLOTS + (int) ((now >>> (SLOT_BITS * level)) & SLOT_MASK));
+        }
+        if (slot == null || slot.isEmpty()){
+            return;
+        }
+        List<Entry<E>> moving = new ArrayList<>(slot);
+        slot.clear();
+        for (Entry<E> e : moving){
+            place(e);
+        }
+    }
+    
+    private void place(Entry<E> e){
+        long delta = e.tick - now;
+        for (int level = 0; level < LEVELS; level++){
+            if (delta < (1L << (SLOT_BITS * (level + 1)))){
+                int index = level * SLOTS + (int) ((e.tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+                List<Entry<E>> slot = wheels.get(index);
+                if (slot == null){
+                    slot = new ArrayList<>();
+                    wheels.set(index, slot);
+                }
+                slot.add(e);
+                return;
+            }
+        }
+        overflow.add(e);
+    }
+    
+    private static final class Entry<E> {
+        
+        private final long tick;
+        private final E element;
+        
+        Entry(long tick, E element){
+            this.tick = tick;
+            this.element = element;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Where the time of a simulation goes, one histogram per phase of a
+ * tick or of a frame.
+ *
+ * The histograms have a fixed size, so timings can be recorded for
+ * as long as a simulation runs.
+ */
+public final class Timings {
+    
+    /**
+     * The phases that are timed.
+     */
+    public enum Phase {
+        /** A whole tick of the map. */
+        THINK,
+        /** Trying to spawn a vehicle. */
+        SPAWN,
+        /** Moving the vehicles, and the nodes too for engines that run them together. */
+        MOVE,
+        /** Letting the nodes think. */
+        NODES,
+        /** Repairing the routes of the vehicles as the lanes fill up. */
+        REROUTE,
+        /** Building the frame and the changes sent to the frame listener. */
+        FRAME,
+        /** Time left of a tick when the simulation thread goes to sleep. */
+        SLACK,
+        /** Fetching the latest frame for the view. */
+        GRAPHICS,
+        /** Drawing a frame in the view. */
+        DRAW
+    }
+    
+    private static final double NANOS_PER_MILLI = 1e6;
+    
+    private final Map<Phase, TimingHistogram> histograms = new EnumMap<>(Phase.class);
+    
+    public Timings(){
+        for (Phase p : Phase.values()){
+            histograms.put(p, new TimingHistogram());
+        }
+    }
+    
+    /**
+     * @param phase that took the time.
+     * @param nanos the duration in nanoseconds.
+     */
+    public void record(Phase phase, long nanos){
+        histograms.get(phase).record(nanos);
+    }
+    
+    public TimingHistogram get(Phase phase){
+        return histograms.get(phase);
+    }
+    
+    /**
+     * Forgets everything recorded so far.
+     */
+    public void reset(){
+        for (TimingHistogram h : histograms.values()){
+            h.reset();
+        }
+    }
+    
+    /**
+     * Writes one line per phase, with the durations in milliseconds,
+     * after a header line. Phases that never happened are written too.
+     *
+     * @param out where to write, it is not closed.
+     * @throws IOException if writing fails.
+     */
+    public void writeCsv(Writer out) throws IOException{
+        out.write("phase,count,mean_ms,p50_ms,p90_ms,p99_ms,max_ms\n");
+        for (Phase p : Phase.values()){
+            TimingHistogram h = histograms.get(p);
+            out.write(String.format(Locale.ROOT, "%s,%d,%.4f,%.4f,%.4f,%.4f,%.4f\n",
+                    p.name().toLowerCase(Locale.ROOT), h.getCount(),
+                    h.getMean() / NANOS_PER_MILLI,
+                    h.getPercentile(50) / NANOS_PER_MILLI,
+                    h.getPercentile(90) / NANOS_PER_MILLI,
+                    h.getPercentile(99) / NANOS_PER_MILLI,
+                    h.getMax() / NANOS_PER_MILLI));
+        }
+        out.flush();
+    }
+    
+    /**
+     * Writes the timings as CSV to a file, replacing what it held.
+     *
+     * @param file to write to.
+     * @throws IOException if the file can not be written.
+     * @see #writeCsv(Writer)
+     */
+    public void writeCsv(File file) throws IOException{
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)){
+            writeCsv(out);
+        }
+    }
+}
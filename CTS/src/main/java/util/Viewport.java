@@ -0,0 +1,143 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package util;
+
+/**
+ * The part of the map that is shown on the screen: the map point at the
+ * top left corner, the zoom and the size of the screen in pixels.
+ * A map point (x, y) is drawn at ((x - left) * zoom, (y - top) * zoom).
+ *
+ * Viewports are immutable, moving or zooming returns a new one.
+ */
+public final class Viewport {
+    
+    /**
+     * Below this zoom vehicles are too small to tell apart, and the
+     * lanes are drawn by how full they are instead.
+     */
+    public static final double DETAIL_ZOOM = 1.0;
+    
+    public static final double MIN_ZOOM = 0.125;
+    public static final double MAX_ZOOM = 16;
+    
+    private final double left;
+    private final double top;
+    private final double zoom;
+    private final int width;
+    private final int height;
+    
+    /**
+     * @param left the map x at the left edge of the screen.
+     * @param top the map y at the top edge of the screen.
+     * @param zoom screen pixels per map unit, kept within MIN_ZOOM and MAX_ZOOM.
+     * @param width the width of the screen in pixels.
+     * @param height the height of the screen in pixels.
+     */
+    public Viewport(double left, double top, double zoom, int width, int height){
+        this.left = left;
+        this.top = top;
+        this.zoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom));
+        this.width = width;
+        this.height = height;
+    }
+    
+    public double getLeft(){
+        return left;
+    }
+    
+    public double getTop(){
+        return top;
+    }
+    
+    public double getRight(){
+        return left + width / zoom;
+    }
+    
+    public double getBottom(){
+        return top + height / zoom;
+    }
+    
+    public double getZoom(){
+        return zoom;
+    }
+    
+    public int getWidth(){
+        return width;
+    }
+    
+    public int getHeight(){
+        return height;
+    }
+    
+    /**
+     * @return true if single vehicles should be drawn.
+     */
+    public boolean isDetailed(){
+        return zoom >= DETAIL_ZOOM;
+    }
+    
+    public double toScreenX(double x){
+        return (x - left) * zoom;
+    }
+    
+    public double toScreenY(double y){
+        return (y - top) * zoom;
+    }
+    
+    public double toMapX(double screenX){
+        return left + screenX / zoom;
+    }
+    
+    public double toMapY(double screenY){
+        return top + screenY / zoom;
+    }
+    
+    /**
+     * Zooms while keeping the map point under a screen point in place.
+     *
+     * @param factor how much to zoom in, below 1 to zoom out.
+     * @param screenX the screen point to zoom around.
+     * @param screenY the screen point to zoom around.
+     * @return the zoomed viewport.
+     */
+    public Viewport zoom(double factor, double screenX, double screenY){
+        double z = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom * factor));
+        return new Viewport(toMapX(screenX) - screenX / z, toMapY(screenY) - screenY / z, z, width, height);
+    }
+    
+    /**
+     * @param dx pixels to move the map to the left.
+     * @param dy pixels to move the map up.
+     * @return the moved viewport.
+     */
+    public Viewport pan(double dx, double dy){
+        return new Viewport(left + dx / zoom, top + dy / zoom, zoom, width, height);
+    }
+    
+    /**
+     * @return the same view on a screen of another size.
+     */
+    public Viewport resize(int w, int h){
+        return new Viewport(left, top, zoom, w, h);
+    }
+}
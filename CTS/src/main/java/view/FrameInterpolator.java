@@ -0,0 +1,154 @@
+
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package view;
+
+import java.util.Arrays;
+
+import util.IDrawable;
+import util.RenderBuffer;
+
+/**
+ * Moves the vehicles of the latest frame smoothly from where they were
+ * in the frame before it, so that the screen can be drawn more often
+ * than the simulation ticks without the vehicles jumping.
+ * 
+ * The screen shows the world one tick late: when a frame arrives its
+ * vehicles are drawn where they were in the last one, and they reach
+ * their new positions when the next frame is due. Vehicles are matched
+ * by the key and generation of their rectangle, and drawn where they
+ * are for now if they were not in the last frame. A key with another
+ * generation is a new vehicle in the slot of one that died.
+ */
+final class FrameInterpolator {
+
+	// The longest time a frame is stretched over, in nanoseconds
+	private static final long MAX_TICK_TIME = 200000000L;
+
+	private RenderBuffer frame;
+	private long frameTick = Long.MIN_VALUE;
+	private long previousFrameTick = Long.MIN_VALUE;
+	private long frameTime;
+	private long tickTime;
+
+	// The positions by key in the last frame and the one before it,
+	// with the tick they were seen in plus one, 0 for never, and the
+	// generation of the key
+	private float[] lastX = new float[64];
+	private float[] lastY = new float[64];
+	private long[] lastTick = new long[64];
+	private int[] lastGeneration = new int[64];
+	private float[] previousX = new float[64];
+	private float[] previousY = new float[64];
+	private long[] previousTick = new long[64];
+	private int[] previousGeneration = new int[64];
+
+	private float[] x = new float[64];
+	private float[] y = new float[64];
+
+	/**
+	 * Takes in a frame, and works out where its commands are drawn now.
+	 * 
+	 * @param buffer the latest frame.
+	 * @param now the current System.nanoTime().
+	 */
+	void update(RenderBuffer buffer, long now){
+		if(buffer.getTick() != frameTick || buffer != frame){
+			boolean later = buffer.getTick() > frameTick && frameTick != Long.MIN_VALUE;
+			if(later){
+				long time = (buffer.getTime()-frameTime)/(buffer.getTick()-frameTick);
+				tickTime = Math.max(0, Math.min(MAX_TICK_TIME, time));
+			}
+			// A frame from an earlier tick belongs to a new map
+			previousFrameTick = later ? frameTick : Long.MIN_VALUE;
+			keep(buffer);
+		}
+		float alpha = tickTime == 0 ? 1 : Math.min(1f, (float)(now-frameTime)/tickTime);
+		if(x.length < buffer.size()){
+			x = new float[buffer.size()*2];
+			y = new float[buffer.size()*2];
+		}
+		for(int i = 0; i < buffer.size(); i++){
+			x[i] = buffer.getX(i);
+			y[i] = buffer.getY(i);
+			int key = buffer.getKey(i);
+			IDrawable.Type type = buffer.getType(i);
+			if(key >= 0 && key < previousTick.length && previousTick[key] == previousFrameTick+1 
+					&& previousGeneration[key] == buffer.getGeneration(i)
+					&& (type == IDrawable.Type.RECTANGLE || type == IDrawable.Type.CIRCLE)){
+				x[i] = previousX[key]+(x[i]-previousX[key])*alpha;
+				y[i] = previousY[key]+(y[i]-previousY[key])*alpha;
+			}
+		}
+	}
+
+	/**
+	 * @return where the command of the last updated frame is drawn now.
+	 */
+	float getX(int index){
+		return x[index];
+	}
+
+	float getY(int index){
+		return y[index];
+	}
+
+	/*
+	 * Copies the positions out of the frame, which the model may write
+	 * to again once a newer frame was taken.
+	 */
+	private void keep(RenderBuffer buffer){
+		float[] swapX = previousX;
+		float[] swapY = previousY;
+		long[] swapTick = previousTick;
+		int[] swapGeneration = previousGeneration;
+		previousX = lastX;
+		previousY = lastY;
+		previousTick = lastTick;
+		previousGeneration = lastGeneration;
+		lastX = swapX;
+		lastY = swapY;
+		lastTick = swapTick;
+		lastGeneration = swapGeneration;
+		for(int i = 0; i < buffer.size(); i++){
+			int key = buffer.getKey(i);
+			if(key < 0 || buffer.getType(i) != IDrawable.Type.RECTANGLE){
+				continue;
+			}
+			if(key >= lastTick.length){
+				int capacity = Math.max(key+1, lastTick.length*2);
+				lastX = Arrays.copyOf(lastX, capacity);
+				lastY = Arrays.copyOf(lastY, capacity);
+				lastTick = Arrays.copyOf(lastTick, capacity);
+				lastGeneration = Arrays.copyOf(lastGeneration, capacity);
+			}
+			lastX[key] = buffer.getX(i);
+			lastY[key] = buffer.getY(i);
+			lastTick[key] = buffer.getTick()+1;
+			lastGeneration[key] = buffer.getGeneration(i);
+		}
+		frame = buffer;
+		frameTick = buffer.getTick();
+		frameTime = buffer.getTime();
+	}
+}
@@ -0,0 +1,122 @@
+
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package view;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+import util.IDrawable;
+import util.RenderBuffer;
+import util.Viewport;
+
+/**
+ * The picture of the simulation, kept as an int raster.
+ * The roads are drawn once into a layer of their own with Java2D. Every
+ * frame starts as a copy of that layer and the vehicles are written
+ * straight into the pixels, so drawing a vehicle is a few array stores
+ * instead of a call through Java2D.
+ */
+final class FrameRaster {
+
+	private BufferedImage roadLayer;
+	private BufferedImage frame;
+	private int[] roadPixels;
+	private int[] framePixels;
+	private int width;
+	private int height;
+
+	/**
+	 * Makes the layers the given size. The road layer is empty afterwards
+	 * if the size changed.
+	 * 
+	 * @return true if the layers were made again.
+	 */
+	boolean resize(int w, int h){
+		if(frame != null && w == width && h == height){
+			return false;
+		}
+		width = Math.max(1, w);
+		height = Math.max(1, h);
+		roadLayer = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		roadPixels = ((DataBufferInt)roadLayer.getRaster().getDataBuffer()).getData();
+		framePixels = ((DataBufferInt)frame.getRaster().getDataBuffer()).getData();
+		return true;
+	}
+
+	/**
+	 * @return a new graphics object that draws on the road layer.
+	 */
+	Graphics2D createRoadGraphics(){
+		return roadLayer.createGraphics();
+	}
+
+	/**
+	 * Starts a frame from the road layer and writes every rectangle of
+	 * the buffer into it, as an outline two pixels wide like the one
+	 * Java2D draws with a stroke of 2.
+	 * 
+	 * @param buffer the commands of the frame.
+	 * @param view where the rectangles go on the screen.
+	 * @param positions where the commands of the frame are right now.
+	 * @return the picture of the frame.
+	 */
+	BufferedImage drawFrame(RenderBuffer buffer, Viewport view, FrameInterpolator positions){
+		double zoom = view.getZoom();
+		System.arraycopy(roadPixels, 0, framePixels, 0, framePixels.length);
+		for(int i = 0; i < buffer.size(); i++){
+			if(buffer.getType(i) != IDrawable.Type.RECTANGLE){
+				continue;
+			}
+			int w = (int)(buffer.getWidth(i)*zoom);
+			int h = (int)(buffer.getHeight(i)*zoom);
+			int x = (int)view.toScreenX(positions.getX(i))-w/2;
+			int y = (int)view.toScreenY(positions.getY(i))-h/2;
+			int rgb = buffer.getColor(i);
+			if(w <= 2 || h <= 2){
+				fill(x-1, y-1, x+w+1, y+h+1, rgb);
+			} else {
+				fill(x-1, y-1, x+w+1, y+1, rgb);
+				fill(x-1, y+h-1, x+w+1, y+h+1, rgb);
+				fill(x-1, y+1, x+1, y+h-1, rgb);
+				fill(x+w-1, y+1, x+w+1, y+h-1, rgb);
+			}
+		}
+		return frame;
+	}
+
+	private void fill(int x0, int y0, int x1, int y1, int rgb){
+		x0 = Math.max(x0, 0);
+		y0 = Math.max(y0, 0);
+		x1 = Math.min(x1, width);
+		y1 = Math.min(y1, height);
+		for(int y = y0; y < y1; y++){
+			int row = y*width;
+			for(int x = x0; x < x1; x++){
+				framePixels[row+x] = rgb;
+			}
+		}
+	}
+}
@@ -36,6 +36,8 @@ import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.MouseWheelListener;
 import java.awt.event.ComponentListener;
 import java.awt.image.BufferStrategy;
 import java.util.concurrent.BlockingQueue;
@@ -52,7 +54,7 @@ import controller.SoundController;
  */
 
 @ThreadSafe
-final class GuiDisplay implements MouseListener, MouseMotionListener, KeyListener, ComponentListener{
+final class GuiDisplay implements MouseListener, MouseMotionListener, MouseWheelListener, KeyListener, ComponentListener{
 
 	static {
 		System.setProperty("sun.java2d.transaccel", "True"); 
@@ -64,7 +66,7 @@ final class GuiDisplay implements MouseListener, MouseMotionListener, KeyListene
 
 	enum Mode{ Menu, Sim 	}
 
-	enum EventType{ MousePressed, MouseMoved, KeyPressed, SwicthMode }
+	enum EventType{ MousePressed, MouseMoved, MouseWheel, KeyPressed, SwicthMode }
 
 	@Immutable
 	static final class Event{
@@ -83,12 +85,18 @@ final class GuiDisplay implements MouseListener, MouseMotionListener, KeyListene
 
 	private volatile boolean resized = false;
 
+	private final MainController controller = new MainController();
+
 	public GuiDisplay(){ 	try {
 		mainLoop();
 	} catch (Exception e) {
 		e.printStackTrace();
 	} } 
 
+	MainController getController(){
+		return controller;
+	}
+
 	public static void main(String args[]){
 		SoundController.getInstance().startMenuMusic();
 		new GuiDisplay();
@@ -171,6 +179,7 @@ final class GuiDisplay implements MouseListener, MouseMotionListener, KeyListene
 		canvas.setFocusable(true);
 		canvas.addMouseListener(this);
 		canvas.addMouseMotionListener(this);
+		canvas.addMouseWheelListener(this);
 		canvas.addKeyListener(this);
 
 		frame.addComponentListener(this);
@@ -211,13 +220,13 @@ final class GuiDisplay implements MouseListener, MouseMotionListener, KeyListene
 			while((event = events.poll()) != null){
 				if(event.eventType.equals(EventType.SwicthMode)){
 					if (mode.equals(Mode.Menu)){
-						MainController.generatMap(frameWidth,frameHeight);
+						controller.generatMap(frameWidth,frameHeight);
 						currentMode = simulation;
 						mode = Mode.Sim;
 						SoundController.getInstance().stopMenuMusic();
 						SoundController.getInstance().startSimulationMusic();
 					} else {
-						MainController.endSimulation();
+						controller.endSimulation();
 						currentMode = mainMenu;
 						mode = Mode.Menu;
 						SoundController.getInstance().stopSimulationMusic();
@@ -227,6 +236,9 @@ final class GuiDisplay implements MouseListener, MouseMotionListener, KeyListene
 					currentMode.keyPressed(event.keyEvent.getKeyCode());
 				} else if(event.eventType.equals(EventType.MouseMoved)){
 					currentMode.mouseMoved(event.mouseEvent.getX(), event.mouseEvent.getY());
+				} else if(event.eventType.equals(EventType.MouseWheel)){
+					currentMode.mouseWheelMoved(((MouseWheelEvent)event.mouseEvent).getWheelRotation(),
+							event.mouseEvent.getX(), event.mouseEvent.getY());
 				} else {
 					currentMode.mouseClicked(event.mouseEvent.getButton(), 
 							event.mouseEvent.getX(), event.mouseEvent.getY());
@@ -290,6 +302,11 @@ final class GuiDisplay implements MouseListener, MouseMotionListener, KeyListene
 		events.add(new Event(EventType.MouseMoved, e, null));
 	}
 
+	@Override
+	public synchronized void mouseWheelMoved(MouseWheelEvent e) {
+		events.add(new Event(EventType.MouseWheel, e, null));
+	}
+
 	@Override
 	public synchronized void keyPressed(KeyEvent e) {
 		events.add(new Event(EventType.KeyPressed, null, e));
@@ -42,4 +42,6 @@ public interface IFViewMode extends IFDrawTickAndInput, IFButtonListener{
 	
 	void keyPressed(int key);
 	
+	void mouseWheelMoved(int rotation, int x, int y);
+	
 }
@@ -309,6 +309,9 @@ public class MainMenu implements IFViewMode, IFButtonListener, IFDrawTickAndInpu
 	@Override
 	public void keyPressed(int key){}
 
+	@Override
+	public void mouseWheelMoved(int rotation, int x, int y){}
+
 	// Consider making the id an int instead
 	@Override
 	public void buttonPressed(String id){
@@ -26,13 +26,19 @@
 package view;
 
 import java.awt.BasicStroke;
+import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.event.KeyEvent;
 import java.awt.image.BufferedImage;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 
 import util.IDrawable;
+import util.GridIndex;
+import util.RenderBuffer;
+import util.Timings;
+import util.Viewport;
 import controller.MainController;
 import controller.SoundController;
 
@@ -45,6 +51,12 @@ public class Simulation implements IFViewMode{
 
 	private static Simulation instance;
 
+	private static final int RECTANGLE_WIDTH = 2;
+	private static final int LINE_WIDTH = 7;
+	private static final double ROAD_INDEX_CELL = 100;
+	private static final double ZOOM_STEP = 1.25;
+	private static final int PAN_STEP = 50;
+
 	ButtonContainer menu;
 	ButtonContainer menuPaused;
 
@@ -63,6 +75,7 @@ public class Simulation implements IFViewMode{
 	BufferedImage simulationMenuBuffer; 
 	Graphics2D simulationG;
 	GuiDisplay guiDisplay;
+	MainController controller;
 
 	String mainMenuBtn = "Main Menu";
 	String pauseBtn = "Pause";
@@ -106,8 +119,23 @@ public class Simulation implements IFViewMode{
 	private int widthFrame;
 	private int heightFrame;
 
+	// The background and roads are drawn again only for a new map, size or view
+	private final FrameRaster raster = new FrameRaster();
+	private final FrameInterpolator interpolator = new FrameInterpolator();
+	private final TimingOverlay timingOverlay = new TimingOverlay();
+	private GridIndex roadIndex;
+	private RenderBuffer roadIndexSource;
+	private Viewport roadLayerView;
+
+	// The part of the map on the screen, and the last one the model was told about
+	private Viewport viewport = new Viewport(0, 0, 1, 1, 1);
+	private Viewport sentViewport;
+	private BasicStroke lineStroke = new BasicStroke(LINE_WIDTH);
+	private BasicStroke rectangleStroke = new BasicStroke(RECTANGLE_WIDTH);
+
 	public Simulation(GuiDisplay gd, int width, int height, int widthF, int heightF){
 		guiDisplay = gd;
+		controller = gd.getController();
 
 		PICTURE_WIDTH = width;
 		PICTURE_HEIGHT = height;
@@ -158,7 +186,7 @@ public class Simulation implements IFViewMode{
 						this);
 		drawAndTickList.add(popUp);
 
-		terminal = new Terminal(TERMINAL_HIDDEN_X, TERMINAL_HIDDEN_Y, 600, 540, this);
+		terminal = new Terminal(TERMINAL_HIDDEN_X, TERMINAL_HIDDEN_Y, 600, 540, this, controller);
 		drawAndTickList.add(terminal);
 
 		toggleMenu();
@@ -180,45 +208,101 @@ public class Simulation implements IFViewMode{
 		menuIsVissible = !menuIsVissible;
 	}
 
-	private void drawIDrawAble(IDrawable drawAble, Graphics2D g){
-		g.setColor(drawAble.getColor());
-		switch (drawAble.getType()){
-		case IMAGE:
-			// Not handled
-			break;
+	private void drawCommand(RenderBuffer buffer, int i, float mapX, float mapY, Graphics2D g){
+		g.setColor(new Color(buffer.getColor(i)));
+		int x = (int)viewport.toScreenX(mapX);
+		int y = (int)viewport.toScreenY(mapY);
+		switch (buffer.getType(i)){
 		case RECTANGLE:
-			g.setStroke(new BasicStroke(2));
-			g.drawRect((int)drawAble.getXPos()-(int)(drawAble.getWidth()/2), 
-					(int)drawAble.getYPos()-(int)(drawAble.getHeight()/2), 
-					(int)drawAble.getWidth(),
-					(int)drawAble.getHeight());
+			int w = (int)(buffer.getWidth(i)*viewport.getZoom());
+			int h = (int)(buffer.getHeight(i)*viewport.getZoom());
+			g.setStroke(rectangleStroke);
+			g.drawRect(x-w/2, y-h/2, w, h);
 			break;
 		case CIRCLE:
-			g.fillOval((int)(drawAble.getXPos()-drawAble.getRadius()), 
-					(int)(drawAble.getYPos()-drawAble.getRadius()), (int)drawAble.getRadius()*2, 
-					(int)drawAble.getRadius()*2);
+			int r = (int)(buffer.getWidth(i)*viewport.getZoom());
+			g.fillOval(x-r, y-r, r*2, r*2);
 			break;
 		case DOT:
-			g.fillOval((int)drawAble.getXPos(), (int)drawAble.getYPos(), 3, 3);
+			g.fillOval(x, y, 3, 3);
 			break;
 		case LINE:
-			g.setStroke(new BasicStroke(7));
-			g.drawLine((int)drawAble.getXPos(), (int)drawAble.getYPos(), 
-					(int)drawAble.getEndX(), (int)drawAble.getEndY());
+			g.setStroke(lineStroke);
+			g.drawLine(x, y, (int)viewport.toScreenX(buffer.getWidth(i)), 
+					(int)viewport.toScreenY(buffer.getHeight(i)));
 			break;
 		default:
 			break;
 		}
 	}
-	
+
+	/*
+	 * Draws the background and the roads that are on the screen
+	 */
+	private void drawRoadLayer(RenderBuffer roads){
+		if(roadIndexSource != roads){
+			roadIndex = new GridIndex(ROAD_INDEX_CELL);
+			for(int i = 0; i < roads.size(); i++){
+				float w = roads.getWidth(i);
+				float h = roads.getHeight(i);
+				if(roads.getType(i) == IDrawable.Type.LINE){
+					roadIndex.add(i, roads.getX(i), roads.getY(i), w, h);
+				} else {
+					roadIndex.add(i, roads.getX(i)-w/2, roads.getY(i)-h/2, roads.getX(i)+w/2, roads.getY(i)+h/2);
+				}
+			}
+			roadIndexSource = roads;
+		}
+		Graphics2D layer = raster.createRoadGraphics();
+		layer.setBackground(PublicConstants.BGColor);
+		layer.clearRect(0, 0, widthFrame, heightFrame);
+		// Half a lane of margin so that wide strokes at the edges are drawn
+		int found = roadIndex.query(viewport.getLeft()-LINE_WIDTH, viewport.getTop()-LINE_WIDTH, 
+				viewport.getRight()+LINE_WIDTH, viewport.getBottom()+LINE_WIDTH);
+		for(int i = 0; i < found; i++){
+			int road = roadIndex.getResult(i);
+			drawCommand(roads, road, roads.getX(road), roads.getY(road), layer);
+		}
+		layer.dispose();
+		roadLayerView = viewport;
+	}
+
+	private void setViewport(Viewport view){
+		if(view.getZoom() != viewport.getZoom()){
+			lineStroke = new BasicStroke((float)(LINE_WIDTH*view.getZoom()));
+			rectangleStroke = new BasicStroke((float)Math.max(1, RECTANGLE_WIDTH*view.getZoom()));
+		}
+		viewport = view;
+	}
+
 	@Override
 	public void draw(Graphics2D g) {
-		g.setBackground(PublicConstants.BGColor);
-		g.clearRect(0, 0, widthFrame, heightFrame);
-		g.setColor(PublicConstants.black);
+		long start = System.nanoTime();
+		RenderBuffer roads = controller.getRoadBuffer();
+		if(roads != roadIndexSource){
+			// A new map starts out unzoomed
+			setViewport(new Viewport(0, 0, 1, widthFrame, heightFrame));
+		}
+		if(viewport != sentViewport){
+			controller.setViewport(viewport);
+			sentViewport = viewport;
+		}
+		if(raster.resize(widthFrame, heightFrame) || roads != roadIndexSource || viewport != roadLayerView){
+			drawRoadLayer(roads);
+		}
 
-		for (IDrawable d: MainController.getGraphics()){
-			drawIDrawAble(d, g);
+		// Vehicles are written into the raster, the rest is drawn on top,
+		// both where they are between the last two ticks
+		Timings timings = controller.getTimings();
+		long fetch = System.nanoTime();
+		RenderBuffer frame = controller.getRenderBuffer();
+		interpolator.update(frame, System.nanoTime());
+		timings.record(Timings.Phase.GRAPHICS, System.nanoTime() - fetch);
+		g.drawImage(raster.drawFrame(frame, viewport, interpolator), 0, 0, null);
+		for(int i = 0; i < frame.size(); i++){
+			if(frame.getType(i) != IDrawable.Type.RECTANGLE){
+				drawCommand(frame, i, interpolator.getX(i), interpolator.getY(i), g);
+			}
 		}
 
 		simulationG.clearRect(0, 0, PICTURE_WIDTH, PICTURE_HEIGHT);
@@ -229,6 +313,8 @@ public class Simulation implements IFViewMode{
 		g.drawImage(simulationMenuBuffer, offSetWidth, offSetHeight, 
 				(int)(PICTURE_WIDTH*scale), (int)(PICTURE_HEIGHT*scale), null);
 
+		timings.record(Timings.Phase.DRAW, System.nanoTime() - start);
+		timingOverlay.draw(timings, g);
 	}
 
 	@Override
@@ -243,6 +329,7 @@ public class Simulation implements IFViewMode{
 	public void resized(int widthF, int heightF) {
 		widthFrame = widthF;
 		heightFrame = heightF;
+		setViewport(viewport.resize(widthF, heightF));
 		double scaleWidth = (double)widthFrame/(double)PICTURE_WIDTH;
 		double scaleHeight = (double)heightFrame/(double)PICTURE_HEIGHT; 
 		if(scaleWidth < scaleHeight){
@@ -285,6 +372,22 @@ public class Simulation implements IFViewMode{
 			SoundController.getInstance().playButtonSound();
 			toggleMenu();
 			counter = 0;
+		} else if(toggleAllowed && key == KeyEvent.VK_LEFT){
+			setViewport(viewport.pan(-PAN_STEP, 0));
+		} else if(toggleAllowed && key == KeyEvent.VK_RIGHT){
+			setViewport(viewport.pan(PAN_STEP, 0));
+		} else if(toggleAllowed && key == KeyEvent.VK_UP){
+			setViewport(viewport.pan(0, -PAN_STEP));
+		} else if(toggleAllowed && key == KeyEvent.VK_DOWN){
+			setViewport(viewport.pan(0, PAN_STEP));
+		} else if(toggleAllowed && (key == KeyEvent.VK_PLUS || key == KeyEvent.VK_ADD || key == KeyEvent.VK_EQUALS)){
+			setViewport(viewport.zoom(ZOOM_STEP, widthFrame/2, heightFrame/2));
+		} else if(toggleAllowed && (key == KeyEvent.VK_MINUS || key == KeyEvent.VK_SUBTRACT)){
+			setViewport(viewport.zoom(1/ZOOM_STEP, widthFrame/2, heightFrame/2));
+		} else if(toggleAllowed && key == KeyEvent.VK_0){
+			setViewport(new Viewport(0, 0, 1, widthFrame, heightFrame));
+		} else if(key == KeyEvent.VK_F3){
+			timingOverlay.toggle();
 		} else{
 			for(IFDrawTickAndInput d : drawAndTickList){
 				d.keyPressed(key);
@@ -292,6 +395,13 @@ public class Simulation implements IFViewMode{
 		}
 	}
 
+	@Override
+	public void mouseWheelMoved(int rotation, int x, int y) {
+		if(toggleAllowed){
+			setViewport(viewport.zoom(Math.pow(ZOOM_STEP, -rotation), x, y));
+		}
+	}
+
 	@Override
 	public void buttonPressed(String id) {
 		SoundController.getInstance().playButtonSound();
@@ -321,13 +431,13 @@ public class Simulation implements IFViewMode{
 			toggleMenu();
 			toggleAllowed = true;
 		}	else if(id.equals(pauseBtn)){
-			MainController.pauseSimulation();
+			controller.pauseSimulation();
 			SoundController.getInstance().pauseSimulationMusic();
 			menu.setTargetHidden(MENU_HIDDEN_X, MENU_HIDDEN_Y);
 			menuPaused.setTargetVissible(MENU_VISSIBLE_X, MENU_VISSIBLE_Y);
 			currentInUse = menuPaused;
 		} else if (id.equals(resumeBtn)){
-			MainController.resumeSimulation();
+			controller.resumeSimulation();
 			SoundController.getInstance().pauseSimulationMusic();
 			menu.setTargetVissible(MENU_VISSIBLE_X, MENU_VISSIBLE_Y);
 			menuPaused.setTargetHidden(MENU_HIDDEN_X, MENU_HIDDEN_Y);
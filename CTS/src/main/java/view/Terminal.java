@@ -29,6 +29,7 @@ package view;
 
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
@@ -70,6 +71,8 @@ public class Terminal extends TargetMoveItem {
 	private final String SET_YELLOW = "> YELLOWLIGHTS";
 	private final String REM_YELLOW = "> REMYELLOWLIGHTS";
 	private final String TOGGLE_SOUND = "> TOGGLESOUND";
+	private final String EXPORT_TIMINGS = "> EXPORTTIMINGS";
+	private final String RESET_TIMINGS = "> RESETTIMINGS";
 
 	private final int SLOW_SPAWN = 50;
 	private final int NORMAL_SPAWN = 5;
@@ -78,7 +81,11 @@ public class Terminal extends TargetMoveItem {
 
 	private boolean isActive = false;
 
-	public Terminal(double x, double y, int w, int h, IFViewMode vm){
+	private final MainController controller;
+
+	public Terminal(double x, double y, int w, int h, IFViewMode vm, MainController controller){
+
+		this.controller = controller;
 
 		speed = 10;
 		xLocation = x;
@@ -123,6 +130,8 @@ public class Terminal extends TargetMoveItem {
 		trie.addString(SET_YELLOW);
 		trie.addString(REM_YELLOW);
 		trie.addString(TOGGLE_SOUND);
+		trie.addString(EXPORT_TIMINGS);
+		trie.addString(RESET_TIMINGS);
 
 		clear();
 
@@ -154,29 +163,37 @@ public class Terminal extends TargetMoveItem {
 					textArea.addString(s);
 				}
 			} else if(str.equals(SPAWNSPEEDSLOW)){
-				MainController.setSpawnDelay(SLOW_SPAWN);
+				controller.setSpawnDelay(SLOW_SPAWN);
 			} else if(str.equals(SPAWNSPEEDNORMAL)){
-				MainController.setSpawnDelay(NORMAL_SPAWN);
+				controller.setSpawnDelay(NORMAL_SPAWN);
 			} else if(str.equals(SPAWNSPEEDFAST)){
-				MainController.setSpawnDelay(FAST_SPAWN);
+				controller.setSpawnDelay(FAST_SPAWN);
 			} else if(str.equals(SPAWNSPEEDLUDICROUS)){
-				MainController.setSpawnDelay(LUDICROUS_SPAWN);
+				controller.setSpawnDelay(LUDICROUS_SPAWN);
 			} else if(str.equals(CLEARCARS)){
-				MainController.clear();
+				controller.clear();
 			} else if(str.equals(CLOSE)){
 				button.activate();
 			}
 
 			else if(str.equals(CLEARCARS)){
-				MainController.clear();
+				controller.clear();
 			} else if(str.equals(SET_YELLOW)){
-				MainController.setLightsYellow();
+				controller.setLightsYellow();
 			} else if(str.equals(REM_YELLOW)){
-				MainController.removeYellowLights();
+				controller.removeYellowLights();
 			} else if(str.equals(TOGGLE_SOUND)){
 				SoundController.getInstance().muteMusic();
+			} else if(str.equals(EXPORT_TIMINGS)){
+				try {
+					textArea.addString("Timings written to "+controller.exportTimings());
+				} catch (IOException e){
+					textArea.addString("Could not write the timings: "+e.getMessage());
+				}
+			} else if(str.equals(RESET_TIMINGS)){
+				controller.getTimings().reset();
 			}else if(str.equals(SPAWNSPEEDLUDICROUS)){
-				MainController.setSpawnDelay(0);
+				controller.setSpawnDelay(0);
 			}
 		} else {
 			textArea.addString("Unknown Command: "+str);
@@ -0,0 +1,99 @@
+
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package view;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.util.Locale;
+
+import util.TimingHistogram;
+import util.Timings;
+
+/**
+ * A table in the corner of the simulation showing where the time of
+ * every tick and frame goes, in milliseconds.
+ * The text is only made again a few times a second, so it can be read
+ * and so showing it costs next to nothing.
+ */
+final class TimingOverlay {
+
+	private static final long REFRESH_NANOS = 250000000L;
+	private static final int MARGIN = 10;
+	private static final double NANOS_PER_MILLI = 1e6;
+	private static final Font FONT = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+	private static final Color BACKGROUND = new Color(0, 0, 0, 170);
+
+	private final String[] lines = new String[Timings.Phase.values().length + 1];
+	private long refreshed;
+	private boolean visible;
+
+	void toggle(){
+		visible = !visible;
+		refreshed = 0;
+	}
+
+	boolean isVisible(){
+		return visible;
+	}
+
+	void draw(Timings timings, Graphics2D g){
+		if(!visible){
+			return;
+		}
+		long now = System.nanoTime();
+		if(refreshed == 0 || now - refreshed > REFRESH_NANOS){
+			refresh(timings);
+			refreshed = now;
+		}
+		g.setFont(FONT);
+		FontMetrics metrics = g.getFontMetrics();
+		int width = 0;
+		for(String line : lines){
+			width = Math.max(width, metrics.stringWidth(line));
+		}
+		int lineHeight = metrics.getHeight();
+		g.setColor(BACKGROUND);
+		g.fillRect(MARGIN, MARGIN, width + 2*MARGIN, lines.length*lineHeight + MARGIN);
+		g.setColor(Color.WHITE);
+		for(int i = 0; i < lines.length; i++){
+			g.drawString(lines[i], 2*MARGIN, MARGIN + (i+1)*lineHeight);
+		}
+	}
+
+	private void refresh(Timings timings){
+		lines[0] = String.format(Locale.ROOT, "%-9s%9s%8s%8s%8s%8s",
+				"ms", "count", "mean", "p50", "p99", "max");
+		for(Timings.Phase p : Timings.Phase.values()){
+			TimingHistogram h = timings.get(p);
+			lines[p.ordinal() + 1] = String.format(Locale.ROOT, "%-9s%9d%8.2f%8.2f%8.2f%8.2f",
+					p.name().toLowerCase(Locale.ROOT), h.getCount(),
+					h.getMean() / NANOS_PER_MILLI,
+					h.getPercentile(50) / NANOS_PER_MILLI,
+					h.getPercentile(99) / NANOS_PER_MILLI,
+					h.getMax() / NANOS_PER_MILLI);
+		}
+	}
+}
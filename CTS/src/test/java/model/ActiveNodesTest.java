@@ -0,0 +1,73 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import util.SimRandom;
+
+/**
+ * Tests that nodes sleep while they have nothing to do.
+ */
+public class ActiveNodesTest {
+    
+    @Test
+    public void testEmptyNodesSleepAndEnteringWakes(){
+        List<INode> nodes = new ArrayList<>();
+        List<Lane> lanes = new ArrayList<>();
+        Node center = new Node(500, 500, new SimRandom(1));
+        nodes.add(center);
+        Node[] around = {new Node(500, 300), new Node(500, 700), new Node(300, 500), new Node(700, 500)};
+        for (Node n : around){
+            nodes.add(n);
+            lanes.add(n.connectTo(center));
+            lanes.add(center.connectTo(n));
+        }
+        ActiveNodes active = new ActiveNodes(nodes, false);
+        active.listenTo(lanes);
+        assertEquals(nodes.size(), active.getActiveCount());
+        
+        //Every node thinks once to set itself up, then nobody has anything to do.
+        active.advance();
+        active.think();
+        assertEquals(0, active.getActiveCount());
+        for (int i = 0; i < 100; i++){
+            active.advance();
+            active.think();
+        }
+        assertEquals(0, active.getActiveCount());
+        
+        //A vehicle heading for the center wakes it.
+        Vehicle car = Car.newInstance(new VehicleStore(), new SimRandom());
+        assertTrue(lanes.get(0).offerVehicle(car));
+        assertEquals(1, active.getActiveCount());
+        
+        active.shutdown();
+        for (Lane l : lanes){
+            l.clearCars();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package model;
+
+import java.util.List;
+import model.path.Path;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import util.SimRandom;
+
+/**
+ * Tests that the contraction hierarchy finds routes as cheap as the
+ * router, before and after the lanes fill up.
+ */
+public class ContractionHierarchyTest {
+    
+    private static final int SIDE = 9;
+    
+    private final SimRandom random = new SimRandom(5);
+    private final List<INode> nodes = RoadGrids.grid(SIDE, 20, random);
+    
+    @Test
+    public void testRoutesAreAsCheapAsDijkstra(){
+        Router router = new Router(nodes);
+        ContractionHierarchy hierarchy = new ContractionHierarchy(router);
+        assertTrue(hierarchy.isFor(router));
+        assertEquals(-1, hierarchy.getEpoch());
+        hierarchy.customize(0);
+        assertSameCosts(router, hierarchy);
+        
+        //Only seen after customizing again.
+        RoadGrids.fill(RoadGrids.lanes(nodes), 4, random);
+        hierarchy.customize(1);
+        assertEquals(1, hierarchy.getEpoch());
+        assertSameCosts(router, hierarchy);
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void testRoutesNeedCustomizing(){
+        new ContractionHierarchy(new Router(nodes)).findRoute(nodes.get(0), nodes.get(1));
+    }
+    
+    @Test
+    public void testMapRoutesWithHierarchy(){
+        WorldMap map = (WorldMap) WorldMap.newInstance();
+        map.setSeed(4);
+        map.generate(1600, 1200, 50, 5, 100);
+        map.setRouteMode(RouteMode.HIERARCHY);
+        ContractionHierarchy hierarchy = map.getHierarchy();
+        assertTrue(hierarchy.getEpoch() >= 0);
+        Router router = map.getRouter();
+        for (int i = 0; i < 200; i++){
+            INode from = router.getNode(random.nextInt(router.size()));
+            INode to = router.getNode(random.nextInt(router.size()));
+            assertEquals(cost(router.findRoute(from, to)), cost(map.findRoute(from, to)));
+        }
+        assertSame(hierarchy, map.getHierarchy());
+    }
+    
+    private void assertSameCosts(Router router, ContractionHierarchy hierarchy){
+        for (INode from : nodes){
+            for (INode to : nodes){
+                Route expected = router.findRoute(from, to);
+                Route route = hierarchy.findRoute(from, to);
+                if (expected == null){
+                    assertNull(route);
+                } else {
+                    assertSame(from, route.get(1));
+                    assertSame(to, route.get(route.getLength()));
+                    assertEquals(cost(expected), cost(route));
+                }
+            }
+        }
+    }
+    
+    private static int cost(Route route){
+        return RoadGrids.cost(route, RoadGrids.WEIGHT);
+    }
+    
+    private static int cost(Path<INode> route){
+        return RoadGrids.cost(route, RoadGrids.WEIGHT);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package model;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import util.Weather;
+
+/**
+ * Checks that a seeded simulation runs the same way every time,
+ * whichever engine runs it.
+ */
+public class DeterministicRunTest {
+    
+    private static final long SEED = 20141031L;
+    private static final int TICKS = 500;
+    
+    @Test
+    public void testSameSeedSameRun() throws ReflectiveOperationException {
+        List<String> first = run(EngineMode.SERIAL);
+        List<String> second = run(EngineMode.SERIAL);
+        assertTrue(first.size() > 1);
+        assertEquals(first, second);
+    }
+    
+    @Test
+    public void testParallelSameAsSerial() throws ReflectiveOperationException {
+        assertEquals(run(EngineMode.SERIAL), run(EngineMode.PARALLEL));
+    }
+    
+    @Test
+    public void testShardedIsReproducible() throws ReflectiveOperationException {
+        assertEquals(run(EngineMode.SHARDED), run(EngineMode.SHARDED));
+    }
+    
+    @Test
+    public void testMapsRunSideBySide() throws Exception {
+        List<String> alone = run(EngineMode.SERIAL);
+        final IWorldMap[] maps = {WorldMap.newInstance(), WorldMap.newInstance(), WorldMap.newInstance()};
+        final List<List<String>> results = new ArrayList<>();
+        Thread[] threads = new Thread[maps.length];
+        for (int i = 0; i < maps.length; i++){
+            final IWorldMap map = maps[i];
+            results.add(null);
+            final int index = i;
+            threads[i] = new Thread(new Runnable(){
+                @Override
+                public void run(){
+                    try {
+                        results.set(index, DeterministicRunTest.this.run(map, EngineMode.SERIAL));
+                    } catch (ReflectiveOperationException e){
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread t : threads){
+            t.join();
+        }
+        for (List<String> result : results){
+            assertEquals(alone, result);
+        }
+        
+        maps[0].setWeather(Weather.SNOW);
+        maps[0].setTimeOfDay(3);
+        assertEquals(Weather.SUNSHINE, maps[1].getWeather());
+        assertEquals(8, maps[1].getTimeOfDay());
+    }
+    
+    /**
+     * Runs a fresh map and describes every vehicle left at the end.
+     */
+    private List<String> run(EngineMode mode) throws ReflectiveOperationException {
+        return run(WorldMap.newInstance(), mode);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private List<String> run(IWorldMap map, EngineMode mode) throws ReflectiveOperationException {
+        map.setSeed(SEED);
+        map.generate(800, 600, 50, 5, 100);
+        map.updateSpawnDelay(1);
+        map.setEngineMode(mode);
+        for (int i = 0; i < TICKS; i++){
+            map.think();
+        }
+        Field field = WorldMap.class.getDeclaredField("entities");
+        field.setAccessible(true);
+        List<String> vehicles = new ArrayList<>();
+        for (TrafficEntity e : (List<TrafficEntity>) field.get(map)){
+            vehicles.add(e.getID() + " " + e.getXpos() + " " + e.getYpos() + " " + e.getDirection());
+        }
+        map.setEngineMode(EngineMode.SERIAL);
+        return vehicles;
+    }
+}
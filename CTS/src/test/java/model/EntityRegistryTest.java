@@ -0,0 +1,169 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import util.SimRandom;
+
+/**
+ * Tests the registry of live entities. How a tick scales with the
+ * number of vehicles is measured with HeadlessRunner -scaling.
+ */
+public class EntityRegistryTest {
+    
+    @Test
+    public void testAddRemove(){
+        VehicleStore store = new VehicleStore();
+        EntityRegistry registry = new EntityRegistry();
+        Vehicle a = Car.newInstance(store, new SimRandom());
+        Vehicle b = Car.newInstance(store, new SimRandom());
+        Vehicle c = Car.newInstance(store, new SimRandom());
+        assertTrue(registry.add(a));
+        assertTrue(registry.add(b));
+        assertTrue(registry.add(c));
+        assertFalse(registry.add(a));
+        assertEquals(3, registry.size());
+        
+        assertTrue(registry.remove(a));
+        assertFalse(registry.remove(a));
+        assertEquals(2, registry.size());
+        //The last entity takes the place of the removed one.
+        assertTrue(c == registry.get(0));
+        assertTrue(b == registry.get(1));
+        
+        registry.clear();
+        assertEquals(0, registry.size());
+        assertTrue(registry.add(a));
+    }
+    
+    @Test
+    public void testRemoveDeadReleasesSlots(){
+        VehicleStore store = new VehicleStore();
+        EntityRegistry registry = new EntityRegistry();
+        for (int i = 0; i < 10; i++){
+            registry.add(Car.newInstance(store, new SimRandom()));
+        }
+        registry.get(0).kill();
+        registry.get(9).kill();
+        registry.get(4).kill();
+        assertEquals(3, registry.removeDead(store));
+        assertEquals(7, registry.size());
+        assertEquals(7, store.getLiveCount());
+        for (TrafficEntity e : registry){
+            assertTrue(e.alive());
+        }
+        //Released slots are handed out again before the store grows.
+        int capacity = store.getCapacity();
+        for (int i = 0; i < 3; i++){
+            registry.add(Car.newInstance(store, new SimRandom()));
+        }
+        assertEquals(capacity, store.getCapacity());
+        assertEquals(10, store.getLiveCount());
+    }
+    
+    @Test
+    public void testVehicleBudget(){
+        IWorldMap map = WorldMap.newInstance();
+        assertEquals(500, map.getVehicleBudget());
+        map.setVehicleBudget(0);
+        assertEquals(500, map.getVehicleBudget());
+        map.generate(800, 600, 50, 5, 100);
+        map.updateSpawnDelay(1);
+        map.setVehicleBudget(3);
+        for (int i = 0; i < 50; i++){
+            map.think();
+            assertTrue(map.getNumberOfVehicles() <= 3);
+        }
+    }
+    
+    @Test
+    public void testSwapRemoveKeepsIndices(){
+        VehicleStore store = new VehicleStore();
+        EntityRegistry registry = new EntityRegistry();
+        List<Vehicle> removed = new ArrayList<>();
+        for (int i = 0; i < 200; i++){
+            registry.add(Car.newInstance(store, new SimRandom()));
+        }
+        SimRandom random = new SimRandom(1);
+        while (registry.size() > 0){
+            Vehicle v = (Vehicle) registry.get(random.nextInt(registry.size()));
+            if (random.nextBoolean()){
+                assertTrue(registry.remove(v));
+            } else {
+                assertTrue(v == registry.remove(registry.indexOf(v)));
+            }
+            removed.add(v);
+            for (int i = 0; i < registry.size(); i++){
+                assertEquals(i, registry.indexOf(registry.get(i)));
+            }
+            for (Vehicle r : removed){
+                assertFalse(registry.contains(r));
+            }
+            assertEquals(200, registry.size() + removed.size());
+        }
+        //Removed entities can be registered again.
+        for (Vehicle r : removed){
+            assertTrue(registry.add(r));
+        }
+        assertEquals(200, registry.size());
+    }
+    
+    /**
+     * A removal may only touch the removed entity and the last one,
+     * anything else would mean shifting the entities after the gap.
+     */
+    @Test
+    public void testRemoveMovesOnlyLastEntity(){
+        VehicleStore store = new VehicleStore();
+        EntityRegistry registry = new EntityRegistry();
+        for (int i = 0; i < 10; i++){
+            registry.add(Car.newInstance(store, new SimRandom()));
+        }
+        TrafficEntity[] before = registry.toArray(new TrafficEntity[0]);
+        registry.remove(3);
+        assertTrue(before[9] == registry.get(3));
+        for (int i = 0; i < registry.size(); i++){
+            if (i != 3){
+                assertTrue(before[i] == registry.get(i));
+            }
+        }
+        
+        before = registry.toArray(new TrafficEntity[0]);
+        before[1].kill();
+        before[4].kill();
+        before[7].kill();
+        assertEquals(3, registry.removeDead(store));
+        for (int i = 0; i < registry.size(); i++){
+            TrafficEntity e = registry.get(i);
+            int old = Arrays.asList(before).indexOf(e);
+            //Either it stayed, or it came from the tail into the place of a dead one.
+            assertTrue(old == i || (old >= registry.size() && !before[i].alive()));
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package model;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import util.SimRandom;
+
+/**
+ * Tests the discrete-event engine against the serial one.
+ */
+public class EventEngineTest {
+    
+    private static final long SEED = 20141031L;
+    
+    /**
+     * Skipping thinks must leave the lights of a node with no vehicles
+     * exactly where thinking that many times does.
+     */
+    @Test
+    public void testSkipThinksMatchesThink() throws ReflectiveOperationException {
+        Method pack = Node.class.getDeclaredMethod("packSignals");
+        pack.setAccessible(true);
+        boolean rotating = false;
+        boolean normal = false;
+        for (long seed = 0; seed < 20; seed++){
+            Node thinking = crossing(seed);
+            Node skipping = crossing(seed);
+            thinking.think();
+            skipping.think();
+            if (thinking.rotatingLight){
+                rotating = true;
+            } else {
+                normal = true;
+            }
+            for (long thinks : new long[]{1, 7, 150, 999, 12345}){
+                for (long i = 0; i < thinks; i++){
+                    thinking.think();
+                }
+                skipping.skipThinks(thinks);
+                assertEquals(pack.invoke(thinking), pack.invoke(skipping));
+            }
+        }
+        assertTrue(rotating && normal);
+    }
+    
+    @Test
+    public void testSameVehiclesAsSerial() throws ReflectiveOperationException {
+        List<String> serial = run(EngineMode.SERIAL);
+        List<String> event = run(EngineMode.EVENT);
+        assertTrue(serial.size() > 1);
+        assertEquals(serial.size(), event.size());
+        for (int i = 0; i < serial.size(); i++){
+            String[] s = serial.get(i).split(" ");
+            String[] e = event.get(i).split(" ");
+            assertEquals(s[0], e[0]);
+            assertEquals(Double.parseDouble(s[1]), Double.parseDouble(e[1]), 1e-6);
+            assertEquals(Double.parseDouble(s[2]), Double.parseDouble(e[2]), 1e-6);
+            //180 and -180 point the same way.
+            double turn = Double.parseDouble(s[3]) - Double.parseDouble(e[3]);
+            assertEquals(0, Math.IEEEremainder(turn, 360), 1e-6);
+        }
+    }
+    
+    @Test
+    public void testEventModeKeepsRunning() {
+        IWorldMap map = WorldMap.newInstance();
+        map.generate(1600, 1200, 50, 5, 100);
+        map.updateSpawnDelay(1);
+        map.setEngineMode(EngineMode.EVENT);
+        for (int i = 0; i < 300; i++){
+            assertTrue(map.think());
+        }
+        assertTrue(map.getNumberOfVehicles() > 0);
+        map.setLightsYellow();
+        for (int i = 0; i < 100; i++){
+            assertTrue(map.think());
+        }
+        map.removeYellowLights();
+        map.setEngineMode(EngineMode.SERIAL);
+        for (int i = 0; i < 100; i++){
+            assertTrue(map.think());
+        }
+    }
+    
+    /**
+     * A node with four neighbours, so that it gets traffic lights.
+     */
+    private Node crossing(long seed){
+        Node center = new Node(500, 500, new SimRandom(seed));
+        Node[] around = {new Node(500, 300), new Node(500, 700), new Node(300, 500), new Node(700, 500)};
+        for (Node n : around){
+            n.connectTo(center);
+            center.connectTo(n);
+        }
+        return center;
+    }
+    
+    /**
+     * Runs a fresh map and describes every vehicle left at the end.
+     */
+    @SuppressWarnings("unchecked")
+    private List<String> run(EngineMode mode) throws ReflectiveOperationException {
+        IWorldMap map = WorldMap.newInstance();
+        map.setSeed(SEED);
+        map.generate(800, 600, 50, 5, 100);
+        map.updateSpawnDelay(1);
+        map.setEngineMode(mode);
+        for (int i = 0; i < 500; i++){
+            map.think();
+        }
+        map.setEngineMode(EngineMode.SERIAL);
+        Field field = WorldMap.class.getDeclaredField("entities");
+        field.setAccessible(true);
+        List<String> vehicles = new ArrayList<>();
+        for (TrafficEntity e : (List<TrafficEntity>) field.get(map)){
+            vehicles.add(e.getID() + " " + e.getXpos() + " " + e.getYpos() + " " + e.getDirection());
+        }
+        return vehicles;
+    }
+}
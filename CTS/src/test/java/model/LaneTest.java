@@ -25,6 +25,7 @@
 package model;
 
 
+import java.util.Random;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -120,6 +121,55 @@ public class LaneTest {
         assertEquals(expResult, result);
     }
 
+    /**
+     * The count follows vehicles entering, leaving and being cleared.
+     */
+    @Test
+    public void testNumberOfVehiclesIsCounted() {
+        Lane instance = new Lane();
+        instance.setEndX(1000);
+        Vehicle c1 = Car.newInstance();
+        Vehicle c2 = Car.newInstance();
+        assertTrue(instance.offerVehicle(c1));
+        c1.setXpos(1000);
+        assertTrue(instance.offerVehicle(c2));
+        assertEquals(2, instance.getNumberOfVehicles());
+        assertEquals(2, instance.getWeight());
+        assertSame(c1, instance.pollVehicle());
+        assertEquals(1, instance.getNumberOfVehicles());
+        //Not at the end yet, so it stays.
+        assertNull(instance.pollVehicle());
+        assertEquals(1, instance.getNumberOfVehicles());
+        instance.clearCars();
+        assertEquals(0, instance.getNumberOfVehicles());
+    }
+
+    /**
+     * Test of getTravelTime method, of class Lane.
+     */
+    @Test
+    public void testGetTravelTime() {
+        VehicleStore store = new VehicleStore();
+        Lane instance = new Lane();
+        instance.setEndX(1000);
+        assertEquals(0, instance.getTravelTime(), 0);
+        
+        store.setTick(10);
+        Vehicle c1 = Car.newInstance(store, new Random(1));
+        assertTrue(instance.offerVehicle(c1));
+        c1.setXpos(1000);
+        store.setTick(20);
+        assertSame(c1, instance.pollVehicle());
+        assertEquals(10, instance.getTravelTime(), 1e-9);
+        
+        Vehicle c2 = Car.newInstance(store, new Random(2));
+        assertTrue(instance.offerVehicle(c2));
+        c2.setXpos(1000);
+        store.setTick(40);
+        assertSame(c2, instance.pollVehicle());
+        assertEquals(10 + Lane.TRAVEL_TIME_WEIGHT * (20 - 10), instance.getTravelTime(), 1e-9);
+    }
+
     /**
      * Test of peekVehicle method, of class Lane.
      */
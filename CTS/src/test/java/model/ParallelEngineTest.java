@@ -0,0 +1,118 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package model;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the parallel engine gives exactly the same moves
+ * as planning and committing on one thread.
+ */
+public class ParallelEngineTest {
+    
+    private WorldMap world;
+    private List<Lane> lanes;
+    private List<TrafficEntity> entities;
+    
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws NoSuchFieldException, IllegalAccessException {
+        WorldMap.destroyMap();
+        world = (WorldMap) WorldMap.getInstance();
+        world.generate(800, 600, 50, 5, 100);
+        world.updateSpawnDelay(1);
+        for (int i = 0; i < 300; i++){
+            world.think();
+        }
+        Field field = WorldMap.class.getDeclaredField("lanes");
+        field.setAccessible(true);
+        lanes = (List<Lane>) field.get(world);
+        field = WorldMap.class.getDeclaredField("entities");
+        field.setAccessible(true);
+        entities = (List<TrafficEntity>) field.get(world);
+    }
+    
+    @After
+    public void tearDown() {
+        WorldMap.destroyMap();
+    }
+    
+    @Test
+    public void testSameMovesAsSerial() {
+        assertTrue(entities.size() > 0);
+        List<double[]> start = snapshot();
+        
+        for (TrafficEntity e : entities){
+            e.plan();
+        }
+        for (TrafficEntity e : entities){
+            e.commit();
+        }
+        List<double[]> serial = snapshot();
+        
+        for (int i = 0; i < entities.size(); i++){
+            TrafficEntity e = entities.get(i);
+            e.setXpos(start.get(i)[0]);
+            e.setYpos(start.get(i)[1]);
+            e.setDirection(start.get(i)[2]);
+        }
+        ParallelEngine engine = new ParallelEngine();
+        engine.plan(lanes);
+        engine.commit(lanes);
+        engine.shutdown();
+        List<double[]> parallel = snapshot();
+        
+        for (int i = 0; i < entities.size(); i++){
+            assertEquals(serial.get(i)[0], parallel.get(i)[0], 0);
+            assertEquals(serial.get(i)[1], parallel.get(i)[1], 0);
+            assertEquals(serial.get(i)[2], parallel.get(i)[2], 0);
+        }
+    }
+    
+    @Test
+    public void testParallelModeKeepsRunning() {
+        world.setEngineMode(EngineMode.PARALLEL);
+        assertEquals(EngineMode.PARALLEL, world.getEngineMode());
+        for (int i = 0; i < 300; i++){
+            assertTrue(world.think());
+        }
+        assertTrue(world.getNumberOfVehicles() > 0);
+        world.setEngineMode(EngineMode.SERIAL);
+        assertEquals(EngineMode.SERIAL, world.getEngineMode());
+    }
+    
+    private List<double[]> snapshot(){
+        List<double[]> positions = new ArrayList<>();
+        for (TrafficEntity e : entities){
+            positions.add(new double[]{e.getXpos(), e.getYpos(), e.getDirection()});
+        }
+        return positions;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package model;
+
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import util.SimRandom;
+
+/**
+ * Tests that the replanner gives vehicles the cheapest routes from
+ * where they are, repairs them when the lanes fill up, and keeps to its
+ * budget.
+ */
+public class ReplannerTest {
+    
+    private static final int SIDE = 7;
+    
+    private final SimRandom random = new SimRandom(8);
+    private final List<INode> nodes = RoadGrids.grid(SIDE, 0, random);
+    private final List<Lane> lanes = RoadGrids.lanes(nodes);
+    
+    public ReplannerTest(){
+        RoadGrids.fill(lanes, 3, random);
+    }
+    
+    /**
+     * @return a vehicle heading for the last node, in a lane out of the
+     *                  first.
+     */
+    private Vehicle addDriver(){
+        Vehicle v = Car.newInstance();
+        v.setDestination(nodes.get(nodes.size() - 1));
+        Lane lane = nodes.get(0).getOutgoingLanes().get(0);
+        assertTrue(lane.offerVehicle(v));
+        return v;
+    }
+    
+    @Test
+    public void testRoutesAreCheapest(){
+        Replanner replanner = new Replanner(new Router(nodes));
+        Vehicle v = addDriver();
+        replanner.add(v);
+        assertEquals(1, replanner.getDestinations());
+        replanner.tick(Integer.MAX_VALUE);
+        INode from = v.getCurrentLane().getEndNode();
+        assertEquals(1, replanner.getRerouted());
+        assertSame(from, v.getRoute().get(1));
+        assertEquals(cheapest(from, v.getDestination()), cost(v.getRoute()));
+        
+        //Fill up every lane of the route, then the route goes around them.
+        Route before = v.getRoute();
+        for (int i = 1; i < before.getLength(); i++){
+            RoadGrids.fill(RoadGrids.lane(before.get(i), before.get(i + 1)), 8);
+        }
+        replanner.tick(Integer.MAX_VALUE);
+        assertEquals(2, replanner.getRerouted());
+        assertNotSame(before, v.getRoute());
+        assertEquals(cheapest(from, v.getDestination()), cost(v.getRoute()));
+    }
+    
+    @Test
+    public void testKeepsToBudget(){
+        Replanner replanner = new Replanner(new Router(nodes));
+        Vehicle v = addDriver();
+        replanner.add(v);
+        replanner.tick(5);
+        assertEquals(5, replanner.getExpanded());
+        assertEquals(0, replanner.getRerouted());
+        assertNull(v.getRoute());
+        int ticks = 1;
+        while (v.getRoute() == null){
+            replanner.tick(5);
+            ticks++;
+            assertTrue(replanner.getExpanded() <= 5 * ticks);
+        }
+        INode from = v.getCurrentLane().getEndNode();
+        assertEquals(cheapest(from, v.getDestination()), cost(v.getRoute()));
+    }
+    
+    @Test
+    public void testForgetsDeadVehicles(){
+        Replanner replanner = new Replanner(new Router(nodes));
+        Vehicle v = addDriver();
+        replanner.add(v);
+        replanner.tick(Integer.MAX_VALUE);
+        v.kill();
+        //Let go of the next time the routes there change.
+        for (Lane l : lanes){
+            RoadGrids.fill(l, 8);
+        }
+        replanner.tick(Integer.MAX_VALUE);
+        assertEquals(0, replanner.getDestinations());
+    }
+    
+    @Test
+    public void testMapReroutes(){
+        WorldMap map = (WorldMap) WorldMap.newInstance();
+        map.setSeed(4);
+        map.generate(800, 600, 50, 5, 100);
+        map.updateSpawnDelay(0);
+        map.setRerouteBudget(2000);
+        for (int i = 0; i < 2000; i++){
+            map.think();
+        }
+        assertTrue(map.getReplanner().getRerouted() > 0);
+        assertTrue(map.getTimings().get(util.Timings.Phase.REROUTE).getCount() > 0);
+        map.setRerouteBudget(0);
+        map.think();
+        assertEquals(2000, map.getTimings().get(util.Timings.Phase.REROUTE).getCount());
+    }
+    
+    private static int cost(Route route){
+        return RoadGrids.cost(route, RoadGrids.WEIGHT_PLUS_ONE);
+    }
+    
+    private int cheapest(INode from, INode to){
+        return RoadGrids.cheapest(nodes, from, RoadGrids.WEIGHT_PLUS_ONE)[nodes.indexOf(to)];
+    }
+}
@@ -0,0 +1,196 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import model.path.Path;
+import static org.junit.Assert.fail;
+
+/**
+ * Square grids of nodes with lanes both ways between neighbours, and
+ * the brute force costs the routing tests compare against.
+ */
+final class RoadGrids {
+    
+    /**
+     * What driving through a lane costs.
+     */
+    interface Metric {
+        
+        int cost(Lane l);
+    }
+    
+    /**
+     * The weight of the lane, as the router counts it.
+     */
+    static final Metric WEIGHT = new Metric(){
+        @Override
+        public int cost(Lane l){
+            return l.getWeight();
+        }
+    };
+    
+    /**
+     * One more than the weight of the lane, as the replanner counts it.
+     */
+    static final Metric WEIGHT_PLUS_ONE = new Metric(){
+        @Override
+        public int cost(Lane l){
+            return l.getWeight() + 1;
+        }
+    };
+    
+    private RoadGrids(){
+    }
+    
+    /**
+     * Builds a grid of side by side nodes, 400 apart.
+     *
+     * @param side the number of nodes along each side.
+     * @param missing the chance in percent that a lane is left out.
+     * @param random that decides which lanes are left out.
+     * @return the nodes of the grid, row by row.
+     */
+    static List<INode> grid(int side, int missing, Random random){
+        List<INode> nodes = new ArrayList<>();
+        Node[][] grid = new Node[side][side];
+        for (int i = 0; i < side; i++){
+            for (int j = 0; j < side; j++){
+                grid[i][j] = new Node(i * 400, j * 400);
+                nodes.add(grid[i][j]);
+            }
+        }
+        for (int i = 0; i < side; i++){
+            for (int j = 0; j < side; j++){
+                if (i + 1 < side){
+                    connect(grid[i][j], grid[i + 1][j], missing, random);
+                    connect(grid[i + 1][j], grid[i][j], missing, random);
+                }
+                if (j + 1 < side){
+                    connect(grid[i][j], grid[i][j + 1], missing, random);
+                    connect(grid[i][j + 1], grid[i][j], missing, random);
+                }
+            }
+        }
+        return nodes;
+    }
+    
+    private static void connect(Node from, Node to, int missing, Random random){
+        if (random.nextInt(100) >= missing){
+            from.connectTo(to);
+        }
+    }
+    
+    /**
+     * @return every lane out of the nodes.
+     */
+    static List<Lane> lanes(List<INode> nodes){
+        List<Lane> lanes = new ArrayList<>();
+        for (INode n : nodes){
+            lanes.addAll(n.getOutgoingLanes());
+        }
+        return lanes;
+    }
+    
+    /**
+     * Puts from zero up to less than max vehicles on every lane.
+     */
+    static void fill(List<Lane> lanes, int max, Random random){
+        for (Lane l : lanes){
+            fill(l, random.nextInt(max));
+        }
+    }
+    
+    /**
+     * Puts vehicles at the end of the lane, as many as fit.
+     */
+    static void fill(Lane l, int vehicles){
+        for (int i = 0; i < vehicles; i++){
+            Vehicle v = Car.newInstance();
+            if (l.offerVehicle(v)){
+                v.setXpos(l.getEndX());
+                v.setYpos(l.getEndY());
+            }
+        }
+    }
+    
+    /**
+     * Fails if there is no lane from one node to the other.
+     */
+    static Lane lane(INode from, INode to){
+        for (Lane l : from.getOutgoingLanes()){
+            if (l.getEndNode() == to){
+                return l;
+            }
+        }
+        fail("No lane from " + from + " to " + to);
+        return null;
+    }
+    
+    static int cost(Route route, Metric metric){
+        return cost(route == null ? null : route.toPath(), metric);
+    }
+    
+    /**
+     * @return the cost of the lanes along the route, -1 for no route.
+     *                  Fails if two nodes after each other on the route
+     *                  have no lane between them.
+     */
+    static int cost(Path<INode> route, Metric metric){
+        if (route == null){
+            return -1;
+        }
+        int sum = 0;
+        for (int i = 1; i < route.getLength(); i++){
+            sum += metric.cost(lane(route.get(i), route.get(i + 1)));
+        }
+        return sum;
+    }
+    
+    /**
+     * Bellman-Ford over the lanes out of the nodes.
+     *
+     * @return the cheapest cost from the node to every node, in the
+     *                  order of the nodes, Integer.MAX_VALUE where
+     *                  there is no route.
+     */
+    static int[] cheapest(List<INode> nodes, INode from, Metric metric){
+        List<Lane> lanes = lanes(nodes);
+        int[] best = new int[nodes.size()];
+        Arrays.fill(best, Integer.MAX_VALUE);
+        best[nodes.indexOf(from)] = 0;
+        for (int round = 0; round < nodes.size(); round++){
+            for (Lane l : lanes){
+                int start = best[nodes.indexOf(l.getStartNode())];
+                int end = nodes.indexOf(l.getEndNode());
+                if (start != Integer.MAX_VALUE && start + metric.cost(l) < best[end]){
+                    best[end] = start + metric.cost(l);
+                }
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import util.SimRandom;
+
+/**
+ * Compares the routing searches on generated maps of growing size, with
+ * the traffic of a short run on them.
+ *
+ * For every map the same random pairs of nodes are routed with Dijkstra
+ * over the weights of the lanes, which is what findRoute() does by
+ * default, with Dijkstra over the weights and the distance, and with A*
+ * over the weights and the distance. The last two find equally cheap
+ * routes, so the nodes they settle show what heading for the goal saves.
+ * Last comes the contraction hierarchy, over the same weights as the
+ * first, after the time it took to build and to customize it, and the
+ * time it takes to search the routes between all ends of the map.
+ *
+ * It is not part of the application, run it from the test classpath.
+ *
+ * Usage: RouteBenchmark [queries]
+ */
+public final class RouteBenchmark {
+    
+    private static final int[][] SIZES = {{800, 600}, {1600, 1200}, {3200, 2400}, {6400, 4800}};
+    private static final int WARMUP_TICKS = 500;
+    private static final int DEFAULT_QUERIES = 2000;
+    
+    private RouteBenchmark(){
+    }
+    
+    public static void main(String[] args){
+        int queries = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_QUERIES;
+        System.out.println("map        nodes  search             us/query  settled/query");
+        for (int[] size : SIZES){
+            WorldMap map = (WorldMap) WorldMap.newInstance();
+            map.setSeed(1);
+            map.generate(size[0], size[1], 50, 5, 100);
+            map.updateSpawnDelay(0);
+            map.setVehicleBudget(size[0] * size[1] / 1000);
+            for (int i = 0; i < WARMUP_TICKS; i++){
+                map.think();
+            }
+            Router router = map.getRouter();
+            int[] pairs = new int[queries * 2];
+            SimRandom random = new SimRandom(size[0]);
+            for (int i = 0; i < pairs.length; i += 2){
+                pairs[i] = random.nextInt(router.size());
+                do {
+                    pairs[i + 1] = random.nextInt(router.size());
+                } while (pairs[i + 1] == pairs[i]);
+            }
+            String name = size[0] + "x" + size[1];
+            run(name, router, pairs, "dijkstra", false, false);
+            run(name, router, pairs, "dijkstra+distance", true, false);
+            run(name, router, pairs, "astar", true, true);
+            
+            long start = System.nanoTime();
+            ContractionHierarchy hierarchy = new ContractionHierarchy(router);
+            long built = System.nanoTime();
+            hierarchy.customize(0);
+            long customized = System.nanoTime();
+            System.out.println(String.format(Locale.ROOT, "%-10s %6d  hierarchy built in %.1f ms with %d edges, customized in %.1f ms",
+                    name, router.size(), (built - start) / 1e6, hierarchy.getEdges(), (customized - built) / 1e6));
+            run(name, hierarchy, router, pairs);
+            
+            List<INode> ends = new ArrayList<>();
+            for (int i = 0; i < router.size(); i++){
+                if (router.getNode(i).getNodes().size() == 1){
+                    ends.add(router.getNode(i));
+                }
+            }
+            start = System.nanoTime();
+            RouteTable table = new RouteTable(router, ends, 0);
+            System.out.println(String.format(Locale.ROOT, "%-10s %6d  route table of %d ends searched in %.1f ms",
+                    name, router.size(), table.getEnds(), (System.nanoTime() - start) / 1e6));
+        }
+    }
+    
+    private static void run(String map, ContractionHierarchy hierarchy, Router router, int[] pairs){
+        long settled = 0;
+        long elapsed = 0;
+        for (int round = 0; round < 2; round++){
+            settled = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < pairs.length; i += 2){
+                hierarchy.findRoute(router.getNode(pairs[i]), router.getNode(pairs[i + 1]));
+                settled += hierarchy.getSettled();
+            }
+            elapsed = System.nanoTime() - start;
+        }
+        print(map, router.size(), "hierarchy", elapsed, settled, pairs.length / 2);
+    }
+    
+    private static void run(String map, Router router, int[] pairs,
+            String search, boolean byDistance, boolean guided){
+        //Once to warm up, once to measure.
+        long settled = 0;
+        long elapsed = 0;
+        for (int round = 0; round < 2; round++){
+            settled = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < pairs.length; i += 2){
+                router.findRoute(router.getNode(pairs[i]), router.getNode(pairs[i + 1]), byDistance, guided);
+                settled += router.getSettled();
+            }
+            elapsed = System.nanoTime() - start;
+        }
+        print(map, router.size(), search, elapsed, settled, pairs.length / 2);
+    }
+    
+    private static void print(String map, int nodes, String search, long elapsed, long settled, int queries){
+        System.out.println(String.format(Locale.ROOT, "%-10s %6d  %-17s %9.1f  %13.1f",
+                map, nodes, search, elapsed / 1000.0 / queries, (double) settled / queries));
+    }
+}
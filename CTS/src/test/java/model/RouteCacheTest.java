@@ -0,0 +1,145 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package model;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the route cache and how the map uses it.
+ */
+public class RouteCacheTest {
+    
+    private final Node a = new Node(0, 0);
+    private final Node b = new Node(100, 0);
+    private final Node c = new Node(200, 0);
+    
+    @Test
+    public void testRoutesAreKeptPerPair(){
+        RouteCache cache = new RouteCache(4);
+        Route route = route();
+        assertSame(RouteCache.MISSING, cache.get(a, b));
+        cache.put(a, b, route);
+        cache.put(b, a, null);
+        assertSame(route, cache.get(a, b));
+        assertNull(cache.get(b, a));
+        assertSame(RouteCache.MISSING, cache.get(a, c));
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+    
+    @Test
+    public void testLeastRecentlyUsedIsForgotten(){
+        RouteCache cache = new RouteCache(2);
+        Route ab = route();
+        cache.put(a, b, ab);
+        cache.put(b, c, route());
+        cache.get(a, b);
+        cache.put(c, a, route());
+        assertEquals(2, cache.size());
+        assertSame(ab, cache.get(a, b));
+        assertSame(RouteCache.MISSING, cache.get(b, c));
+        cache.setCapacity(1);
+        assertEquals(1, cache.size());
+        assertSame(RouteCache.MISSING, cache.get(c, a));
+        assertSame(ab, cache.get(a, b));
+    }
+    
+    @Test
+    public void testNewEpochMakesRoutesStale(){
+        RouteCache cache = new RouteCache(4);
+        cache.put(a, b, route());
+        cache.advanceEpoch();
+        assertSame(RouteCache.MISSING, cache.get(a, b));
+        assertEquals(0, cache.size());
+        Route route = route();
+        cache.put(a, b, route);
+        assertSame(route, cache.get(a, b));
+    }
+    
+    @Test
+    public void testNothingIsKeptWithoutCapacity(){
+        RouteCache cache = new RouteCache(0);
+        cache.put(a, b, route());
+        assertEquals(0, cache.size());
+        assertSame(RouteCache.MISSING, cache.get(a, b));
+    }
+    
+    /**
+     * A route is shared until enough lanes fill up, and is then found
+     * again around them from the next tick on.
+     */
+    @Test
+    public void testMapFindsRoutesAgainWhenLanesFillUp() throws Exception{
+        WorldMap map = (WorldMap) WorldMap.newInstance();
+        Node from = new Node(0, 100);
+        Node up = new Node(100, 0);
+        Node down = new Node(100, 200);
+        Node to = new Node(200, 100);
+        List<Lane> lanes = new ArrayList<>(Arrays.asList(from.connectTo(up), up.connectTo(to),
+                from.connectTo(down), down.connectTo(to)));
+        List<INode> nodes = new ArrayList<INode>(Arrays.asList(from, up, down, to));
+        set(map, "lanes", lanes);
+        set(map, "nodes", nodes);
+        map.setRouteCacheSize(16);
+        
+        Route first = map.routeBetween(from, to);
+        assertEquals(3, first.getLength());
+        assertSame(first, map.routeBetween(from, to));
+        
+        INode middle = first.get(2);
+        for (Lane l : lanes){
+            if (l.getEndNode() == middle || l.getStartNode() == middle){
+                for (int i = 0; i < 3; i++){
+                    Vehicle v = Car.newInstance();
+                    assertTrue(l.offerVehicle(v));
+                    //Out of the way of the next one.
+                    v.setXpos(l.getEndX());
+                    v.setYpos(l.getEndY());
+                }
+            }
+        }
+        //The lanes are only looked at again in the next tick.
+        assertSame(first, map.routeBetween(from, to));
+        Field tick = WorldMap.class.getDeclaredField("tick");
+        tick.setAccessible(true);
+        tick.setLong(map, tick.getLong(map) + 1);
+        Route second = map.routeBetween(from, to);
+        assertNotSame(first, second);
+        assertNotSame(middle, second.get(2));
+    }
+    
+    private Route route(){
+        return new Route(new INode[]{a, b}, new int[]{0, 1});
+    }
+    
+    private static void set(WorldMap map, String name, Object value) throws Exception{
+        Field f = WorldMap.class.getDeclaredField(name);
+        f.setAccessible(true);
+        f.set(map, value);
+    }
+}
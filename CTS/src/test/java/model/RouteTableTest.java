@@ -0,0 +1,116 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+import model.path.Path;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import util.SimRandom;
+
+/**
+ * Tests that the route table holds routes as cheap as the router finds,
+ * and only from the ends it was made for.
+ */
+public class RouteTableTest {
+    
+    private static final int SIDE = 7;
+    
+    private final SimRandom random = new SimRandom(6);
+    private final List<INode> nodes = RoadGrids.grid(SIDE, 20, random);
+    
+    public RouteTableTest(){
+        RoadGrids.fill(RoadGrids.lanes(nodes), 4, random);
+    }
+    
+    @Test
+    public void testRoutesAreAsCheapAsDijkstra(){
+        Router router = new Router(nodes);
+        RouteTable table = new RouteTable(router, nodes, 3);
+        assertTrue(table.isFor(router));
+        assertEquals(3, table.getEpoch());
+        assertEquals(nodes.size(), table.getEnds());
+        for (INode from : nodes){
+            for (INode to : nodes){
+                assertTrue(table.covers(from, to));
+                Route expected = router.findRoute(from, to);
+                Route route = table.findRoute(from, to);
+                if (expected == null){
+                    assertNull(route);
+                } else {
+                    assertSame(from, route.get(1));
+                    assertSame(to, route.get(route.getLength()));
+                    assertEquals(cost(expected), cost(route));
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testOnlyRoutesFromEnds(){
+        Router router = new Router(nodes);
+        List<INode> ends = nodes.subList(0, 2);
+        RouteTable table = new RouteTable(router, ends, 0);
+        assertEquals(2, table.getEnds());
+        assertTrue(table.covers(nodes.get(1), nodes.get(10)));
+        assertFalse(table.covers(nodes.get(10), nodes.get(1)));
+        assertNull(table.findRoute(nodes.get(10), nodes.get(1)));
+        assertFalse(table.covers(new Node(0, 0), nodes.get(1)));
+    }
+    
+    @Test
+    public void testMapRoutesWithTable(){
+        WorldMap map = (WorldMap) WorldMap.newInstance();
+        map.setSeed(4);
+        map.generate(1600, 1200, 50, 5, 100);
+        map.setRouteMode(RouteMode.TABLE);
+        RouteTable table = map.getRouteTable();
+        assertTrue(table.getEnds() > 0);
+        Router router = map.getRouter();
+        List<INode> ends = new ArrayList<>();
+        for (int i = 0; i < router.size(); i++){
+            if (router.getNode(i).getNodes().size() == 1){
+                ends.add(router.getNode(i));
+            }
+        }
+        assertEquals(ends.size(), table.getEnds());
+        for (int i = 0; i < 200; i++){
+            INode from = ends.get(random.nextInt(ends.size()));
+            INode to = ends.get(random.nextInt(ends.size()));
+            assertEquals(cost(router.findRoute(from, to)), cost(map.findRoute(from, to)));
+            //Not an end, searched instead.
+            from = router.getNode(random.nextInt(router.size()));
+            assertEquals(cost(router.findRoute(from, to)), cost(map.findRoute(from, to)));
+        }
+        assertSame(table, map.getRouteTable());
+    }
+    
+    private static int cost(Route route){
+        return RoadGrids.cost(route, RoadGrids.WEIGHT);
+    }
+    
+    private static int cost(Path<INode> route){
+        return RoadGrids.cost(route, RoadGrids.WEIGHT);
+    }
+}
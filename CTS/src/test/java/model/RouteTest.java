@@ -0,0 +1,72 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package model;
+
+import model.path.Path;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the route and how vehicles follow it.
+ */
+public class RouteTest {
+    
+    private final INode[] table = {new Node(0, 0), new Node(100, 0), new Node(200, 0), new Node(300, 0)};
+    private final Route route = new Route(table, new int[]{2, 0, 3});
+    
+    @Test
+    public void testNodesAreLookedUpInTable(){
+        assertEquals(3, route.getLength());
+        assertSame(table[2], route.get(1));
+        assertSame(table[3], route.get(3));
+        assertEquals(2, route.indexOf(table[0], 1));
+        assertEquals(2, route.indexOf(table[0], 2));
+        assertEquals(-1, route.indexOf(table[0], 3));
+        assertEquals(-1, route.indexOf(table[1], 1));
+        
+        Path<INode> path = route.toPath();
+        assertEquals(3, path.getLength());
+        for (int i = 1; i <= 3; i++){
+            assertSame(route.get(i), path.get(i));
+        }
+    }
+    
+    @Test
+    public void testVehicleFollowsRoute(){
+        Vehicle v = Car.newInstance();
+        assertNull(v.nextNode(table[2]));
+        v.setRoute(route);
+        assertSame(route, v.getRoute());
+        //Asked again while waiting at the node.
+        assertSame(table[0], v.nextNode(table[2]));
+        assertSame(table[0], v.nextNode(table[2]));
+        assertSame(table[3], v.nextNode(table[0]));
+        //Never back along the route.
+        assertNull(v.nextNode(table[2]));
+        assertNull(v.nextNode(table[3]));
+        assertNull(v.nextNode(table[1]));
+        
+        v.setRoute(route);
+        assertSame(table[3], v.nextNode(table[0]));
+    }
+}
@@ -0,0 +1,150 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import util.SimRandom;
+
+/**
+ * Tests the router against a plain Bellman-Ford on a grid with
+ * vehicles on some of its lanes.
+ */
+public class RouterTest {
+    
+    private static final int SIDE = 8;
+    
+    private final List<INode> nodes = RoadGrids.grid(SIDE, 15, new SimRandom(11));
+    
+    public RouterTest(){
+        RoadGrids.fill(RoadGrids.lanes(nodes), 4, new SimRandom(12));
+    }
+    
+    @Test
+    public void testRoutesAreCheapest(){
+        Router router = new Router(nodes);
+        for (INode from : nodes){
+            int[] cheapest = RoadGrids.cheapest(nodes, from, RoadGrids.WEIGHT);
+            for (INode to : nodes){
+                Route route = router.findRoute(from, to);
+                int target = nodes.indexOf(to);
+                if (from == to || cheapest[target] == Integer.MAX_VALUE){
+                    assertNull(route);
+                } else {
+                    assertSame(from, route.get(1));
+                    assertSame(to, route.get(route.getLength()));
+                    assertEquals(cheapest[target], cost(route));
+                }
+            }
+        }
+    }
+    
+    /**
+     * A* finds routes as cheap as Dijkstra does when both count the
+     * distance, while settling fewer nodes.
+     */
+    @Test
+    public void testAStarFindsCheapestRoutes(){
+        Router router = new Router(nodes);
+        long settledDijkstra = 0;
+        long settledAStar = 0;
+        for (INode from : nodes){
+            for (INode to : nodes){
+                Route dijkstra = router.findRoute(from, to, true, false);
+                settledDijkstra += router.getSettled();
+                Route astar = router.findRoute(from, to, RouteMode.ASTAR);
+                settledAStar += router.getSettled();
+                if (dijkstra == null){
+                    assertNull(astar);
+                } else {
+                    assertEquals(costByDistance(dijkstra), costByDistance(astar), 1e-9);
+                }
+            }
+        }
+        assertTrue(settledAStar < settledDijkstra);
+    }
+    
+    @Test
+    public void testUnknownNodesHaveNoRoute(){
+        Router router = new Router(nodes);
+        Node outside = new Node(0, 0);
+        assertEquals(-1, router.indexOf(outside));
+        assertNull(router.findRoute(outside, nodes.get(0)));
+        assertNull(router.findRoute(nodes.get(0), outside));
+        assertTrue(router.isFor(nodes));
+        assertFalse(router.isFor(new ArrayList<>(nodes)));
+    }
+    
+    /**
+     * Threads searching the same router at once find what one
+     * thread finds.
+     */
+    @Test
+    public void testThreadsSearchAtOnce() throws InterruptedException{
+        final Router router = new Router(nodes);
+        final int[] expected = new int[nodes.size() * nodes.size()];
+        for (int i = 0; i < expected.length; i++){
+            expected[i] = cost(router.findRoute(nodes.get(i / nodes.size()), nodes.get(i % nodes.size())));
+        }
+        final AtomicInteger wrong = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++){
+            final int offset = t;
+            threads[t] = new Thread(new Runnable(){
+                @Override
+                public void run(){
+                    for (int round = 0; round < 5; round++){
+                        for (int i = offset; i < expected.length; i += 3){
+                            Route route = router.findRoute(nodes.get(i / nodes.size()), nodes.get(i % nodes.size()));
+                            if (cost(route) != expected[i]){
+                                wrong.incrementAndGet();
+                            }
+                        }
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread t : threads){
+            t.join();
+        }
+        assertEquals(0, wrong.get());
+    }
+    
+    private static double costByDistance(Route route){
+        double sum = cost(route);
+        for (int i = 1; i < route.getLength(); i++){
+            double dx = route.get(i).getXpos() - route.get(i + 1).getXpos();
+            double dy = route.get(i).getYpos() - route.get(i + 1).getYpos();
+            sum += Math.sqrt(dx * dx + dy * dy) * Router.DISTANCE_COST;
+        }
+        return sum;
+    }
+    
+    private static int cost(Route route){
+        return RoadGrids.cost(route, RoadGrids.WEIGHT);
+    }
+}
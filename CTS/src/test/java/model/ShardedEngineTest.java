@@ -0,0 +1,158 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package model;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the region sharded engine and its boundary queues.
+ */
+public class ShardedEngineTest {
+    
+    private WorldMap world;
+    private List<Lane> lanes;
+    private List<INode> nodes;
+    private List<TrafficEntity> entities;
+    
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws NoSuchFieldException, IllegalAccessException {
+        world = (WorldMap) WorldMap.newInstance();
+        world.generate(1600, 1200, 50, 5, 100);
+        world.updateSpawnDelay(1);
+        for (int i = 0; i < 300; i++){
+            world.think();
+        }
+        lanes = (List<Lane>) field("lanes").get(world);
+        nodes = (List<INode>) field("nodes").get(world);
+        entities = (List<TrafficEntity>) field("entities").get(world);
+    }
+    
+    @After
+    public void tearDown() {
+        world.setEngineMode(EngineMode.SERIAL);
+    }
+    
+    @Test
+    public void testVehiclesAreNotLostAtBoundaries() {
+        ShardedEngine engine = new ShardedEngine(nodes, lanes, 4);
+        assertEquals(4, engine.getRegionCount());
+        assertTrue(engine.getBoundaryLaneCount() > 0);
+        
+        List<TrafficEntity> alive = new ArrayList<>(entities);
+        int handedOver = 0;
+        for (int i = 0; i < 300; i++){
+            engine.tick();
+            for (Lane l : lanes){
+                if (l.getHandoff() != null){
+                    handedOver += l.getHandoff().size();
+                }
+            }
+            int inLanes = 0;
+            for (Lane l : lanes){
+                inLanes += l.getNumberOfVehicles();
+                if (l.getHandoff() != null){
+                    inLanes += l.getHandoff().size();
+                }
+            }
+            int living = 0;
+            for (TrafficEntity e : alive){
+                if (e.alive()){
+                    living++;
+                }
+            }
+            assertEquals(living, inLanes);
+        }
+        assertTrue(handedOver > 0);
+        
+        engine.shutdown();
+        for (Lane l : lanes){
+            assertNull(l.getHandoff());
+        }
+    }
+    
+    @Test
+    public void testShardedModeKeepsRunning() {
+        world.setEngineMode(EngineMode.SHARDED);
+        assertEquals(EngineMode.SHARDED, world.getEngineMode());
+        for (int i = 0; i < 300; i++){
+            assertTrue(world.think());
+        }
+        assertTrue(world.getNumberOfVehicles() > 0);
+        world.setEngineMode(EngineMode.SERIAL);
+        for (Lane l : lanes){
+            assertNull(l.getHandoff());
+        }
+    }
+    
+    @Test
+    public void testBoundaryQueueKeepsOrder() throws InterruptedException {
+        final BoundaryQueue<Integer> queue = new BoundaryQueue<>(6);
+        assertEquals(8, queue.capacity());
+        assertNull(queue.peek());
+        final int count = 100000;
+        Thread producer = new Thread(new Runnable(){
+            @Override
+            public void run(){
+                for (int i = 0; i < count; i++){
+                    while (!queue.offer(i)){
+                        Thread.yield();
+                    }
+                }
+            }
+        });
+        producer.start();
+        int expected = 0;
+        while (expected < count){
+            Integer next = queue.poll();
+            if (next == null){
+                Thread.yield();
+            } else {
+                assertEquals(expected, next.intValue());
+                expected++;
+            }
+        }
+        producer.join();
+        assertEquals(0, queue.size());
+        for (int i = 0; i < queue.capacity(); i++){
+            assertTrue(queue.offer(i));
+        }
+        assertTrue(queue.isFull());
+        assertFalse(queue.offer(-1));
+    }
+    
+    private static Field field(String name) throws NoSuchFieldException {
+        Field field = WorldMap.class.getDeclaredField(name);
+        field.setAccessible(true);
+        return field;
+    }
+}
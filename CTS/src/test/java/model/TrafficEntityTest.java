@@ -177,23 +177,23 @@ public class TrafficEntityTest {
     
     @Test
     public void testSetGetTimeOfDay(){
-        assertEquals(8,Car.getTimeOfDay());
-        Car.setTimeOfDay(24);
-        assertEquals(8,Car.getTimeOfDay());
-        Car.setTimeOfDay(-1);
-        assertEquals(8,Car.getTimeOfDay());
-        Car.setTimeOfDay(11);
-        assertEquals(11,Car.getTimeOfDay());
+        assertEquals(8,car.getTimeOfDay());
+        car.setTimeOfDay(24);
+        assertEquals(8,car.getTimeOfDay());
+        car.setTimeOfDay(-1);
+        assertEquals(8,car.getTimeOfDay());
+        car.setTimeOfDay(11);
+        assertEquals(11,car.getTimeOfDay());
     }
     
     @Test
     public void testSetGetWeather(){
-        assertEquals(Weather.SUNSHINE, Car.getWeather());
-        Car.setWeather(null);
-        assertEquals(Weather.SUNSHINE, Car.getWeather());
-        Car.setWeather(Weather.RAIN);
-        assertEquals(Weather.RAIN, Car.getWeather());
-        Car.setWeather(Weather.SUNSHINE);
+        assertEquals(Weather.SUNSHINE, car.getWeather());
+        car.setWeather(null);
+        assertEquals(Weather.SUNSHINE, car.getWeather());
+        car.setWeather(Weather.RAIN);
+        assertEquals(Weather.RAIN, car.getWeather());
+        car.setWeather(Weather.SUNSHINE);
     }
     
     @Test
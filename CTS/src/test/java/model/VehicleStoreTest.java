@@ -0,0 +1,132 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import util.SimRandom;
+
+/**
+ * Tests the column store that holds the moving state of vehicles.
+ */
+public class VehicleStoreTest {
+    
+    @Test
+    public void testReleasedSlotsAreReused(){
+        VehicleStore store = new VehicleStore(2);
+        int a = store.allocate();
+        int b = store.allocate();
+        store.xpos[a] = 10.0;
+        store.release(a);
+        assertEquals(1, store.getLiveCount());
+        int c = store.allocate();
+        assertEquals(a, c);
+        assertEquals(0.0, store.xpos[c], 0);
+        assertTrue(store.live[b]);
+        assertEquals(2, store.getCapacity());
+    }
+    
+    @Test
+    public void testGrowsWhenFull(){
+        VehicleStore store = new VehicleStore(1);
+        for (int i = 0; i < 100; i++){
+            store.allocate();
+        }
+        assertEquals(100, store.getLiveCount());
+        assertTrue(store.getCapacity() >= 100);
+        store.clear();
+        assertEquals(0, store.getLiveCount());
+    }
+    
+    @Test
+    public void testVehicleStateLivesInStore(){
+        VehicleStore store = new VehicleStore();
+        Vehicle car = Car.newInstance(store, new SimRandom());
+        car.setXpos(1.0);
+        car.setYpos(2.0);
+        car.setTargetPosition(3.0, 4.0);
+        car.setCrashed(true);
+        int slot = car.getSlot();
+        assertEquals(1.0, store.xpos[slot], 0);
+        assertEquals(2.0, store.ypos[slot], 0);
+        assertEquals(3.0, store.targetX[slot], 0);
+        assertEquals(4.0, store.targetY[slot], 0);
+        assertTrue(store.crashed[slot]);
+    }
+    
+    @Test
+    public void testFollowsVehicleInFront(){
+        VehicleStore store = new VehicleStore();
+        Vehicle car = Car.newInstance(store, new SimRandom());
+        Vehicle front = Car.newInstance(store, new SimRandom());
+        car.setTargetPosition(1000.0, 0.0);
+        front.setXpos(5.0);
+        car.setVehicleInFront(front);
+        assertEquals(front.getSlot(), store.front[car.getSlot()]);
+        
+        //Too close to the car in front, so it waits.
+        car.think();
+        assertEquals(0.0, car.getXpos(), 0);
+        
+        car.setVehicleInFront(null);
+        assertEquals(VehicleStore.NO_VEHICLE, store.front[car.getSlot()]);
+        car.think();
+        assertTrue(car.getXpos() > 0.0);
+        assertFalse(store.planned[car.getSlot()]);
+    }
+    
+    @Test
+    public void testQueuedVehicleSleepsUntilFrontMoves(){
+        VehicleStore store = new VehicleStore();
+        Vehicle car = Car.newInstance(store, new SimRandom());
+        Vehicle front = Car.newInstance(store, new SimRandom());
+        car.setTargetPosition(1000.0, 0.0);
+        front.setXpos(5.0);
+        front.setTargetPosition(5.0, 0.0);
+        car.setVehicleInFront(front);
+        front.setVehicleBehind(car);
+        assertEquals(car.getSlot(), store.behind[front.getSlot()]);
+        
+        //The front waits at its target and the car waits behind it.
+        store.planAll();
+        store.commitAll();
+        assertTrue(store.asleep[car.getSlot()]);
+        assertTrue(store.asleep[front.getSlot()]);
+        
+        //Nothing changed, so the next tick does nothing.
+        store.planAll();
+        assertFalse(store.planned[car.getSlot()]);
+        assertFalse(store.planned[front.getSlot()]);
+        store.commitAll();
+        
+        //A new target wakes the front, and moving wakes the car.
+        front.setTargetPosition(1000.0, 0.0);
+        assertFalse(store.asleep[front.getSlot()]);
+        store.planAll();
+        store.commitAll();
+        assertTrue(front.getXpos() > 5.0);
+        assertFalse(store.asleep[car.getSlot()]);
+    }
+}
@@ -28,12 +28,23 @@ import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import model.path.Path;
 import org.junit.*;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import java.util.concurrent.CountDownLatch;
+import util.IDrawable;
+import util.RenderBuffer;
+import util.Viewport;
 
 /**
  * @author Gustaf Ringius <Gustaf@linux.com> 
@@ -249,4 +260,302 @@ public class WorldMapTest {
         assertEquals(n2, path.get(2));
         assertEquals(n1, path.get(1));
     }
+    
+    /**
+     * The view gets the last published frame even while a tick holds
+     * the map, and a new frame is only built after it was taken.
+     */
+    @Test(timeout=5000)
+    public void testGraphicsDoNotWaitForTick() throws InterruptedException{
+        final IWorldMap map = WorldMap.newInstance();
+        map.generate(800, 600, 50, 5, 100);
+        IDrawable[] first = map.getGraphics();
+        assertTrue(first.length > 0);
+        
+        map.think();
+        IDrawable[] second = map.getGraphics();
+        assertNotSame(first, second);
+        assertSame(second, map.getGraphics());
+        
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Thread tick = new Thread(new Runnable(){
+            @Override
+            public void run(){
+                synchronized (map){
+                    locked.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        });
+        tick.start();
+        locked.await();
+        assertSame(second, map.getGraphics());
+        release.countDown();
+        tick.join();
+    }
+    
+    /**
+     * Frames are written to the same few buffers over and over, with
+     * one command per lane, node and vehicle and one for the marker.
+     */
+    @Test
+    public void testRenderBuffersAreReused(){
+        IWorldMap map = WorldMap.newInstance();
+        map.setSeed(3);
+        map.generate(800, 600, 50, 5, 100);
+        List<RenderBuffer> seen = new ArrayList<>();
+        for (int tick = 0; tick < 200; tick++){
+            map.think();
+            RenderBuffer buffer = map.getRenderBuffer();
+            if (!seen.contains(buffer)){
+                seen.add(buffer);
+            }
+            int vehicles = 0;
+            int markers = 0;
+            for (int i = 0; i < buffer.size(); i++){
+                if (buffer.getType(i) == IDrawable.Type.CIRCLE){
+                    markers++;
+                } else if (buffer.getType(i) == IDrawable.Type.RECTANGLE && buffer.getWidth(i) < 15){
+                    vehicles++;
+                }
+            }
+            assertEquals(map.getNumberOfVehicles(), vehicles);
+            assertEquals(vehicles > 0 ? 1 : 0, markers);
+        }
+        assertTrue(seen.size() <= 3);
+        assertTrue(map.getNumberOfVehicles() > 0);
+    }
+    
+    /**
+     * The roads are written once per map, and not as part of the frames.
+     */
+    @Test
+    public void testRoadsAreWrittenOncePerMap(){
+        IWorldMap map = WorldMap.newInstance();
+        map.generate(800, 600, 50, 5, 100);
+        RenderBuffer roads = map.getRoadBuffer();
+        int lines = 0;
+        for (int i = 0; i < roads.size(); i++){
+            if (roads.getType(i) == IDrawable.Type.LINE){
+                assertEquals(lines++, roads.getKey(i));
+            }
+        }
+        assertTrue(lines > 0);
+        for (int tick = 0; tick < 50; tick++){
+            map.think();
+            RenderBuffer frame = map.getRenderBuffer();
+            for (int i = 0; i < frame.size(); i++){
+                assertNotSame(IDrawable.Type.LINE, frame.getType(i));
+            }
+            assertSame(roads, map.getRoadBuffer());
+        }
+        assertEquals(roads.size() + map.getRenderBuffer().size(), map.getGraphics().length);
+        map.generate(800, 600, 50, 5, 100);
+        assertNotSame(roads, map.getRoadBuffer());
+    }
+    
+    /**
+     * A copy of the vehicles and lights kept only from the deltas
+     * matches the full frame and the nodes after every tick, in every
+     * kind of engine.
+     */
+    @Test
+    public void testDeltasRebuildTheFrame() throws ReflectiveOperationException {
+        checkDeltas(EngineMode.SERIAL);
+        checkDeltas(EngineMode.PARALLEL);
+        checkDeltas(EngineMode.SHARDED);
+        checkDeltas(EngineMode.EVENT);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void checkDeltas(EngineMode mode) throws ReflectiveOperationException {
+        WorldMap map = (WorldMap) WorldMap.newInstance();
+        map.setSeed(5);
+        map.setEngineMode(mode);
+        map.generate(800, 600, 50, 5, 100);
+        final Map<Integer, String> copy = new HashMap<>();
+        final int[] roads = new int[1];
+        Field field = WorldMap.class.getDeclaredField("nodes");
+        field.setAccessible(true);
+        final List<INode> nodes = (List<INode>) field.get(map);
+        final int[] lights = new int[nodes.size()];
+        map.setFrameListener(new FrameListener(){
+            @Override
+            public void mapLoaded(RenderBuffer buffer){
+                copy.clear();
+                roads[0] = buffer.size();
+                for (int i = 0; i < lights.length; i++){
+                    lights[i] = nodes.get(i).getSignalState();
+                }
+            }
+            @Override
+            public void tickFinished(FrameDelta delta){
+                for (int i = 0; i < delta.getKilledCount(); i++){
+                    assertNotNull(copy.remove(delta.getKilled(i)));
+                }
+                for (int i = 0; i < delta.getSpawned().size(); i++){
+                    assertNull(copy.put(delta.getSpawned().getKey(i), position(delta.getSpawned(), i)));
+                }
+                for (int i = 0; i < delta.getMoved().size(); i++){
+                    assertNotNull(copy.put(delta.getMoved().getKey(i), position(delta.getMoved(), i)));
+                }
+                for (int i = 0; i < delta.getSignalCount(); i++){
+                    lights[delta.getSignalNode(i)] = delta.getSignalState(i);
+                }
+            }
+        });
+        int moved = 0;
+        for (int tick = 0; tick < 300; tick++){
+            map.think();
+            RenderBuffer frame = map.getRenderBuffer();
+            List<String> vehicles = new ArrayList<>();
+            for (int i = 0; i < frame.size(); i++){
+                if (frame.getType(i) == IDrawable.Type.RECTANGLE && frame.getWidth(i) < 15){
+                    vehicles.add(position(frame, i));
+                }
+            }
+            List<String> kept = new ArrayList<>(copy.values());
+            Collections.sort(vehicles);
+            Collections.sort(kept);
+            assertEquals(vehicles, kept);
+            assertEquals(frame.size(), vehicles.size() + (vehicles.isEmpty() ? 0 : 1));
+            assertEquals(map.getRoadBuffer().size(), roads[0]);
+            for (int i = 0; i < lights.length; i++){
+                assertEquals(nodes.get(i).getSignalState(), lights[i]);
+            }
+            moved = Math.max(moved, vehicles.size());
+        }
+        assertTrue(moved > 0);
+        map.setFrameListener(null);
+    }
+    
+    private static String position(RenderBuffer buffer, int i){
+        return buffer.getX(i) + " " + buffer.getY(i) + " " + buffer.getYaw(i);
+    }
+    
+    /**
+     * With a viewport only the vehicles in it are drawn, and zoomed out
+     * far enough the lanes are drawn by how full they are instead.
+     */
+    @Test
+    public void testViewportLimitsTheFrame(){
+        IWorldMap map = WorldMap.newInstance();
+        map.setSeed(7);
+        map.generate(800, 600, 50, 5, 100);
+        for (int tick = 0; tick < 400; tick++){
+            map.think();
+        }
+        map.getRenderBuffer();
+        
+        Viewport corner = new Viewport(0, 0, 2, 400, 300);
+        map.setViewport(corner);
+        map.think();
+        RenderBuffer frame = map.getRenderBuffer();
+        int inside = 0;
+        for (int i = 0; i < frame.size(); i++){
+            if (frame.getType(i) == IDrawable.Type.RECTANGLE){
+                //Lanes reach at most one map cell out of the viewport.
+                assertTrue(frame.getX(i) <= corner.getRight() + 50 * 5);
+                assertTrue(frame.getY(i) <= corner.getBottom() + 50 * 5);
+                inside++;
+            }
+        }
+        assertTrue(inside > 0);
+        assertTrue(inside < map.getNumberOfVehicles());
+        
+        map.setViewport(new Viewport(0, 0, 0.5, 800, 600));
+        map.think();
+        frame = map.getRenderBuffer();
+        int lines = 0;
+        for (int i = 0; i < frame.size(); i++){
+            assertNotSame(IDrawable.Type.RECTANGLE, frame.getType(i));
+            if (frame.getType(i) == IDrawable.Type.LINE){
+                assertTrue(frame.getKey(i) >= 0);
+                lines++;
+            }
+        }
+        assertTrue(lines > 0);
+        
+        map.setViewport(null);
+        map.think();
+        frame = map.getRenderBuffer();
+        assertEquals(map.getNumberOfVehicles() + 1, frame.size());
+    }
+    
+    /**
+     * Frames tell which tick they show and when it ended, and key every
+     * vehicle by its slot so that a view can follow it between frames.
+     */
+    @Test
+    public void testFramesAreStampedAndKeyed(){
+        IWorldMap map = WorldMap.newInstance();
+        map.setSeed(9);
+        map.generate(800, 600, 50, 5, 100);
+        long tick = map.getRenderBuffer().getTick();
+        long time = map.getRenderBuffer().getTime();
+        for (int i = 0; i < 100; i++){
+            map.think();
+            RenderBuffer frame = map.getRenderBuffer();
+            assertEquals(tick + 1, frame.getTick());
+            assertTrue(frame.getTime() >= time);
+            tick = frame.getTick();
+            time = frame.getTime();
+            List<Integer> keys = new ArrayList<>();
+            for (int j = 0; j < frame.size(); j++){
+                if (frame.getType(j) == IDrawable.Type.RECTANGLE){
+                    assertTrue(frame.getKey(j) >= 0);
+                    assertFalse(keys.contains(frame.getKey(j)));
+                    keys.add(frame.getKey(j));
+                }
+            }
+        }
+    }
+    
+    /**
+     * The marker follows one vehicle for as long as it lives, and then
+     * moves on to the oldest one, whatever order the registry keeps the
+     * vehicles in.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testMarkerStaysOnItsVehicle() throws ReflectiveOperationException{
+        WorldMap map = (WorldMap) WorldMap.newInstance();
+        map.setSeed(5);
+        map.generate(800, 600, 50, 5, 100);
+        map.updateSpawnDelay(1);
+        Field field = WorldMap.class.getDeclaredField("entities");
+        field.setAccessible(true);
+        List<TrafficEntity> entities = (List<TrafficEntity>) field.get(map);
+        TrafficEntity marked = null;
+        int changes = 0;
+        for (int tick = 0; tick < 4000; tick++){
+            map.think();
+            RenderBuffer frame = map.getRenderBuffer();
+            int key = -1;
+            for (int i = 0; i < frame.size(); i++){
+                if (frame.getType(i) == IDrawable.Type.CIRCLE){
+                    key = frame.getKey(i);
+                }
+            }
+            if (marked != null && entities.contains(marked)){
+                assertEquals(marked.getSlot(), key);
+                continue;
+            }
+            for (TrafficEntity e : entities){
+                if (e.getSlot() == key){
+                    marked = e;
+                    changes++;
+                }
+                //Never one younger than some other vehicle.
+                assertTrue(map.getStore().allocatedTick[e.getSlot()] >= map.getStore().allocatedTick[key]);
+            }
+        }
+        //The marked vehicles did arrive, so the marker had to move on.
+        assertTrue(changes > 1);
+    }
 }
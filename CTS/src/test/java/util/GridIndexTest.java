@@ -0,0 +1,90 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package util;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the grid index and the viewport it is queried with.
+ */
+public class GridIndexTest {
+    
+    @Test
+    public void testQueryFindsOverlappingBoxesOnce() {
+        GridIndex index = new GridIndex(10);
+        SimRandom random = new SimRandom(3);
+        double[][] boxes = new double[500][];
+        for (int i = 0; i < boxes.length; i++){
+            double x = random.nextDouble() * 1000;
+            double y = random.nextDouble() * 800;
+            boxes[i] = new double[]{x, y, x + random.nextDouble() * 120, y + random.nextDouble() * 5};
+            //Corners in any order, like the ends of a lane.
+            index.add(i, boxes[i][2], boxes[i][3], boxes[i][0], boxes[i][1]);
+        }
+        for (int q = 0; q < 50; q++){
+            double x0 = random.nextDouble() * 1000;
+            double y0 = random.nextDouble() * 800;
+            double x1 = x0 + random.nextDouble() * 300;
+            double y1 = y0 + random.nextDouble() * 300;
+            Set<Integer> expected = new HashSet<>();
+            for (int i = 0; i < boxes.length; i++){
+                if (boxes[i][0] <= x1 && boxes[i][1] <= y1 && boxes[i][2] >= x0 && boxes[i][3] >= y0){
+                    expected.add(i);
+                }
+            }
+            int found = index.query(x0, y0, x1, y1);
+            Set<Integer> actual = new HashSet<>();
+            for (int i = 0; i < found; i++){
+                assertTrue(actual.add(index.getResult(i)));
+            }
+            assertEquals(expected, actual);
+        }
+        assertEquals(0, index.query(-100, -100, -50, -50));
+        assertTrue(index.covers(-1, -1, 2000, 2000));
+        assertFalse(index.covers(0, 0, 500, 500));
+    }
+    
+    @Test
+    public void testViewportZoomKeepsPointInPlace() {
+        Viewport view = new Viewport(0, 0, 1, 800, 600);
+        assertTrue(view.isDetailed());
+        Viewport zoomed = view.zoom(2, 200, 100);
+        assertEquals(2, zoomed.getZoom(), 0);
+        assertEquals(200, zoomed.toMapX(200), 1e-9);
+        assertEquals(100, zoomed.toMapY(100), 1e-9);
+        assertEquals(400, zoomed.getRight() - zoomed.getLeft(), 1e-9);
+        
+        Viewport out = view.zoom(0.5, 0, 0);
+        assertFalse(out.isDetailed());
+        assertEquals(1600, out.getRight(), 1e-9);
+        assertEquals(Viewport.MAX_ZOOM, view.zoom(1000, 0, 0).getZoom(), 0);
+        
+        Viewport moved = view.pan(50, -20);
+        assertEquals(50, moved.getLeft(), 0);
+        assertEquals(-20, moved.getTop(), 0);
+        assertEquals(0, moved.toScreenX(50), 0);
+    }
+}
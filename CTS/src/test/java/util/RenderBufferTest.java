@@ -0,0 +1,75 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package util;
+
+import java.awt.Color;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the render command buffer.
+ */
+public class RenderBufferTest {
+    
+    @Test
+    public void testCommandsAreKeptInOrder() {
+        RenderBuffer buffer = new RenderBuffer();
+        for (int i = 0; i < 1000; i++){
+            buffer.add(IDrawable.Type.RECTANGLE, i, i, i + 1, i + 2, 3, 4);
+        }
+        assertEquals(1000, buffer.size());
+        for (int i = 0; i < 1000; i++){
+            assertEquals(IDrawable.Type.RECTANGLE, buffer.getType(i));
+            assertEquals(i, buffer.getColor(i));
+            assertEquals(i, buffer.getX(i), 0);
+            assertEquals(i + 1, buffer.getY(i), 0);
+            assertEquals(i + 2, buffer.getYaw(i), 0);
+            assertEquals(3, buffer.getWidth(i), 0);
+            assertEquals(4, buffer.getHeight(i), 0);
+        }
+        long frame = buffer.getFrame();
+        buffer.clear();
+        assertEquals(0, buffer.size());
+        assertNotEquals(frame, buffer.getFrame());
+    }
+    
+    @Test
+    public void testDrawablesConvert() {
+        RenderBuffer buffer = new RenderBuffer();
+        buffer.add(DrawableObject.getLineGraphics(Color.GRAY, 1, 2, 3, 4));
+        buffer.add(DrawableObject.getCircleGraphics(5, 6, 0, Color.YELLOW, 7));
+        buffer.add(DrawableObject.getTextGraphics(0, 0, Color.BLACK, "skipped"));
+        assertEquals(2, buffer.size());
+        
+        IDrawable line = buffer.toDrawable(0);
+        assertEquals(IDrawable.Type.LINE, line.getType());
+        assertEquals(Color.GRAY.getRGB(), line.getColor().getRGB());
+        assertEquals(3, line.getEndX(), 0);
+        assertEquals(4, line.getEndY(), 0);
+        
+        IDrawable circle = buffer.toDrawable(1);
+        assertEquals(IDrawable.Type.CIRCLE, circle.getType());
+        assertEquals(5, circle.getXPos(), 0);
+        assertEquals(7, circle.getWidth(), 0);
+    }
+}
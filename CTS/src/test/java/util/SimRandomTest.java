@@ -0,0 +1,74 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package util;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the seeded, splittable generator.
+ */
+public class SimRandomTest {
+    
+    @Test
+    public void testSameSeedSameSequence() {
+        SimRandom a = new SimRandom(42);
+        SimRandom b = new SimRandom(42);
+        for (int i = 0; i < 1000; i++){
+            assertEquals(a.nextLong(), b.nextLong());
+            assertEquals(a.nextInt(100), b.nextInt(100));
+            assertEquals(a.nextDouble(), b.nextDouble(), 0);
+        }
+        assertNotEquals(new SimRandom(1).nextLong(), new SimRandom(2).nextLong());
+    }
+    
+    @Test
+    public void testSplitIsReproducibleAndIndependent() {
+        SimRandom a = new SimRandom(7);
+        SimRandom b = new SimRandom(7);
+        SimRandom childA = a.split();
+        SimRandom childB = b.split();
+        assertEquals(childA.nextLong(), childB.nextLong());
+        
+        SimRandom parent = new SimRandom(7);
+        SimRandom child = parent.split();
+        int same = 0;
+        for (int i = 0; i < 1000; i++){
+            if (parent.nextInt(1000) == child.nextInt(1000)){
+                same++;
+            }
+        }
+        assertTrue(same < 20);
+    }
+    
+    @Test
+    public void testRanges() {
+        SimRandom r = new SimRandom(3);
+        for (int i = 0; i < 10000; i++){
+            double d = r.nextDouble();
+            assertTrue(d >= 0.0 && d < 1.0);
+            int n = r.nextInt(75);
+            assertTrue(n >= 0 && n < 75);
+        }
+    }
+}
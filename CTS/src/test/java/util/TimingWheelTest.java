@@ -0,0 +1,102 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package util;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the hierarchical timing wheel.
+ */
+public class TimingWheelTest {
+    
+    @Test
+    public void testElementsExpireAtTheirTick() {
+        TimingWheel<Long> wheel = new TimingWheel<>();
+        SimRandom random = new SimRandom(11);
+        long[] ticks = new long[2000];
+        for (int i = 0; i < ticks.length; i++){
+            //Spread over every level of the wheel and past the top one.
+            ticks[i] = 1 + (random.nextLong() >>> (1 + random.nextInt(63))) % 40000000L;
+            wheel.schedule(ticks[i], ticks[i]);
+        }
+        assertEquals(ticks.length, wheel.size());
+        
+        List<Long> expired = new ArrayList<>();
+        int seen = 0;
+        while (wheel.size() > 0){
+            long now = wheel.advance(expired);
+            for (Long tick : expired){
+                assertEquals(now, tick.longValue());
+            }
+            seen += expired.size();
+            expired.clear();
+        }
+        assertEquals(ticks.length, seen);
+    }
+    
+    @Test
+    public void testScheduleWhileRunning() {
+        TimingWheel<String> wheel = new TimingWheel<>(100);
+        List<String> expired = new ArrayList<>();
+        wheel.schedule(101, "a");
+        assertEquals(101, wheel.advance(expired));
+        assertEquals(1, expired.size());
+        expired.clear();
+        
+        wheel.schedule(101 + 4096, "b");
+        wheel.schedule(102, "c");
+        assertEquals(102, wheel.advance(expired));
+        assertEquals("c", expired.get(0));
+        expired.clear();
+        for (int i = 0; i < 4094; i++){
+            wheel.advance(expired);
+            assertTrue(expired.isEmpty());
+        }
+        assertEquals(101 + 4096, wheel.advance(expired));
+        assertEquals("b", expired.get(0));
+        assertEquals(0, wheel.size());
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testPastTickIsRejected() {
+        TimingWheel<String> wheel = new TimingWheel<>(5);
+        wheel.schedule(5, "now");
+    }
+    
+    @Test
+    public void testClear() {
+        TimingWheel<String> wheel = new TimingWheel<>();
+        wheel.schedule(3, "a");
+        wheel.schedule(1L << 40, "b");
+        wheel.clear();
+        assertEquals(0, wheel.size());
+        List<String> expired = new ArrayList<>();
+        for (int i = 0; i < 10; i++){
+            wheel.advance(expired);
+        }
+        assertTrue(expired.isEmpty());
+    }
+}
@@ -0,0 +1,105 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package util;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the timing histograms and their CSV export.
+ */
+public class TimingsTest {
+    
+    @Test
+    public void testPercentilesAreWithinABucket() {
+        TimingHistogram h = new TimingHistogram();
+        for (long i = 1; i <= 10000; i++){
+            h.record(i * 1000);
+        }
+        assertEquals(10000, h.getCount());
+        assertEquals(5000500, h.getMean(), 1);
+        assertEquals(10000000, h.getMax());
+        long[][] expected = {{50, 5000000}, {90, 9000000}, {99, 9900000}};
+        for (long[] e : expected){
+            long p = h.getPercentile(e[0]);
+            assertTrue(e[0] + "th was " + p, p >= e[1] && p <= e[1] * 17 / 16);
+        }
+        assertEquals(10000000, h.getPercentile(100));
+        assertEquals(1000, h.getPercentile(0), 64);
+    }
+    
+    @Test
+    public void testBucketsCoverEveryDuration() {
+        long last = -1;
+        for (int shift = 0; shift < 63; shift++){
+            for (long v : new long[]{1L << shift, (1L << shift) + ((1L << shift) >> 1)}){
+                int bucket = TimingHistogram.bucketOf(v);
+                long upper = TimingHistogram.upperBound(bucket);
+                assertTrue(v + " above its bucket", v <= upper);
+                assertTrue(v + " in a smaller bucket", bucket > 0 ? TimingHistogram.upperBound(bucket - 1) < v : v == 0);
+                assertTrue(upper >= last);
+                last = upper;
+            }
+        }
+        assertEquals(Long.MAX_VALUE, TimingHistogram.upperBound(TimingHistogram.bucketOf(Long.MAX_VALUE)));
+    }
+    
+    @Test
+    public void testEmptyAndReset() {
+        TimingHistogram h = new TimingHistogram();
+        assertEquals(0, h.getPercentile(99));
+        assertEquals(0, h.getMean(), 0);
+        h.record(-5);
+        h.record(7);
+        assertEquals(2, h.getCount());
+        assertEquals(0, h.getPercentile(50));
+        assertEquals(7, h.getPercentile(100));
+        h.reset();
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.getMax());
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testPercentileOutOfRange() {
+        new TimingHistogram().getPercentile(101);
+    }
+    
+    @Test
+    public void testCsvHasALinePerPhase() throws IOException {
+        Timings timings = new Timings();
+        timings.record(Timings.Phase.THINK, 2000000);
+        timings.record(Timings.Phase.THINK, 4000000);
+        StringWriter out = new StringWriter();
+        timings.writeCsv(out);
+        String[] lines = out.toString().split("\n");
+        assertEquals(Timings.Phase.values().length + 1, lines.length);
+        assertEquals("phase,count,mean_ms,p50_ms,p90_ms,p99_ms,max_ms", lines[0]);
+        //The median is the end of the bucket of 2 ms, the rest is exact.
+        assertTrue(lines[1], lines[1].matches("think,2,3\\.0000,2\\.0[0-9]{3},4\\.0000,4\\.0000,4\\.0000"));
+        assertEquals("draw,0,0.0000,0.0000,0.0000,0.0000,0.0000", lines[lines.length - 1]);
+        timings.reset();
+        assertEquals(0, timings.get(Timings.Phase.THINK).getCount());
+    }
+}
@@ -0,0 +1,79 @@
+/*
+* The MIT License
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy
+* of this software and associated documentation files (the "Software"), to deal
+* in the Software without restriction, including without limitation the rights
+* to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+* copies of the Software, and to permit persons to whom the Software is
+* furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in
+* all copies or substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+* IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+* FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+* AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+* LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+* OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+* THE SOFTWARE.
+*/
+
+package view;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import util.IDrawable;
+import util.RenderBuffer;
+
+/**
+ * Tests that vehicles are moved smoothly between two frames, and only
+ * when both frames show the same vehicle.
+ */
+public class FrameInterpolatorTest {
+    
+    private static final long START = 1000000000L;
+    private static final long TICK = 50000000L;
+    private static final int SLOT = 7;
+    
+    /**
+     * Halfway between two frames a vehicle is drawn halfway between
+     * where it was in them.
+     */
+    @Test
+    public void testSameVehicleIsInterpolated(){
+        FrameInterpolator interpolator = new FrameInterpolator();
+        interpolator.update(frame(10, 3, 0), START + 10 * TICK);
+        RenderBuffer later = frame(12, 3, 100);
+        interpolator.update(later, START + 12 * TICK + TICK / 2);
+        assertEquals(50, interpolator.getX(0), 1e-3);
+        assertEquals(50, interpolator.getY(0), 1e-3);
+    }
+    
+    /**
+     * The view missed the frame in between, in which the vehicle in the
+     * slot died and a new one got the slot. The new one is drawn where
+     * it is instead of sliding over from where the old one was.
+     */
+    @Test
+    public void testReusedSlotIsNotInterpolated(){
+        FrameInterpolator interpolator = new FrameInterpolator();
+        interpolator.update(frame(10, 3, 0), START + 10 * TICK);
+        RenderBuffer later = frame(12, 4, 100);
+        interpolator.update(later, START + 12 * TICK + TICK / 2);
+        assertEquals(100, interpolator.getX(0), 1e-3);
+        assertEquals(100, interpolator.getY(0), 1e-3);
+    }
+    
+    /**
+     * @return a frame of one vehicle in SLOT, at x and y equal to position.
+     */
+    private static RenderBuffer frame(long tick, int generation, float position){
+        RenderBuffer buffer = new RenderBuffer();
+        buffer.add(IDrawable.Type.RECTANGLE, 0, position, position, 0, 2, 4);
+        buffer.setKeys(0, SLOT, generation);
+        buffer.setTime(tick, START + tick * TICK);
+        return buffer;
+    }
+}